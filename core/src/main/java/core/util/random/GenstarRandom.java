@@ -2,18 +2,59 @@ package core.util.random;
 
 import java.util.Random;
 
+/**
+ * Global random engine of Gen*.
+ * <p>
+ * When code runs within a parallel chunk of {@link GenstarSplittableRandom}, {@link #getInstance()}
+ * returns the random engine of this chunk rather than the global one: this makes parallel draws
+ * reproducible and avoid threads to contend on the same seed
+ *
+ * @author kevinchapuis
+ *
+ */
 public class GenstarRandom {
-	
-	private static Random randomEngine;
-	
+
+	private static volatile Random randomEngine;
+
+	private static final ThreadLocal<Random> taskEngine = new ThreadLocal<>();
+
 	public static Random getInstance(){
+		Random task = taskEngine.get();
+		if(task != null)
+			return task;
 		if(randomEngine == null)
-			randomEngine = new Random();
+			synchronized (GenstarRandom.class) {
+				if(randomEngine == null)
+					randomEngine = new Random();
+			}
 		return randomEngine;
 	}
-	
+
 	public static void setInstance(Random random){
 		randomEngine = random;
 	}
-	
+
+	/**
+	 * Setup a new global random engine with given seed: given the same seed,
+	 * sequential as well as {@link GenstarSplittableRandom} parallel draws will be the same
+	 *
+	 * @param seed
+	 */
+	public static void setSeed(long seed){
+		setInstance(new Random(seed));
+	}
+
+	/*
+	 * Bind a random engine to the current thread: returns the engine previously bound,
+	 * to be restored with the same method at the end of the task
+	 */
+	static Random bindTaskEngine(Random engine){
+		Random previous = taskEngine.get();
+		if(engine == null)
+			taskEngine.remove();
+		else
+			taskEngine.set(engine);
+		return previous;
+	}
+
 }
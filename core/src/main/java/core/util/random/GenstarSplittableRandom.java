@@ -0,0 +1,159 @@
+package core.util.random;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Reproducible parallel random draws: work is cut into chunks of {@link #CHUNK_SIZE} elements and each
+ * chunk gets its own {@link SplittableRandom}, split in chunk order from a root engine seeded with the 
+ * global {@link GenstarRandom}. Hence:
+ * <p>
+ * <ul>
+ * <li> threads never share a random engine, so that there is no contention on a common seed
+ * <li> for a given global seed (see {@link GenstarRandom#setSeed(long)}), draws are the same whatever the 
+ * number of threads and the way chunks are scheduled
+ * </ul>
+ * <p>
+ * While a chunk is processed, {@link GenstarRandom#getInstance()} returns the chunk random engine, so any code
+ * relying on it (samplers, roulette wheels, {@link GenstarRandomUtils}) is reproducible when called from a chunk
+ * 
+ * @author kevinchapuis
+ *
+ */
+public class GenstarSplittableRandom {
+
+	public static int CHUNK_SIZE = 1 << 12;
+
+	/**
+	 * Work to be done on a chunk of elements, from index {@code from} (inclusive) to {@code to} (exclusive),
+	 * drawing from {@code random}
+	 * 
+	 * @author kevinchapuis
+	 *
+	 */
+	@FunctionalInterface
+	public interface ChunkTask {
+
+		public void run(int from, int to, SplittableRandom random);
+
+	}
+
+	/**
+	 * Process {@code size} elements in parallel chunks, each of them with its own random engine
+	 * 
+	 * @param size
+	 * @param task
+	 */
+	public static void parallelChunks(int size, ChunkTask task) {
+		parallelChunks(size, CHUNK_SIZE, task);
+	}
+
+	/**
+	 * Process {@code size} elements in parallel chunks of {@code chunkSize} elements, each chunk with its own 
+	 * random engine: to be used when elements are heavy tasks by themselves, e.g. a chunk size of 1 gives 
+	 * each element its own random engine
+	 * 
+	 * @param size
+	 * @param chunkSize
+	 * @param task
+	 */
+	public static void parallelChunks(int size, int chunkSize, ChunkTask task) {
+		if(chunkSize < 1)
+			throw new IllegalArgumentException("Chunk size must be strictly positive (was "+chunkSize+")");
+		int chunks = (int) ((size + (long) chunkSize - 1) / chunkSize);
+		SplittableRandom[] randoms = split(chunks);
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			Random previous = GenstarRandom.bindTaskEngine(new SplittableRandomAdapter(randoms[chunk]));
+			try {
+				task.run(chunk * chunkSize, (int) Math.min(size, (long) (chunk + 1) * chunkSize), randoms[chunk]);
+			} finally {
+				GenstarRandom.bindTaskEngine(previous);
+			}
+		});
+	}
+
+	/**
+	 * Make {@code numberOfDraw} draws in parallel and returns them in a list ordered by chunk: 
+	 * {@code draw} should rely on {@link GenstarRandom#getInstance()} to be reproducible
+	 * 
+	 * @param numberOfDraw
+	 * @param draw
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> List<T> parallelDraws(int numberOfDraw, Supplier<T> draw) {
+		Object[] draws = new Object[numberOfDraw];
+		parallelChunks(numberOfDraw, (from, to, random) -> {
+			for(int i = from; i < to; i++)
+				draws[i] = draw.get();
+		});
+		return new ArrayList<>((List<T>) Arrays.asList(draws));
+	}
+
+	/**
+	 * Split {@code count} independent random engines from one seeded with the current {@link GenstarRandom}
+	 * 
+	 * @param count
+	 * @return
+	 */
+	public static SplittableRandom[] split(int count) {
+		SplittableRandom root = new SplittableRandom(GenstarRandom.getInstance().nextLong());
+		SplittableRandom[] randoms = new SplittableRandom[count];
+		for(int i = 0; i < count; i++)
+			randoms[i] = root.split();
+		return randoms;
+	}
+
+	private GenstarSplittableRandom() {}
+
+	/*
+	 * Expose a splittable random as a java.util.Random, without the atomic seed update
+	 */
+	@SuppressWarnings("serial")
+	private static final class SplittableRandomAdapter extends Random {
+
+		private final SplittableRandom random;
+
+		private SplittableRandomAdapter(SplittableRandom random) {
+			super(0L);
+			this.random = random;
+		}
+
+		@Override
+		protected int next(int bits) {
+			return random.nextInt() >>> (32 - bits);
+		}
+
+		@Override
+		public int nextInt() {
+			return random.nextInt();
+		}
+
+		@Override
+		public int nextInt(int bound) {
+			return random.nextInt(bound);
+		}
+
+		@Override
+		public long nextLong() {
+			return random.nextLong();
+		}
+
+		@Override
+		public double nextDouble() {
+			return random.nextDouble();
+		}
+
+		@Override
+		public boolean nextBoolean() {
+			return random.nextBoolean();
+		}
+
+	}
+
+}
@@ -0,0 +1,125 @@
+package core.util.random.roulette;
+
+import java.util.Random;
+
+import core.util.random.GenstarRandom;
+
+/**
+ * Roulette wheel over primitive weights based on the alias method (Vose's algorithm): once the table
+ * is built, in linear time, each draw costs one integer and one double draw, whatever the number of indexes.
+ * <p>
+ * Tables are immutable, hence a table can be shared between threads drawing from their own random engine,
+ * see {@link #drawIndex(Random)}
+ *
+ * @author kevinchapuis
+ *
+ */
+public class PrimitiveAliasTable {
+
+	private final double[] probability;
+	private final int[] alias;
+	private final double total;
+
+	/**
+	 * Build an alias table that draws index {@code i} with a probability proportional to {@code weights[i]}
+	 *
+	 * @param weights
+	 * @throws IllegalArgumentException if a weight is negative or not a number, or if the sum of weights is not strictly positive
+	 */
+	public PrimitiveAliasTable(double[] weights) {
+		int n = weights.length;
+		double sum = 0d;
+		for(double weight : weights){
+			if(!(weight >= 0d) || Double.isInfinite(weight))
+				throw new IllegalArgumentException("Weights must be finite and positive (found "+weight+")");
+			sum += weight;
+		}
+		if(!(sum > 0d))
+			throw new IllegalArgumentException("Sum of weights must be strictly positive (SOW = "+sum+")");
+		this.total = sum;
+		this.probability = new double[n];
+		this.alias = new int[n];
+
+		/* Weights scaled such that the average is 1.0 */
+		double[] scaled = new double[n];
+		for(int i = 0; i < n; i++)
+			scaled[i] = weights[i] * n / sum;
+
+		/* Two stacks of indices, stored in one array: small grows from the start, large from the end */
+		int[] work = new int[n];
+		int small = 0;
+		int large = n;
+		for(int i = 0; i < n; i++){
+			if(scaled[i] >= 1d)
+				work[--large] = i;
+			else
+				work[small++] = i;
+		}
+		while(small > 0 && large < n){
+			int less = work[--small];
+			int more = work[large++];
+			probability[less] = scaled[less];
+			alias[less] = more;
+			scaled[more] = (scaled[more] + scaled[less]) - 1d;
+			if(scaled[more] >= 1d)
+				work[--large] = more;
+			else
+				work[small++] = more;
+		}
+		/* Due to floating point inaccuracies, remaining indexes of both stacks are given a probability of 1 */
+		while(small > 0)
+			probability[work[--small]] = 1d;
+		while(large < n)
+			probability[work[large++]] = 1d;
+	}
+
+	/**
+	 * Draw an index using {@link GenstarRandom#getInstance()}
+	 *
+	 * @return
+	 */
+	public int drawIndex() {
+		return drawIndex(GenstarRandom.getInstance());
+	}
+
+	/**
+	 * Draw an index using the given random engine
+	 *
+	 * @param random
+	 * @return
+	 */
+	public int drawIndex(Random random) {
+		return drawIndex(random.nextInt(probability.length), random.nextDouble());
+	}
+
+	/**
+	 * Fair die roll ({@code column}) to determine which column to inspect, then biased coin toss
+	 * ({@code coinToss} in [0;1[) to choose between the column and its alias
+	 *
+	 * @param column
+	 * @param coinToss
+	 * @return
+	 */
+	public int drawIndex(int column, double coinToss) {
+		return coinToss < probability[column] ? column : alias[column];
+	}
+
+	/**
+	 * Number of indexes of this table
+	 *
+	 * @return
+	 */
+	public int size() {
+		return probability.length;
+	}
+
+	/**
+	 * Sum of the weights this table has been built with
+	 *
+	 * @return
+	 */
+	public double getTotal() {
+		return total;
+	}
+
+}
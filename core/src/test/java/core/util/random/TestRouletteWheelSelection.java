@@ -12,6 +12,7 @@ import org.apache.logging.log4j.Logger;
 import org.junit.Test;
 
 import core.util.random.roulette.ARouletteWheelSelection;
+import core.util.random.roulette.PrimitiveAliasTable;
 import core.util.random.roulette.RouletteWheelSelectionFactory;
 
 public class TestRouletteWheelSelection {
@@ -79,5 +80,24 @@ public class TestRouletteWheelSelection {
 
 	}
 
+	@Test
+	public void testIndexDistributionInAliasTable() {
+		
+		double[] weights = {0.5, 0.3, 0.0, 0.2, 10.0};
+		PrimitiveAliasTable table = new PrimitiveAliasTable(weights);
+		GenstarRandom.setSeed(42L);
+		int samples = 100000;
+		int[] occurences = new int[weights.length];
+		for (int i=0; i<samples; i++)
+			occurences[table.drawIndex()]++;
+		for (int i=0; i<weights.length; i++) {
+			if (Math.abs((double) occurences[i]/samples - weights[i]/table.getTotal()) > 0.01)
+				fail("difference between expectation "+Arrays.toString(weights)+" and obtained distributions "
+						+Arrays.toString(occurences)+" is too high");
+		}
+		if (occurences[2] != 0)
+			fail("index with a null weight has been drawn");
+
+	}
+	
 }
- 
\ No newline at end of file
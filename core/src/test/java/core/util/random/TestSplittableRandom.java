@@ -0,0 +1,34 @@
+package core.util.random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestSplittableRandom {
+
+	@Test
+	public void testParallelDrawsAreReproducible() {
+		GenstarRandom.setSeed(42L);
+		List<Integer> first = GenstarSplittableRandom.parallelDraws(100000, () -> GenstarRandom.getInstance().nextInt(1000));
+		GenstarRandom.setSeed(42L);
+		List<Integer> second = GenstarSplittableRandom.parallelDraws(100000, () -> GenstarRandom.getInstance().nextInt(1000));
+		assertEquals(first, second);
+		assertNotEquals(first, GenstarSplittableRandom.parallelDraws(100000, () -> GenstarRandom.getInstance().nextInt(1000)));
+	}
+
+	@Test
+	public void testChunksCoverAllElements() {
+		int size = GenstarSplittableRandom.CHUNK_SIZE * 3 + 7;
+		int[] covered = new int[size];
+		GenstarSplittableRandom.parallelChunks(size, (from, to, random) -> {
+			for(int i = from; i < to; i++)
+				covered[i]++;
+		});
+		for(int count : covered)
+			assertEquals(1, count);
+	}
+
+}
@@ -0,0 +1,450 @@
+package gospl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.vividsolutions.jts.geom.Point;
+
+import core.metamodel.geo.AGeoEntity;
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationEntity;
+import core.metamodel.pop.APopulationValue;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+
+/**
+ * Compact population that stores entities column-wise rather than as a set of maps:
+ * <p>
+ * <ul>
+ * <li> each attribute is a column of dictionary-encoded values: a {@code byte[]} as long as the
+ * attribute has less than 256 distinct values, then a {@code short[]} or an {@code int[]}
+ * <li> entities are lightweight views on a row of the population: they are created on demand when
+ * iterating and do not hold any value. Two views of the same row are equal
+ * <li> location and nest are only stored when set, in arrays allocated on first use
+ * </ul>
+ * <p>
+ * Entities are kept in insertion order. The population can only be appended to: adding an entity copies
+ * its values (and location and nest if any) into a new row, while removal is not supported. Columns are
+ * created on the fly for new attributes, previous rows having no value for them
+ * <p>
+ * WARNING: not thread safe
+ *
+ * @author kevinchapuis
+ *
+ */
+public class GosplColumnarPopulation extends GosplPopulation {
+
+	private final List<APopulationAttribute> attributes = new ArrayList<>();
+	private final Map<APopulationAttribute, ValueColumn> columns = new HashMap<>();
+	private final Map<String, APopulationAttribute> attributeNames = new HashMap<>();
+
+	private int size = 0;
+	private int capacity;
+
+	private Point[] locations = null;
+	private AGeoEntity[] nests = null;
+
+	/**
+	 * Empty columnar population with a default initial capacity
+	 */
+	public GosplColumnarPopulation() {
+		this(1 << 10);
+	}
+
+	/**
+	 * Empty columnar population able to hold {@code initialCapacity} entities
+	 * before columns have to grow
+	 *
+	 * @param initialCapacity
+	 */
+	public GosplColumnarPopulation(int initialCapacity) {
+		super(Collections.emptyList());
+		this.capacity = Math.max(1, initialCapacity);
+	}
+
+	/**
+	 * Empty columnar population with predefined attribute columns
+	 *
+	 * @param attributes
+	 * @param initialCapacity
+	 */
+	public GosplColumnarPopulation(Collection<APopulationAttribute> attributes, int initialCapacity) {
+		this(initialCapacity);
+		attributes.stream().forEach(this::getColumn);
+	}
+
+	// ------------------------------------ COLUMNAR ACCESSORS ------------------------------------ //
+
+	/**
+	 * Append a new entity made of the values of the coordinate
+	 *
+	 * @param coordinate
+	 * @return
+	 */
+	public boolean add(ACoordinate<APopulationAttribute, APopulationValue> coordinate) {
+		int row = newRow();
+		for(APopulationValue value : coordinate.values())
+			getColumn(value.getAttribute()).set(row, value);
+		return true;
+	}
+
+	/**
+	 * Gives a view of the entity at {@code row}
+	 *
+	 * @param row
+	 * @return
+	 */
+	public APopulationEntity get(int row) {
+		if(row < 0 || row >= size)
+			throw new IndexOutOfBoundsException("Row "+row+" is out of population bounds [0:"+size+"[");
+		return new ColumnarEntity(row);
+	}
+
+	/**
+	 * Gives the value of the entity at {@code row} for the attribute, or null if this entity has no value
+	 * for this attribute
+	 *
+	 * @param row
+	 * @param attribute
+	 * @return
+	 */
+	public APopulationValue getValue(int row, APopulationAttribute attribute) {
+		ValueColumn column = columns.get(attribute);
+		return column == null ? null : column.get(row);
+	}
+
+	/**
+	 * The ordered list of attribute columns
+	 *
+	 * @return
+	 */
+	public List<APopulationAttribute> getColumnAttributes() {
+		return Collections.unmodifiableList(attributes);
+	}
+
+	// ------------------------------------ POP ACCESSORS ------------------------------------ //
+
+	@Override
+	public Set<APopulationAttribute> getPopulationAttributes(){
+		return new LinkedHashSet<>(attributes);
+	}
+
+	// ------------------------------------ COLLECTION CONTRACT ------------------------------------ //
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if(!(o instanceof ColumnarEntity))
+			return false;
+		ColumnarEntity entity = (ColumnarEntity) o;
+		return entity.getPopulation() == this && entity.row < size;
+	}
+
+	@Override
+	public Iterator<APopulationEntity> iterator() {
+		return new Iterator<APopulationEntity>() {
+			private int next = 0;
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+			@Override
+			public APopulationEntity next() {
+				if(next >= size)
+					throw new NoSuchElementException();
+				return new ColumnarEntity(next++);
+			}
+		};
+	}
+
+	@Override
+	public Object[] toArray() {
+		Object[] entities = new Object[size];
+		for(int row = 0; row < size; row++)
+			entities[row] = new ColumnarEntity(row);
+		return entities;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> T[] toArray(T[] a) {
+		T[] entities = a.length >= size ? a : (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+		for(int row = 0; row < size; row++)
+			entities[row] = (T) new ColumnarEntity(row);
+		if(entities.length > size)
+			entities[size] = null;
+		return entities;
+	}
+
+	@Override
+	public boolean add(APopulationEntity e) {
+		int row = newRow();
+		for(APopulationAttribute attribute : e.getAttributes())
+			getColumn(attribute).set(row, e.getValueForAttribute(attribute));
+		if(e.getLocation() != null)
+			setLocation(row, e.getLocation());
+		if(e.getNest() != null)
+			setNest(row, e.getNest());
+		return true;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends APopulationEntity> c) {
+		ensureCapacity(size + c.size());
+		for(APopulationEntity e : c)
+			add(e);
+		return !c.isEmpty();
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		return c.stream().allMatch(this::contains);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+" does not support removal");
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> c) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+" does not support removal");
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> c) {
+		throw new UnsupportedOperationException(getClass().getSimpleName()+" does not support removal");
+	}
+
+	@Override
+	public void clear() {
+		for(APopulationAttribute attribute : attributes)
+			columns.put(attribute, new ValueColumn(capacity));
+		locations = null;
+		nests = null;
+		size = 0;
+	}
+
+	// ------------------------------------ INNER UTILITIES ------------------------------------ //
+
+	private int newRow() {
+		ensureCapacity(size + 1);
+		return size++;
+	}
+
+	private void ensureCapacity(int minCapacity) {
+		if(minCapacity <= capacity)
+			return;
+		int newCapacity = Math.max(minCapacity, capacity + (capacity >> 1));
+		for(ValueColumn column : columns.values())
+			column.resize(newCapacity);
+		if(locations != null)
+			locations = Arrays.copyOf(locations, newCapacity);
+		if(nests != null)
+			nests = Arrays.copyOf(nests, newCapacity);
+		capacity = newCapacity;
+	}
+
+	private ValueColumn getColumn(APopulationAttribute attribute) {
+		ValueColumn column = columns.get(attribute);
+		if(column == null){
+			column = new ValueColumn(capacity);
+			columns.put(attribute, column);
+			attributes.add(attribute);
+			attributeNames.putIfAbsent(attribute.getAttributeName(), attribute);
+		}
+		return column;
+	}
+
+	private void setLocation(int row, Point location) {
+		if(locations == null)
+			locations = new Point[capacity];
+		locations[row] = location;
+	}
+
+	private void setNest(int row, AGeoEntity nest) {
+		if(nests == null)
+			nests = new AGeoEntity[capacity];
+		nests[row] = nest;
+	}
+
+	/*
+	 * Dictionary-encoded column of values: code 0 stands for no value
+	 */
+	private static final class ValueColumn {
+
+		private final List<APopulationValue> dictionary = new ArrayList<>(Collections.singletonList(null));
+		private final Map<APopulationValue, Integer> codes = new HashMap<>();
+
+		private byte[] byteCodes;
+		private short[] shortCodes = null;
+		private int[] intCodes = null;
+
+		private ValueColumn(int capacity) {
+			this.byteCodes = new byte[capacity];
+		}
+
+		private APopulationValue get(int row) {
+			if(byteCodes != null)
+				return dictionary.get(byteCodes[row] & 0xFF);
+			if(shortCodes != null)
+				return dictionary.get(shortCodes[row] & 0xFFFF);
+			return dictionary.get(intCodes[row]);
+		}
+
+		private void set(int row, APopulationValue value) {
+			int code = encode(value);
+			if(byteCodes != null)
+				byteCodes[row] = (byte) code;
+			else if(shortCodes != null)
+				shortCodes[row] = (short) code;
+			else
+				intCodes[row] = code;
+		}
+
+		private int encode(APopulationValue value) {
+			if(value == null)
+				return 0;
+			Integer code = codes.get(value);
+			if(code == null){
+				code = dictionary.size();
+				dictionary.add(value);
+				codes.put(value, code);
+				widen(code);
+			}
+			return code;
+		}
+
+		/*
+		 * Move to a wider code type when the dictionary outgrows the current one
+		 */
+		private void widen(int code) {
+			if(byteCodes != null && code > 0xFF){
+				shortCodes = new short[byteCodes.length];
+				for(int i = 0; i < byteCodes.length; i++)
+					shortCodes[i] = (short) (byteCodes[i] & 0xFF);
+				byteCodes = null;
+			}
+			if(shortCodes != null && code > 0xFFFF){
+				intCodes = new int[shortCodes.length];
+				for(int i = 0; i < shortCodes.length; i++)
+					intCodes[i] = shortCodes[i] & 0xFFFF;
+				shortCodes = null;
+			}
+		}
+
+		private void resize(int capacity) {
+			if(byteCodes != null)
+				byteCodes = Arrays.copyOf(byteCodes, capacity);
+			else if(shortCodes != null)
+				shortCodes = Arrays.copyOf(shortCodes, capacity);
+			else
+				intCodes = Arrays.copyOf(intCodes, capacity);
+		}
+
+	}
+
+	/*
+	 * Flyweight entity: a view on one row of the population
+	 */
+	private final class ColumnarEntity extends APopulationEntity {
+
+		private final int row;
+
+		private ColumnarEntity(int row) {
+			super(null);
+			this.row = row;
+		}
+
+		private GosplColumnarPopulation getPopulation() {
+			return GosplColumnarPopulation.this;
+		}
+
+		@Override
+		public Collection<APopulationAttribute> getAttributes() {
+			List<APopulationAttribute> entityAttributes = new ArrayList<>(attributes.size());
+			for(APopulationAttribute attribute : attributes)
+				if(columns.get(attribute).get(row) != null)
+					entityAttributes.add(attribute);
+			return entityAttributes;
+		}
+
+		@Override
+		public Collection<APopulationValue> getValues() {
+			List<APopulationValue> values = new ArrayList<>(attributes.size());
+			for(APopulationAttribute attribute : attributes){
+				APopulationValue value = columns.get(attribute).get(row);
+				if(value != null)
+					values.add(value);
+			}
+			return Collections.unmodifiableList(values);
+		}
+
+		@Override
+		public APopulationValue getValueForAttribute(APopulationAttribute attribute) {
+			return getValue(row, attribute);
+		}
+
+		@Override
+		public APopulationValue getValueForAttribute(String property) {
+			APopulationAttribute attribute = attributeNames.get(property);
+			if(attribute == null || columns.get(attribute).get(row) == null)
+				throw new NullPointerException("Attribute "+property+" does not exist in "+this.getClass().getSimpleName());
+			return columns.get(attribute).get(row);
+		}
+
+		@Override
+		public Point getLocation() {
+			return locations == null ? null : locations[row];
+		}
+
+		@Override
+		public AGeoEntity getNest() {
+			return nests == null ? null : nests[row];
+		}
+
+		@Override
+		public void setLocation(Point location) {
+			GosplColumnarPopulation.this.setLocation(row, location);
+		}
+
+		@Override
+		public void setNest(AGeoEntity entity) {
+			GosplColumnarPopulation.this.setNest(row, entity);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(getPopulation()) + row;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj)
+				return true;
+			if(!(obj instanceof ColumnarEntity))
+				return false;
+			ColumnarEntity other = (ColumnarEntity) obj;
+			return other.getPopulation() == getPopulation() && other.row == row;
+		}
+
+	}
+
+}
@@ -0,0 +1,328 @@
+package gospl.algo.bayesiannetworks;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import core.util.data.GSEnumDataType;
+import core.util.excpetion.GSIllegalRangedData;
+import core.util.random.GenstarRandom;
+import core.util.random.GenstarSplittableRandom;
+import core.util.random.roulette.PrimitiveAliasTable;
+import gospl.algo.sampler.ISampler;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinateInterner;
+import gospl.entity.attribute.GSEnumAttributeType;
+import gospl.entity.attribute.GosplAttributeFactory;
+
+/**
+ * Forward sampler of a {@link BayesianNetwork}: the network is compiled once, then each individual is drawn
+ * node after node in topological order, each node given the values already drawn for its parents.
+ * <p>
+ * <ul>
+ * <li> each node is compiled into a {@code double[]} CPT: the row of a parent configuration is the sum of
+ * parent value indices times integer strides, so that no {@link BigDecimal} nor domain lookup happens at draw time
+ * <li> each row of the CPT gets its own {@link PrimitiveAliasTable} (Vose's algorithm), so that drawing a value takes constant time
+ * whatever the size of the domain
+ * <li> bulk draws are made in parallel chunks, each of them drawing from its own random engine split from
+ * {@link GenstarRandom} (see {@link GenstarSplittableRandom}): they are reproducible for a given seed
+ * </ul>
+ * <p>
+ * Drawn individuals are coordinates over one attribute per node, hence this sampler can be given to
+ * {@link gospl.algo.generator.DistributionBasedGenerator} to generate populations out of XMLBIF networks
+ *
+ * @author kevinchapuis
+ *
+ */
+public class BayesianNetworkCompiledSampler implements ISampler<ACoordinate<APopulationAttribute, APopulationValue>> {
+
+	private final List<NodeCategorical> nodes;
+
+	private final int[] domainSizes;
+	private final int[][] parentSlots;
+	private final int[][] strides;
+
+	/* CPT: value v of row r is stored at r * domain size + v */
+	private final double[][] cpts;
+	/* One alias table per row of the CPT, null if the row has no probability */
+	private final PrimitiveAliasTable[][] tables;
+
+	private final APopulationValue[][] values;
+	private final GosplCoordinateInterner interner;
+
+	/**
+	 * Compile {@code bn} with one {@link GSEnumDataType#String} attribute per node, named after the node
+	 * and made of the values of its domain
+	 *
+	 * @param bn
+	 * @throws GSIllegalRangedData
+	 */
+	public BayesianNetworkCompiledSampler(BayesianNetwork bn) throws GSIllegalRangedData {
+		this(bn, createAttributes(bn));
+	}
+
+	/**
+	 * Compile {@code bn} against given {@code attributes}: each node is bound to the attribute with
+	 * the same name, and each value of its domain to the attribute value with the same string value
+	 *
+	 * @param bn
+	 * @param attributes
+	 * @throws IllegalArgumentException if a node or a value does not match any attribute or attribute value
+	 */
+	public BayesianNetworkCompiledSampler(BayesianNetwork bn, Collection<APopulationAttribute> attributes) {
+		this.nodes = sortNodes(bn);
+		int n = nodes.size();
+		Map<NodeCategorical, Integer> slots = new HashMap<>();
+		for(int i = 0; i < n; i++)
+			slots.put(nodes.get(i), i);
+
+		this.domainSizes = new int[n];
+		this.parentSlots = new int[n][];
+		this.strides = new int[n][];
+		this.cpts = new double[n][];
+		this.tables = new PrimitiveAliasTable[n][];
+		for(int i = 0; i < n; i++)
+			compile(i, slots);
+
+		Map<String, APopulationAttribute> nameToAttribute = attributes.stream()
+				.collect(Collectors.toMap(APopulationAttribute::getAttributeName, Function.identity()));
+		Map<APopulationAttribute, Set<APopulationValue>> dimensions = new HashMap<>();
+		this.values = new APopulationValue[n][];
+		for(int i = 0; i < n; i++){
+			NodeCategorical node = nodes.get(i);
+			APopulationAttribute attribute = nameToAttribute.get(node.getName());
+			if(attribute == null)
+				throw new IllegalArgumentException("Node "+node.getName()+" does not match any attribute");
+			values[i] = new APopulationValue[domainSizes[i]];
+			for(int v = 0; v < domainSizes[i]; v++)
+				values[i][v] = attribute.getValue(node.getValueIndexed(v));
+			dimensions.put(attribute, new LinkedHashSet<>(attribute.getValues()));
+		}
+		this.interner = new GosplCoordinateInterner(dimensions);
+	}
+
+	// -------------------- main contract -------------------- //
+
+	@Override
+	public ACoordinate<APopulationAttribute, APopulationValue> draw() {
+		int[] individual = new int[nodes.size()];
+		drawIndividual(individual, 0, GenstarRandom.getInstance());
+		return getCoordinate(individual, 0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * WARNING: make use of parallelism through {@link #drawIndices(int, int[])}
+	 */
+	@Override
+	public List<ACoordinate<APopulationAttribute, APopulationValue>> draw(int numberOfDraw) {
+		int[] indices = new int[numberOfDraw * nodes.size()];
+		drawIndices(numberOfDraw, indices);
+		List<ACoordinate<APopulationAttribute, APopulationValue>> draws = new ArrayList<>(numberOfDraw);
+		for(int i = 0; i < numberOfDraw; i++)
+			draws.add(getCoordinate(indices, i * nodes.size()));
+		return draws;
+	}
+
+	/**
+	 * Draw {@code numberOfDraw} individuals and store them in {@code indices}: value of node at
+	 * index {@code n} (see {@link #getNodes()}) for individual {@code i} is the domain index stored at
+	 * {@code i * getNodes().size() + n}. Draws are split in chunks handled in parallel, each
+	 * chunk using its own random engine (see {@link GenstarSplittableRandom#parallelChunks(int, GenstarSplittableRandom.ChunkTask)})
+	 *
+	 * @see #getValue(int, int)
+	 * @param numberOfDraw
+	 * @param indices
+	 * @throws IllegalArgumentException if {@code indices} cannot hold {@code numberOfDraw} individuals
+	 * @throws IllegalStateException if a parent configuration with no probability is drawn
+	 */
+	public void drawIndices(int numberOfDraw, int[] indices) {
+		final int width = nodes.size();
+		if(indices.length < (long) numberOfDraw * width)
+			throw new IllegalArgumentException("Cannot store "+numberOfDraw+" individuals in an array of size "+indices.length);
+		GenstarSplittableRandom.parallelChunks(numberOfDraw, (from, to, random) -> {
+			Random engine = GenstarRandom.getInstance();
+			for(int i = from; i < to; i++)
+				drawIndividual(indices, i * width, engine);
+		});
+	}
+
+	// -------------------- accessors -------------------- //
+
+	/**
+	 * Nodes in the order they are drawn, parents always coming before their children
+	 *
+	 * @return
+	 */
+	public List<NodeCategorical> getNodes() {
+		return Collections.unmodifiableList(nodes);
+	}
+
+	/**
+	 * The value at {@code index} in the domain of node at {@code node} (see {@link #getNodes()})
+	 *
+	 * @param node
+	 * @param index
+	 * @return
+	 */
+	public APopulationValue getValue(int node, int index) {
+		return values[node][index];
+	}
+
+	/**
+	 * The compiled CPT of node at {@code node} (see {@link #getNodes()}): probability of value {@code v} given
+	 * parents value indices {@code p[k]} is stored at {@code (sum of p[k] * strides[k]) * domain size + v},
+	 * parents being taken in the order they have been added to the node
+	 *
+	 * @param node
+	 * @return
+	 */
+	public double[] getCPT(int node) {
+		return cpts[node].clone();
+	}
+
+	/**
+	 * Strides of parents for node at {@code node}, see {@link #getCPT(int)}
+	 *
+	 * @param node
+	 * @return
+	 */
+	public int[] getParentStrides(int node) {
+		return strides[node].clone();
+	}
+
+	@Override
+	public String toCsv(String csvSeparator) {
+		StringBuilder sb = new StringBuilder(String.join(csvSeparator, "Node", "Parents", "Value", "Probability"));
+		sb.append("\n");
+		for(int i = 0; i < nodes.size(); i++){
+			NodeCategorical node = nodes.get(i);
+			int d = domainSizes[i];
+			for(int row = 0; row < cpts[i].length / d; row++){
+				List<String> parents = new ArrayList<>();
+				for(int p = 0; p < parentSlots[i].length; p++){
+					int slot = parentSlots[i][p];
+					parents.add(nodes.get(slot).getName()+"="
+							+nodes.get(slot).getValueIndexed(row / strides[i][p] % domainSizes[slot]));
+				}
+				for(int v = 0; v < d; v++)
+					sb.append(String.join(csvSeparator, node.getName(), String.join(" ", parents),
+							node.getValueIndexed(v), Double.toString(cpts[i][row * d + v]))).append("\n");
+			}
+		}
+		return sb.toString();
+	}
+
+	// -------------------- inner utilities -------------------- //
+
+	/*
+	 * Forward sampling of one individual stored from offset in the array
+	 */
+	private void drawIndividual(int[] individual, int offset, Random random) {
+		for(int i = 0; i < nodes.size(); i++){
+			int row = 0;
+			for(int p = 0; p < parentSlots[i].length; p++)
+				row += individual[offset + parentSlots[i][p]] * strides[i][p];
+			PrimitiveAliasTable table = tables[i][row];
+			if(table == null)
+				throw new IllegalStateException("Node "+nodes.get(i).getName()
+						+" has no probability for parent configuration "+row);
+			individual[offset + i] = table.drawIndex(random);
+		}
+	}
+
+	private ACoordinate<APopulationAttribute, APopulationValue> getCoordinate(int[] indices, int offset) {
+		List<APopulationValue> individual = new ArrayList<>(nodes.size());
+		for(int i = 0; i < nodes.size(); i++)
+			individual.add(values[i][indices[offset + i]]);
+		return interner.intern(individual);
+	}
+
+	/*
+	 * Compile node at slot: strides, CPT and one alias table per row of the CPT. Probabilities
+	 * are read through the node own indexing, hence the CPT follows what has been set in the node
+	 */
+	private void compile(int slot, Map<NodeCategorical, Integer> slots) {
+		NodeCategorical node = nodes.get(slot);
+		int d = node.getDomainSize();
+		if(d == 0)
+			throw new IllegalArgumentException("Node "+node.getName()+" has an empty domain");
+		NodeCategorical[] parents = node.parentsArray;
+		domainSizes[slot] = d;
+		parentSlots[slot] = new int[parents.length];
+		strides[slot] = new int[parents.length];
+		int rows = 1;
+		for(int p = 0; p < parents.length; p++){
+			parentSlots[slot][p] = slots.get(parents[p]);
+			strides[slot][p] = rows;
+			rows = Math.multiplyExact(rows, parents[p].getDomainSize());
+		}
+
+		double[] cpt = new double[Math.multiplyExact(rows, d)];
+		PrimitiveAliasTable[] rowTables = new PrimitiveAliasTable[rows];
+		int[] parentIndices = new int[parents.length];
+		for(int row = 0; row < rows; row++){
+			for(int p = 0; p < parents.length; p++)
+				parentIndices[p] = row / strides[slot][p] % parents[p].getDomainSize();
+			double total = 0d;
+			for(int v = 0; v < d; v++){
+				BigDecimal proba = node.getProbability(v, parentIndices);
+				cpt[row * d + v] = proba == null ? 0d : proba.doubleValue();
+				total += cpt[row * d + v];
+			}
+			if(total > 0d)
+				rowTables[row] = new PrimitiveAliasTable(Arrays.copyOfRange(cpt, row * d, (row + 1) * d));
+		}
+
+		cpts[slot] = cpt;
+		tables[slot] = rowTables;
+	}
+
+	/*
+	 * Topological order of nodes: follows BayesianNetwork#enumerateNodes, moving nodes
+	 * after their parents whenever required
+	 */
+	private static List<NodeCategorical> sortNodes(BayesianNetwork bn) {
+		List<NodeCategorical> sorted = new ArrayList<>(bn.getNodes().size());
+		Set<NodeCategorical> visited = new LinkedHashSet<>();
+		for(NodeCategorical node : bn.enumerateNodes())
+			visit(node, sorted, visited, new LinkedHashSet<>());
+		return sorted;
+	}
+
+	private static void visit(NodeCategorical node, List<NodeCategorical> sorted,
+			Set<NodeCategorical> visited, Set<NodeCategorical> path) {
+		if(visited.contains(node))
+			return;
+		if(!path.add(node))
+			throw new IllegalArgumentException("Bayesian network has a cycle through node "+node.getName());
+		for(NodeCategorical parent : node.parentsArray)
+			visit(parent, sorted, visited, path);
+		path.remove(node);
+		visited.add(node);
+		sorted.add(node);
+	}
+
+	private static List<APopulationAttribute> createAttributes(BayesianNetwork bn) throws GSIllegalRangedData {
+		GosplAttributeFactory gaf = new GosplAttributeFactory();
+		List<APopulationAttribute> attributes = new ArrayList<>();
+		for(NodeCategorical node : bn.enumerateNodes())
+			attributes.add(gaf.createAttribute(node.getName(), GSEnumDataType.String,
+					new ArrayList<>(node.getDomain()), GSEnumAttributeType.unique));
+		return attributes;
+	}
+
+}
@@ -0,0 +1,395 @@
+package gospl.algo.bayesiannetworks;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Exact inference engine based on variable elimination over double precision factors. Unlike
+ * {@link SimpleConditionningInferenceEngine}, evidence is propagated in any direction: evidence on a
+ * descendant updates the posterior of its ancestors.
+ * <p>
+ * <ul>
+ * <li> CPTs are compiled once into factors, evidence being applied by reducing factors to the observed value
+ * <li> only the ancestors of the query and evidence nodes are involved in the elimination, the others being barren
+ * <li> the elimination order (min-degree heuristic) is computed once for each query node and set of
+ * evidence nodes, and cached: changing the value of the evidence only costs the elimination itself
+ * <li> posteriors are computed lazily, on the first query of a node, and kept until evidence changes
+ * </ul>
+ *
+ * @author kevinchapuis
+ *
+ */
+public class VariableEliminationInferenceEngine extends AbstractInferenceEngine {
+
+	private final List<NodeCategorical> nodes = new ArrayList<>();
+	private final Map<NodeCategorical,Integer> node2slot = new HashMap<>();
+	private final int[][] parentSlots;
+	private final Factor[] cptFactors;
+
+	private final Map<PlanKey,EliminationPlan> plans = new HashMap<>();
+
+	private int[] evidence;
+	private double[][] posteriors;
+
+	public VariableEliminationInferenceEngine(BayesianNetwork bn) {
+		super(bn);
+
+		for (NodeCategorical n: bn.enumerateNodes())
+			addNode(n);
+
+		this.parentSlots = new int[nodes.size()][];
+		this.cptFactors = new Factor[nodes.size()];
+		for (int slot = 0; slot < nodes.size(); slot++) {
+			NodeCategorical n = nodes.get(slot);
+			parentSlots[slot] = new int[n.parentsArray.length];
+			for (int p = 0; p < n.parentsArray.length; p++)
+				parentSlots[slot][p] = node2slot.get(n.parentsArray[p]);
+			cptFactors[slot] = compileCPT(slot);
+		}
+
+		this.evidence = new int[nodes.size()];
+		this.posteriors = new double[nodes.size()][];
+	}
+
+	@Override
+	public void compute() {
+
+		Arrays.fill(evidence, -1);
+		for (Map.Entry<NodeCategorical,String> e: variable2value.entrySet())
+			evidence[node2slot.get(e.getKey())] = e.getKey().getDomainIndex(e.getValue());
+		posteriors = new double[nodes.size()][];
+
+		// mark it clean
+		super.compute();
+	}
+
+	@Override
+	protected BigDecimal retrieveConditionalProbability(NodeCategorical n, String s) {
+		int idx = n.getDomainIndex(s);
+		if (idx < 0)
+			throw new IllegalArgumentException("value "+s+" unknown in node "+n);
+		return BigDecimal.valueOf(getPosterior(n)[idx]);
+	}
+
+	/**
+	 * Returns the posterior distribution of {@code n} given current evidence,
+	 * as probabilities indexed like the domain of the node
+	 *
+	 * @param n
+	 * @return
+	 * @throws IllegalArgumentException if the node is not in the network, or if evidence has a null probability
+	 */
+	public double[] getPosterior(NodeCategorical n) {
+
+		Integer slot = node2slot.get(n);
+		if (slot == null)
+			throw new IllegalArgumentException("this node is not in the bn: "+n);
+
+		if (dirty)
+			compute();
+
+		if (posteriors[slot] == null)
+			posteriors[slot] = eliminate(slot);
+
+		return posteriors[slot].clone();
+	}
+
+	// ------------------------- ELIMINATION ------------------------- //
+
+	private double[] eliminate(int query) {
+
+		final int domainSize = nodes.get(query).getDomainSize();
+
+		// known for sure: p(n=v)=1
+		if (evidence[query] >= 0) {
+			double[] res = new double[domainSize];
+			res[evidence[query]] = 1d;
+			return res;
+		}
+
+		BitSet evidenceSlots = new BitSet(nodes.size());
+		for (int slot = 0; slot < evidence.length; slot++)
+			if (evidence[slot] >= 0)
+				evidenceSlots.set(slot);
+		EliminationPlan plan = plans.computeIfAbsent(new PlanKey(query, evidenceSlots), this::plan);
+
+		// reduce factors to evidence
+		List<Factor> factors = new LinkedList<>();
+		for (int slot: plan.factorSlots) {
+			Factor f = cptFactors[slot];
+			for (int v = f.vars.length - 1; v >= 0; v--)
+				if (evidence[f.vars[v]] >= 0)
+					f = f.reduce(v, evidence[f.vars[v]]);
+			factors.add(f);
+		}
+
+		// sum out variables one after the other
+		for (int var: plan.order) {
+			Factor product = null;
+			for (Iterator<Factor> it = factors.iterator(); it.hasNext(); ) {
+				Factor f = it.next();
+				if (f.indexOf(var) < 0)
+					continue;
+				product = product == null ? f : product.multiply(f);
+				it.remove();
+			}
+			if (product != null)
+				factors.add(product.sumOut(product.indexOf(var)));
+		}
+
+		Factor result = factors.get(0);
+		for (int i = 1; i < factors.size(); i++)
+			result = result.multiply(factors.get(i));
+
+		double[] res = new double[domainSize];
+		double total = 0d;
+		for (int v = 0; v < domainSize; v++) {
+			res[v] = result.values[v];
+			total += res[v];
+		}
+		if (!(total > 0d))
+			throw new IllegalArgumentException("evidence "+variable2value+" has a null probability");
+		for (int v = 0; v < domainSize; v++)
+			res[v] /= total;
+		return res;
+	}
+
+	/*
+	 * Relevant factors are the ones of the ancestors of query and evidence nodes. Hidden variables
+	 * are eliminated following a greedy min-degree order over the graph of the reduced factors
+	 */
+	private EliminationPlan plan(PlanKey key) {
+
+		BitSet relevant = new BitSet(nodes.size());
+		addAncestors(key.query, relevant);
+		for (int slot = key.evidence.nextSetBit(0); slot >= 0; slot = key.evidence.nextSetBit(slot+1))
+			addAncestors(slot, relevant);
+
+		Map<Integer,Set<Integer>> neighbours = new HashMap<>();
+		for (int slot = relevant.nextSetBit(0); slot >= 0; slot = relevant.nextSetBit(slot+1)) {
+			List<Integer> clique = new ArrayList<>();
+			for (int var: cptFactors[slot].vars)
+				if (!key.evidence.get(var))
+					clique.add(var);
+			for (int var: clique) {
+				Set<Integer> ns = neighbours.computeIfAbsent(var, k -> new HashSet<>());
+				ns.addAll(clique);
+				ns.remove(var);
+			}
+		}
+		neighbours.remove(key.query);
+		for (Set<Integer> ns: neighbours.values())
+			ns.remove(key.query);
+
+		int[] order = new int[neighbours.size()];
+		for (int i = 0; i < order.length; i++) {
+			int best = -1;
+			for (Map.Entry<Integer,Set<Integer>> e: neighbours.entrySet())
+				if (best < 0 || e.getValue().size() < neighbours.get(best).size()
+						|| (e.getValue().size() == neighbours.get(best).size() && e.getKey() < best))
+					best = e.getKey();
+			order[i] = best;
+			Set<Integer> ns = neighbours.remove(best);
+			for (int n: ns) {
+				Set<Integer> nns = neighbours.get(n);
+				nns.remove(best);
+				nns.addAll(ns);
+				nns.remove(n);
+			}
+		}
+
+		return new EliminationPlan(relevant.stream().toArray(), order);
+	}
+
+	private void addAncestors(int slot, BitSet ancestors) {
+		if (ancestors.get(slot))
+			return;
+		ancestors.set(slot);
+		for (int parent: parentSlots[slot])
+			addAncestors(parent, ancestors);
+	}
+
+	// ------------------------- COMPILATION ------------------------- //
+
+	private void addNode(NodeCategorical n) {
+		if (node2slot.containsKey(n))
+			return;
+		for (NodeCategorical p: n.parentsArray)
+			addNode(p);
+		node2slot.put(n, nodes.size());
+		nodes.add(n);
+	}
+
+	/*
+	 * Factor over the node and its parents, filled through the node own indexing
+	 */
+	private Factor compileCPT(int slot) {
+		NodeCategorical n = nodes.get(slot);
+		int[] vars = new int[parentSlots[slot].length+1];
+		vars[0] = slot;
+		System.arraycopy(parentSlots[slot], 0, vars, 1, parentSlots[slot].length);
+		Arrays.sort(vars);
+		int[] card = new int[vars.length];
+		for (int v = 0; v < vars.length; v++)
+			card[v] = nodes.get(vars[v]).getDomainSize();
+		Factor f = new Factor(vars, card);
+
+		int ownPos = f.indexOf(slot);
+		int[] parentPos = new int[parentSlots[slot].length];
+		for (int p = 0; p < parentPos.length; p++)
+			parentPos[p] = f.indexOf(parentSlots[slot][p]);
+		int[] parentIndices = new int[parentPos.length];
+		for (int i = 0; i < f.values.length; i++) {
+			for (int p = 0; p < parentPos.length; p++)
+				parentIndices[p] = i / f.strides[parentPos[p]] % card[parentPos[p]];
+			BigDecimal proba = n.getProbability(i / f.strides[ownPos] % card[ownPos], parentIndices);
+			f.values[i] = proba == null ? 0d : proba.doubleValue();
+		}
+		return f;
+	}
+
+	// ------------------------- INNER CLASSES ------------------------- //
+
+	/*
+	 * Table over sorted node slots, the first variable varying the fastest
+	 */
+	private static final class Factor {
+
+		private final int[] vars;
+		private final int[] card;
+		private final int[] strides;
+		private final double[] values;
+
+		private Factor(int[] vars, int[] card) {
+			this.vars = vars;
+			this.card = card;
+			this.strides = new int[vars.length];
+			int size = 1;
+			for (int v = 0; v < vars.length; v++) {
+				strides[v] = size;
+				size = Math.multiplyExact(size, card[v]);
+			}
+			this.values = new double[size];
+		}
+
+		private int indexOf(int var) {
+			for (int v = 0; v < vars.length; v++)
+				if (vars[v] == var)
+					return v;
+			return -1;
+		}
+
+		private Factor multiply(Factor other) {
+			int[] unionVars = new int[vars.length+other.vars.length];
+			int[] unionCard = new int[unionVars.length];
+			int n = 0, i = 0, j = 0;
+			while (i < vars.length || j < other.vars.length) {
+				if (j == other.vars.length || (i < vars.length && vars[i] < other.vars[j])) {
+					unionCard[n] = card[i];
+					unionVars[n++] = vars[i++];
+				} else if (i == vars.length || other.vars[j] < vars[i]) {
+					unionCard[n] = other.card[j];
+					unionVars[n++] = other.vars[j++];
+				} else {
+					unionCard[n] = card[i];
+					unionVars[n++] = vars[i++];
+					j++;
+				}
+			}
+			Factor res = new Factor(Arrays.copyOf(unionVars, n), Arrays.copyOf(unionCard, n));
+
+			int[] strideA = new int[n], strideB = new int[n];
+			for (int v = 0; v < n; v++) {
+				int a = indexOf(res.vars[v]), b = other.indexOf(res.vars[v]);
+				strideA[v] = a < 0 ? 0 : strides[a];
+				strideB[v] = b < 0 ? 0 : other.strides[b];
+			}
+			int[] assignment = new int[n];
+			int a = 0, b = 0;
+			for (int k = 0; k < res.values.length; k++) {
+				res.values[k] = values[a] * other.values[b];
+				for (int v = 0; v < n; v++) {
+					if (++assignment[v] == res.card[v]) {
+						assignment[v] = 0;
+						a -= (res.card[v]-1) * strideA[v];
+						b -= (res.card[v]-1) * strideB[v];
+					} else {
+						a += strideA[v];
+						b += strideB[v];
+						break;
+					}
+				}
+			}
+			return res;
+		}
+
+		private Factor sumOut(int pos) {
+			Factor res = new Factor(remove(vars, pos), remove(card, pos));
+			int stride = strides[pos], block = stride * card[pos];
+			for (int k = 0; k < values.length; k++)
+				res.values[k % stride + k / block * stride] += values[k];
+			return res;
+		}
+
+		private Factor reduce(int pos, int value) {
+			Factor res = new Factor(remove(vars, pos), remove(card, pos));
+			int stride = strides[pos], block = stride * card[pos];
+			for (int k = 0; k < res.values.length; k++)
+				res.values[k] = values[k % stride + value * stride + k / stride * block];
+			return res;
+		}
+
+		private static int[] remove(int[] array, int pos) {
+			int[] res = new int[array.length-1];
+			System.arraycopy(array, 0, res, 0, pos);
+			System.arraycopy(array, pos+1, res, pos, array.length-pos-1);
+			return res;
+		}
+
+	}
+
+	private static final class EliminationPlan {
+
+		private final int[] factorSlots;
+		private final int[] order;
+
+		private EliminationPlan(int[] factorSlots, int[] order) {
+			this.factorSlots = factorSlots;
+			this.order = order;
+		}
+
+	}
+
+	private static final class PlanKey {
+
+		private final int query;
+		private final BitSet evidence;
+
+		private PlanKey(int query, BitSet evidence) {
+			this.query = query;
+			this.evidence = evidence;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * query + evidence.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof PlanKey && ((PlanKey) obj).query == query
+					&& ((PlanKey) obj).evidence.equals(evidence);
+		}
+
+	}
+
+}
@@ -1,9 +1,14 @@
 package gospl.algo.generator;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.stream.Collectors;
 
 import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationEntity;
 import core.metamodel.pop.APopulationValue;
+import gospl.GosplColumnarPopulation;
 import gospl.GosplPopulation;
 import gospl.algo.sampler.ISampler;
 import gospl.algo.sampler.evaluation.IEvaluableSampler;
@@ -22,15 +27,36 @@ import gospl.entity.GosplEntity;
 public class DistributionBasedGenerator implements ISyntheticGosplPopGenerator {
 	
 	private ISampler< ACoordinate<APopulationAttribute, APopulationValue>> sampler;
+	private boolean columnar;
 	
 	public DistributionBasedGenerator(ISampler< ACoordinate<APopulationAttribute, APopulationValue>> sampler) {
+		this(sampler, false);
+	}
+	
+	/**
+	 * Generator that can build a compact {@link GosplColumnarPopulation} rather than
+	 * a population of {@link GosplEntity}
+	 * 
+	 * @param sampler
+	 * @param columnar
+	 */
+	public DistributionBasedGenerator(ISampler< ACoordinate<APopulationAttribute, APopulationValue>> sampler,
+			boolean columnar) {
 		this.sampler = sampler;
+		this.columnar = columnar;
 	}
 	
 	@Override
 	public GosplPopulation generate(int numberOfIndividual) {
-		GosplPopulation pop = new GosplPopulation();
-		pop.addAll(sampler.draw(numberOfIndividual).parallelStream().map(coord -> new GosplEntity(coord.getMap())).collect(Collectors.toSet()));
+		GosplPopulation pop;
+		if(columnar){
+			GosplColumnarPopulation columnarPop = new GosplColumnarPopulation(numberOfIndividual);
+			sampler.draw(numberOfIndividual).stream().forEach(columnarPop::add);
+			pop = columnarPop;
+		} else {
+			pop = new GosplPopulation();
+			pop.addAll(sampler.draw(numberOfIndividual).parallelStream().map(coord -> new GosplEntity(coord.getMap())).collect(Collectors.toSet()));
+		}
 		
 		// TODO à faire ou pas ?
 		if (sampler instanceof IEvaluableSampler) {
@@ -40,5 +66,25 @@ public class DistributionBasedGenerator implements ISyntheticGosplPopGenerator {
 		
 		return pop;
 	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Coordinates are drawn batch by batch and turned into entities in draw order: no intermediate
+	 * set of entities is built. Sampler evaluation, if any, is not performed since it requires
+	 * the whole population
+	 */
+	@Override
+	public void generate(int numberOfIndividual, int batchSize, IPopulationSink sink) throws IOException {
+		if(batchSize < 1)
+			throw new IllegalArgumentException("Batch size must be strictly positive (was "+batchSize+")");
+		for(int generated = 0; generated < numberOfIndividual; generated += batchSize){
+			Collection<APopulationEntity> batch = new ArrayList<>(Math.min(batchSize, numberOfIndividual - generated));
+			for(ACoordinate<APopulationAttribute, APopulationValue> coord : 
+				sampler.draw(Math.min(batchSize, numberOfIndividual - generated)))
+				batch.add(new GosplEntity(coord.getMap()));
+			sink.consume(batch);
+		}
+	}
 
 }
@@ -0,0 +1,37 @@
+package gospl.algo.generator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+
+import core.metamodel.pop.APopulationEntity;
+
+/**
+ * Receiver of entities generated in batches (see {@link ISyntheticGosplPopGenerator#generate(int, int, IPopulationSink)}):
+ * a sink can write entities to a file, store them in a population or localize them, without
+ * the whole population being held in memory
+ * <p>
+ * Batches are not reused by generators once consumed, but should not be kept by the sink
+ * if memory is to stay bounded
+ * 
+ * @author kevinchapuis
+ *
+ */
+@FunctionalInterface
+public interface IPopulationSink extends Closeable {
+
+	/**
+	 * Consume a batch of generated entities
+	 * 
+	 * @param batch
+	 * @throws IOException
+	 */
+	public void consume(Collection<APopulationEntity> batch) throws IOException;
+	
+	/**
+	 * Release any resources held by this sink: default does nothing
+	 */
+	@Override
+	public default void close() throws IOException {}
+	
+}
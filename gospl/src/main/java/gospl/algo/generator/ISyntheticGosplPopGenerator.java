@@ -1,9 +1,32 @@
 package gospl.algo.generator;
 
+import java.io.IOException;
+import java.util.ArrayList;
+
 import gospl.GosplPopulation;
 
 public interface ISyntheticGosplPopGenerator {
 
 	public GosplPopulation generate(int numberOfIndividual);
 	
+	/**
+	 * Generate {@code numberOfIndividual} entities and push them to {@code sink} in batches of
+	 * at most {@code batchSize} entities: only one batch is held in memory at a time.
+	 * The sink is not closed by this method
+	 * <p>
+	 * Default implementation generates a population for each batch
+	 * 
+	 * @param numberOfIndividual
+	 * @param batchSize
+	 * @param sink
+	 * @throws IOException if the sink fails to consume a batch
+	 * @throws IllegalArgumentException if {@code batchSize} is not strictly positive
+	 */
+	public default void generate(int numberOfIndividual, int batchSize, IPopulationSink sink) throws IOException {
+		if(batchSize < 1)
+			throw new IllegalArgumentException("Batch size must be strictly positive (was "+batchSize+")");
+		for(int generated = 0; generated < numberOfIndividual; generated += batchSize)
+			sink.consume(new ArrayList<>(generate(Math.min(batchSize, numberOfIndividual - generated))));
+	}
+	
 }
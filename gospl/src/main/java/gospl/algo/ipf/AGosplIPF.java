@@ -4,7 +4,6 @@ import java.text.DecimalFormat;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
@@ -21,9 +20,6 @@ import gospl.algo.sampler.IDistributionSampler;
 import gospl.algo.sampler.IEntitySampler;
 import gospl.distribution.matrix.AFullNDimensionalMatrix;
 import gospl.distribution.matrix.INDimensionalMatrix;
-import gospl.distribution.matrix.control.AControl;
-import gospl.distribution.matrix.control.ControlFrequency;
-import gospl.distribution.matrix.coordinate.ACoordinate;
 
 /**
  * 
@@ -54,6 +50,8 @@ public abstract class AGosplIPF<T extends Number> {
 
 	private int step = 1000;
 	private double delta = Math.pow(10, -2);
+	private int threadCount = 1;
+	private int cellBlockSize = GosplCompiledIPF.DEFAULT_CELL_BLOCK_SIZE;
 
 	public static double ZERO_CELL_RATIO = Math.pow(10, -3);
 
@@ -116,6 +114,31 @@ public abstract class AGosplIPF<T extends Number> {
 		this.delta = delta;
 	}
 
+	/**
+	 * Setup the number of threads used to fit marginals: default is one, i.e. sequential fitting.
+	 * Fitting results do not depend on the number of threads as long as it is greater than one
+	 * 
+	 * @see GosplCompiledIPF#setThreadCount(int)
+	 * @param threadCount
+	 */
+	protected void setThreadCount(int threadCount) {
+		if(threadCount < 1)
+			throw new IllegalArgumentException("Thread count must be at least 1 but is "+threadCount);
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Setup the maximum number of cells adjusted by one fork-join task when more than one thread is used
+	 * 
+	 * @see GosplCompiledIPF#GosplCompiledIPF(AFullNDimensionalMatrix, Collection, int)
+	 * @param cellBlockSize
+	 */
+	protected void setCellBlockSize(int cellBlockSize) {
+		if(cellBlockSize < 1)
+			throw new IllegalArgumentException("Cell block size must be at least 1 but is "+cellBlockSize);
+		this.cellBlockSize = cellBlockSize;
+	}
+
 	//////////////////////////////////////////////////////////////
 	// ------------------------- ALGO ------------------------- //
 	//////////////////////////////////////////////////////////////
@@ -143,6 +166,9 @@ public abstract class AGosplIPF<T extends Number> {
 	 * <p>
 	 * There is other algorithm for IPF. This one is the most simple one and also the more
 	 * adaptable to a n-dimensional matrix, because it does not include any matrix calculation
+	 * <p>
+	 * Fitting iterations are run by a {@link GosplCompiledIPF} built once from seed and marginals,
+	 * using fork-join when more than one thread has been setup
 	 * 
 	 * @param seed
 	 * @return
@@ -168,40 +194,11 @@ public abstract class AGosplIPF<T extends Number> {
 
 		Collection<AMargin<T>> marginals = marginalProcessor.buildCompliantMarginals(this.marginals, seed, true);
 
-		int stepIter = step;
-		boolean convergentDelta = false;
-		logger.trace("Convergence criteria are: step = {} | delta = {}", step, delta);
-		logger.trace("Start fitting iterations");
-
-		while(stepIter-- > 0 ? !convergentDelta : false){
-			if(stepIter % (int) (step * 0.1) == 0d)
-				logger.debug("Step = {} | convergence {}", step - stepIter, convergentDelta);
-			for(AMargin<T> margin : marginals){
-				for(Set<APopulationValue> seedMarginalDescriptor : margin.getSeedMarginalDescriptors()){
-					AControl<Double> factor = new ControlFrequency(
-							margin.getControl(seedMarginalDescriptor).getValue().doubleValue() / 
-							seed.getVal(seedMarginalDescriptor).getValue().doubleValue());
-					Collection<ACoordinate<APopulationAttribute, APopulationValue>> relatedCoordinates = 
-							seed.getCoordinates(seedMarginalDescriptor); 
-					for(ACoordinate<APopulationAttribute, APopulationValue> coord : relatedCoordinates)
-						seed.getVal(coord).multiply(factor);
-					logger.trace("Work on value set {} and related {} coordinates; factor = {}",
-							Arrays.toString(seedMarginalDescriptor.toArray()), 
-							relatedCoordinates.size(), factor.getValue());
-			}
-		}
-		if(marginals.stream().allMatch(m -> m.getSeedMarginalDescriptors()
-				.stream().allMatch(sd -> seed.getVal(sd).equalsVal(m.getControl(sd), delta))))
-			convergentDelta = true;
-		// TODO: better log and get back to debug
-		logger.trace("There is some delta exceeding convergence criteria\n{}", marginals.stream()
-				.map(margin -> margin.getSeedDimension().getAttributeName()+" IPF computed values:\n"+
-						margin.getSeedMarginalDescriptors().stream().map(smd -> Arrays.toString(smd.toArray())
-								+" => "+margin.getControl(smd)+" | "+seed.getVal(smd))
-						.reduce("", (s1, s2) -> s1.concat(s2+"\n")))
-				.reduce("", (s1, s2) -> s1.concat(s2)));
+		GosplCompiledIPF<T> compiledIPF = new GosplCompiledIPF<>(seed, marginals, cellBlockSize);
+		compiledIPF.setThreadCount(threadCount);
+		int iterations = compiledIPF.fit(step, delta);
+		logger.debug("IPF fitted in {} iterations (convergence {})", iterations, compiledIPF.isConvergent());
+		return compiledIPF.updateSeed();
 	}
-	return seed;
-}
 
 }
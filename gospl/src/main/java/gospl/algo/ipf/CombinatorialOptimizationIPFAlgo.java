@@ -26,6 +26,14 @@ public class CombinatorialOptimizationIPFAlgo extends AGosplIPF<Integer> impleme
 		super.setMarginalMatrix(matrix);
 	}
 	
+	public CombinatorialOptimizationIPFAlgo(IPopulation<APopulationEntity, APopulationAttribute, APopulationValue> seed,
+			INDimensionalMatrix<APopulationAttribute, APopulationValue, Integer> matrix,
+			int step, double delta, int threadCount) {
+		super(seed, step, delta);
+		super.setMarginalMatrix(matrix);
+		super.setThreadCount(threadCount);
+	}
+	
 	@Override
 	public ISampler<APopulationEntity> inferCOSampler(
 			IPopulation<APopulationEntity, APopulationAttribute, APopulationValue> sample, 
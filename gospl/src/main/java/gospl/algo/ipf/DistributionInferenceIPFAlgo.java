@@ -23,6 +23,18 @@ public class DistributionInferenceIPFAlgo extends AGosplIPF<Double> implements I
 			int step, double delta) {
 		super(seed, step, delta);
 	}
+	
+	public DistributionInferenceIPFAlgo(IPopulation<APopulationEntity, APopulationAttribute, APopulationValue> seed,
+			int step, double delta, int threadCount) {
+		super(seed, step, delta);
+		super.setThreadCount(threadCount);
+	}
+	
+	public DistributionInferenceIPFAlgo(IPopulation<APopulationEntity, APopulationAttribute, APopulationValue> seed,
+			int step, double delta, int threadCount, int cellBlockSize) {
+		this(seed, step, delta, threadCount);
+		super.setCellBlockSize(cellBlockSize);
+	}
 
 	@Override
 	public ISampler<ACoordinate<APopulationAttribute, APopulationValue>> inferSRSampler(
@@ -0,0 +1,398 @@
+package gospl.algo.ipf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import gospl.algo.ipf.margin.AMargin;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.control.ControlFrequency;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+
+/**
+ * Compiled form of the <i>estimation factor</i> IPF algorithm (see {@link AGosplIPF#process(AFullNDimensionalMatrix)}):
+ * seed matrix and marginals are translated once into primitive arrays, so that fitting iterations do
+ * not allocate any coordinate nor control:
+ * <p>
+ * <ul>
+ * <li> seed cells are copied into a {@code double[]}, ordered as given by {@link AFullNDimensionalMatrix#getCoordinates(Set)}
+ * <li> each seed marginal descriptor is compiled into the ascending array of the cells it targets, together with its control
+ * <li> marginal sums are cached per margin and only recomputed when a cell has been modified since the last summation,
+ * hence the sums used to check convergence are reused for the first margin of the next iteration
+ * </ul>
+ * <p>
+ * Factors and rounding of contingencies ({@link Integer} controls) are the same as the ones of the control based
+ * algorithm. Fitted values are written back to the seed with {@link #updateSeed()}
+ * <p>
+ * Cells of descriptors that do not share any cell with the other descriptors of their margin are cut into blocks of 
+ * at most {@code cellBlockSize} cells (default is {@link #DEFAULT_CELL_BLOCK_SIZE}): each block is summed on its own, 
+ * then block partial sums are added up in block order. Using more than one thread (see {@link #setThreadCount(int)}), 
+ * blocks are summed and adjusted by fork-join tasks, hence results are identical, to the last bit, whatever the number 
+ * of threads or task scheduling. Frequencies may however differ from the control based algorithm in the last bits 
+ * when a descriptor spans several blocks, because of the different summation order; contingencies are always identical
+ *
+ * @author kevinchapuis
+ *
+ * @param <T>
+ */
+public class GosplCompiledIPF<T extends Number> {
+
+	public static final int DEFAULT_CELL_BLOCK_SIZE = 1 << 14;
+
+	private Logger logger = LogManager.getLogger();
+
+	private final AFullNDimensionalMatrix<T> seed;
+	private final boolean contingency;
+
+	private final int cellBlockSize;
+
+	private final List<ACoordinate<APopulationAttribute, APopulationValue>> coordinates;
+	private final double[] cells;
+
+	// [margin][descriptor][cell index]
+	private final int[][][] descriptorCells;
+	// cells that are summed up to compute factor: differ from descriptor cells when a descriptor
+	// refer to an attribute the seed does not have
+	private final int[][][] summedCells;
+	private final double[][] controls;
+	private final boolean[] disjointDescriptors;
+	private final List<List<Set<APopulationValue>>> descriptors;
+
+	private final double[][] sums;
+	private final boolean[] upToDateSums;
+
+	// [margin][block]: blocks of descriptor cells for fork-join fitting
+	private final int[][] blockDescriptor;
+	private final int[][] blockStart;
+	private final double[][] blockSums;
+	private final double[][] factors;
+
+	private int threadCount = 1;
+	private ForkJoinPool pool = null;
+
+	private boolean convergent = false;
+
+	/**
+	 * Compile the seed and marginals: from now on, any modification of the seed will be ignored
+	 * until the fit is over and {@link #updateSeed()} has been called
+	 *
+	 * @param seed
+	 * @param marginals
+	 */
+	public GosplCompiledIPF(AFullNDimensionalMatrix<T> seed, Collection<AMargin<T>> marginals) {
+		this(seed, marginals, DEFAULT_CELL_BLOCK_SIZE);
+	}
+
+	/**
+	 * Compile the seed and marginals, descriptors' cells being cut into blocks of at most
+	 * {@code cellBlockSize} cells for fork-join fitting
+	 *
+	 * @param seed
+	 * @param marginals
+	 * @param cellBlockSize
+	 * @throws IllegalArgumentException if {@code cellBlockSize} is not strictly positive
+	 */
+	public GosplCompiledIPF(AFullNDimensionalMatrix<T> seed, Collection<AMargin<T>> marginals, int cellBlockSize) {
+		if(cellBlockSize < 1)
+			throw new IllegalArgumentException("Cell block size must be at least 1 but is "+cellBlockSize);
+		this.cellBlockSize = cellBlockSize;
+		this.seed = seed;
+		this.contingency = seed.getNulVal().getValue() instanceof Integer;
+
+		this.coordinates = new ArrayList<>(seed.getCoordinates(Collections.emptySet()));
+		this.cells = new double[coordinates.size()];
+		Map<ACoordinate<APopulationAttribute, APopulationValue>, Integer> cellIndex = new HashMap<>(coordinates.size() * 2);
+		for(int i = 0; i < cells.length; i++){
+			cells[i] = seed.getVal(coordinates.get(i)).getValue().doubleValue();
+			cellIndex.put(coordinates.get(i), i);
+		}
+
+		int mCount = marginals.size();
+		this.descriptorCells = new int[mCount][][];
+		this.summedCells = new int[mCount][][];
+		this.controls = new double[mCount][];
+		this.disjointDescriptors = new boolean[mCount];
+		this.descriptors = new ArrayList<>(mCount);
+		this.sums = new double[mCount][];
+		this.upToDateSums = new boolean[mCount];
+		this.blockDescriptor = new int[mCount][];
+		this.blockStart = new int[mCount][];
+		this.blockSums = new double[mCount][];
+		this.factors = new double[mCount][];
+
+		int m = 0;
+		for(AMargin<T> margin : marginals){
+			List<Set<APopulationValue>> mDescriptors = new ArrayList<>(margin.getSeedMarginalDescriptors());
+			descriptors.add(mDescriptors);
+			descriptorCells[m] = new int[mDescriptors.size()][];
+			summedCells[m] = new int[mDescriptors.size()][];
+			controls[m] = new double[mDescriptors.size()];
+			sums[m] = new double[mDescriptors.size()];
+			factors[m] = new double[mDescriptors.size()];
+			BitSet coveredCells = new BitSet(cells.length);
+			disjointDescriptors[m] = true;
+			for(int d = 0; d < mDescriptors.size(); d++){
+				Set<APopulationValue> descriptor = mDescriptors.get(d);
+				// Fail the same way control based algorithm does when descriptor is not part of the seed
+				seed.getVal(descriptor);
+				descriptorCells[m][d] = seed.getCoordinates(descriptor).stream()
+						.mapToInt(cellIndex::get).toArray();
+				summedCells[m][d] = descriptor.stream().allMatch(v -> seed.getDimensions().contains(v.getAttribute())) ?
+						descriptorCells[m][d] : new int[0];
+				controls[m][d] = margin.getControl(descriptor).getValue().doubleValue();
+				for(int cell : descriptorCells[m][d]){
+					if(coveredCells.get(cell))
+						disjointDescriptors[m] = false;
+					coveredCells.set(cell);
+				}
+			}
+			buildBlocks(m);
+			m++;
+		}
+		logger.debug("Compiled IPF: {} cells and {} margins ({} descriptors)", cells.length, mCount,
+				Arrays.stream(controls).mapToInt(c -> c.length).sum());
+	}
+
+	/*
+	 * Cut the cells of each descriptor of margin m into blocks of at most cellBlockSize cells
+	 */
+	private void buildBlocks(int m) {
+		int blockCount = Arrays.stream(descriptorCells[m])
+				.mapToInt(dCells -> Math.max(1, (dCells.length + cellBlockSize - 1) / cellBlockSize)).sum();
+		blockDescriptor[m] = new int[blockCount];
+		blockStart[m] = new int[blockCount];
+		blockSums[m] = new double[blockCount];
+		int b = 0;
+		for(int d = 0; d < descriptorCells[m].length; d++){
+			int start = 0;
+			do {
+				blockDescriptor[m][b] = d;
+				blockStart[m][b++] = start;
+				start += cellBlockSize;
+			} while(start < descriptorCells[m][d].length);
+		}
+	}
+
+	/**
+	 * Set the number of threads used to fit margins: default is 1, i.e. sequential fitting
+	 * 
+	 * @param threadCount
+	 */
+	public void setThreadCount(int threadCount) {
+		if(threadCount < 1)
+			throw new IllegalArgumentException("Thread count must be at least 1 but is "+threadCount);
+		this.threadCount = threadCount;
+	}
+
+	// ------------------------- FIT ------------------------- //
+
+	/**
+	 * Iterate over marginals until convergence criteria are fulfill: either every marginal sum
+	 * differs from its control by less than {@code delta} (proportional difference) or {@code step}
+	 * iterations have been done
+	 *
+	 * @param step
+	 * @param delta
+	 * @return the number of iterations done
+	 */
+	public int fit(int step, double delta) {
+		int stepIter = step;
+		int iteration = 0;
+		int logStep = Math.max(1, (int) (step * 0.1));
+		convergent = false;
+		logger.trace("Convergence criteria are: step = {} | delta = {}", step, delta);
+		logger.trace("Start fitting iterations");
+
+		if(threadCount > 1)
+			pool = new ForkJoinPool(threadCount);
+		try {
+			while(stepIter-- > 0 ? !convergent : false){
+				if(stepIter % logStep == 0)
+					logger.debug("Step = {} | convergence {}", step - stepIter, convergent);
+				for(int m = 0; m < controls.length; m++)
+					fitMargin(m);
+				convergent = isFitted(delta);
+				iteration++;
+			}
+		} finally {
+			if(pool != null)
+				pool.shutdown();
+			pool = null;
+		}
+		return iteration;
+	}
+
+	/**
+	 * Whether last call to {@link #fit(int, double)} did converge
+	 *
+	 * @return
+	 */
+	public boolean isConvergent() {
+		return convergent;
+	}
+
+	/**
+	 * Write fitted values back into the seed matrix
+	 *
+	 * @return the seed matrix
+	 */
+	public AFullNDimensionalMatrix<T> updateSeed() {
+		for(int i = 0; i < cells.length; i++)
+			seed.setValue(coordinates.get(i), new ControlFrequency(cells[i]));
+		return seed;
+	}
+
+	// ------------------------- KERNEL ------------------------- //
+
+	/*
+	 * Adjust cells of each descriptor of margin m. When descriptors share cells,
+	 * descriptor sums must be computed one after the other
+	 */
+	private void fitMargin(int m) {
+		int[][] mCells = descriptorCells[m];
+		if(disjointDescriptors[m]){
+			computeSums(m);
+			for(int d = 0; d < mCells.length; d++)
+				factors[m][d] = controls[m][d] / sums[m][d];
+			forEachBlock(m, b -> multiply(mCells[blockDescriptor[m][b]], blockStart[m][b], 
+					blockEnd(m, b), factors[m][blockDescriptor[m][b]]));
+		} else {
+			for(int d = 0; d < mCells.length; d++){
+				factors[m][d] = controls[m][d] / sum(summedCells[m][d], 0, summedCells[m][d].length);
+				multiply(mCells[d], 0, mCells[d].length, factors[m][d]);
+			}
+		}
+		if(logger.isTraceEnabled())
+			for(int d = 0; d < mCells.length; d++)
+				logger.trace("Work on value set {} and related {} coordinates; factor = {}",
+						Arrays.toString(descriptors.get(m).get(d).toArray()), mCells[d].length, factors[m][d]);
+		Arrays.fill(upToDateSums, false);
+	}
+
+	/*
+	 * Convergence is checked against cached sums, and stops at the first unfitted descriptor
+	 */
+	private boolean isFitted(double delta) {
+		for(int m = 0; m < controls.length; m++){
+			computeSums(m);
+			for(int d = 0; d < controls[m].length; d++){
+				boolean fitted = contingency ?
+						Math.abs((int) sums[m][d] - (int) controls[m][d]) < (int) sums[m][d] * delta :
+						Math.abs(sums[m][d] - controls[m][d]) < sums[m][d] * delta;
+				if(!fitted)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	private void computeSums(int m) {
+		if(upToDateSums[m])
+			return;
+		if(disjointDescriptors[m]){
+			forEachBlock(m, b -> blockSums[m][b] = sum(summedCells[m][blockDescriptor[m][b]], 
+					blockStart[m][b], blockEnd(m, b)));
+			Arrays.fill(sums[m], 0d);
+			for(int b = 0; b < blockSums[m].length; b++)
+				sums[m][blockDescriptor[m][b]] = contingency ? 
+						(int) sums[m][blockDescriptor[m][b]] + (int) blockSums[m][b] :
+							sums[m][blockDescriptor[m][b]] + blockSums[m][b];
+		} else {
+			for(int d = 0; d < sums[m].length; d++)
+				sums[m][d] = sum(summedCells[m][d], 0, summedCells[m][d].length);
+		}
+		upToDateSums[m] = true;
+	}
+
+	/*
+	 * Sum in ascending cell order, using integer arithmetic for contingencies,
+	 * just like AFullNDimensionalMatrix#getVal(Collection) does
+	 */
+	private double sum(int[] sCells, int from, int to) {
+		to = Math.min(to, sCells.length);
+		if(contingency){
+			int sum = 0;
+			for(int i = from; i < to; i++)
+				sum += (int) cells[sCells[i]];
+			return sum;
+		}
+		double sum = 0d;
+		for(int i = from; i < to; i++)
+			sum += cells[sCells[i]];
+		return sum;
+	}
+
+	/*
+	 * Multiply cells using the same rounding as ControlContingency#multiply for contingencies
+	 */
+	private void multiply(int[] mCells, int from, int to, double factor) {
+		if(contingency)
+			for(int i = from; i < to; i++)
+				cells[mCells[i]] = Math.round((float) Math.round(cells[mCells[i]] * factor));
+		else
+			for(int i = from; i < to; i++)
+				cells[mCells[i]] *= factor;
+	}
+
+	private int blockEnd(int m, int block) {
+		return Math.min(blockStart[m][block] + cellBlockSize, 
+				descriptorCells[m][blockDescriptor[m][block]].length);
+	}
+
+	// ------------------------- FORK JOIN ------------------------- //
+
+	/*
+	 * Blocks are processed one after the other when fitting is sequential
+	 */
+	private void forEachBlock(int m, IntConsumer blockAction) {
+		if(pool == null)
+			for(int b = 0; b < blockDescriptor[m].length; b++)
+				blockAction.accept(b);
+		else
+			pool.invoke(new BlockTask(0, blockDescriptor[m].length, blockAction));
+	}
+
+	/*
+	 * Recursively split a range of blocks until each task handle one block
+	 */
+	@SuppressWarnings("serial")
+	private static final class BlockTask extends RecursiveAction {
+
+		private final int from;
+		private final int to;
+		private final IntConsumer blockAction;
+
+		private BlockTask(int from, int to, IntConsumer blockAction) {
+			this.from = from;
+			this.to = to;
+			this.blockAction = blockAction;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= 1){
+				if(to > from)
+					blockAction.accept(from);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new BlockTask(from, mid, blockAction), new BlockTask(mid, to, blockAction));
+		}
+
+	}
+
+}
@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
@@ -29,6 +30,7 @@ import gospl.distribution.matrix.INDimensionalMatrix;
 import gospl.distribution.matrix.control.AControl;
 import gospl.distribution.matrix.coordinate.ACoordinate;
 import gospl.distribution.matrix.coordinate.GosplCoordinate;
+import gospl.distribution.matrix.dense.DenseMatrixLayout;
 
 
 /**
@@ -54,6 +56,24 @@ import gospl.distribution.matrix.coordinate.GosplCoordinate;
 public class IndependantHypothesisAlgo implements ISyntheticReconstructionAlgo<IDistributionSampler> {
 
 	private Logger logger = LogManager.getLogger();
+	
+	private boolean parallel;
+	
+	public IndependantHypothesisAlgo() {
+		this(false);
+	}
+	
+	/**
+	 * When {@code parallel} is true, {@link #inferSRSampler(INDimensionalMatrix, IDistributionSampler)} does not
+	 * build the cartesian product of attribute values: cells of the joint distribution are enumerated
+	 * as mixed-radix indices of a dense distribution (see {@link GosplNDimensionalMatrixFactory#createEmptyDenseDistribution(Set)})
+	 * and evaluated in parallel chunks
+	 * 
+	 * @param parallel
+	 */
+	public IndependantHypothesisAlgo(boolean parallel) {
+		this.parallel = parallel;
+	}
 
 	@Override
 	public ISampler<ACoordinate<APopulationAttribute, APopulationValue>> inferSRSampler(
@@ -81,6 +101,11 @@ public class IndependantHypothesisAlgo implements ISyntheticReconstructionAlgo<I
 				.stream().filter(att -> att.getReferentAttribute().equals(att))
 				.collect(Collectors.toSet());
 		
+		if(parallel){
+			sampler.setDistribution(this.inferDenseDistribution(matrix, targetedDimensions, gspu));
+			return sampler;
+		}
+		
 		// Setup the matrix to estimate 
 		AFullNDimensionalMatrix<Double> freqMatrix = new GosplNDimensionalMatrixFactory().createEmptyDistribution(targetedDimensions);
 		
@@ -289,6 +314,33 @@ public class IndependantHypothesisAlgo implements ISyntheticReconstructionAlgo<I
 	
 	// ------------------------------ inner utility methods ------------------------------ //
 
+	/*
+	 * Fill in a dense distribution: each cell offset is the mixed-radix index of a combination of values,
+	 * so the values of a cell are decoded from its offset to read the value from the input matrix,
+	 * and no coordinate is built
+	 */
+	private AFullNDimensionalMatrix<Double> inferDenseDistribution(
+			INDimensionalMatrix<APopulationAttribute, APopulationValue, Double> matrix, 
+			Set<APopulationAttribute> targetedDimensions, GSPerformanceUtil gspu){
+		AFullNDimensionalMatrix<Double> freqMatrix = new GosplNDimensionalMatrixFactory().createEmptyDenseDistribution(targetedDimensions);
+		DenseMatrixLayout layout = freqMatrix.getDenseMatrix().getLayout();
+		
+		gspu.sysoStempMessage("Start writting down collpased dense distribution of size "+layout.getCellCount());
+		
+		// Values are computed by offset, then written and indexed in one bulk pass
+		double[] values = new double[layout.getCellCount()];
+		IntStream.range(0, values.length).parallel().forEach(offset -> {
+			APopulationValue[] aspects = new APopulationValue[layout.getDimensionCount()];
+			for(int d = 0; d < aspects.length; d++)
+				aspects[d] = layout.getValue(d, layout.getOrdinal(offset, d));
+			values[offset] = matrix.getVal(Arrays.asList(aspects)).getValue().doubleValue();
+		});
+		freqMatrix.setDenseValues(values);
+		
+		gspu.sysoStempPerformance(1, this);
+		return freqMatrix;
+	}
+	
 	
 	private Map<Set<APopulationValue>, Double> updateGosplProbaMap(Map<Set<APopulationValue>, Double> sampleDistribution, 
 			AFullNDimensionalMatrix<Double> matrix, GSPerformanceUtil gspu){
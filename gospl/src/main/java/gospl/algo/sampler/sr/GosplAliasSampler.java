@@ -6,8 +6,6 @@ import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,10 +13,12 @@ import org.apache.logging.log4j.Logger;
 import core.metamodel.pop.APopulationAttribute;
 import core.metamodel.pop.APopulationValue;
 import core.util.random.GenstarRandom;
+import core.util.random.GenstarSplittableRandom;
 import gospl.algo.sampler.IDistributionSampler;
 import gospl.distribution.matrix.AFullNDimensionalMatrix;
 import gospl.distribution.matrix.control.AControl;
 import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinateInterner;
 
 /******************************************************************************
  * File: AliasMethod.java
@@ -60,7 +60,9 @@ public class GosplAliasSampler implements IDistributionSampler {
 		Map<ACoordinate<APopulationAttribute, APopulationValue>, AControl<Double>> orderedDistribution = 
 				distribution.getOrderedMatrix();
 		
-		this.indexedKey = new ArrayList<>(orderedDistribution.keySet());
+		GosplCoordinateInterner interner = GosplCoordinateInterner.of(distribution);
+		this.indexedKey = orderedDistribution.keySet().stream().map(interner::intern)
+				.collect(Collectors.toList());
 		this.initProba = orderedDistribution.values().stream().map(AControl::getValue)
 				.collect(Collectors.toList());
 		
@@ -140,11 +142,12 @@ public class GosplAliasSampler implements IDistributionSampler {
 	/**
 	 * {@inheritDoc}
 	 * <p>
-	 * WARNING: make use of {@link Stream#parallel()}
+	 * WARNING: make use of parallelism through {@link GenstarSplittableRandom}, 
+	 * draws are reproducible for a given {@link GenstarRandom} seed
 	 */
 	@Override
 	public final List<ACoordinate<APopulationAttribute, APopulationValue>> draw(int numberOfDraw) {
-		return IntStream.range(0, numberOfDraw).parallel().mapToObj(i -> draw()).collect(Collectors.toList());
+		return GenstarSplittableRandom.parallelDraws(numberOfDraw, this::draw);
 	}
 	
 	/**
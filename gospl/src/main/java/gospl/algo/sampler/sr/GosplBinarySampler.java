@@ -4,17 +4,17 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 import core.metamodel.pop.APopulationAttribute;
 import core.metamodel.pop.APopulationValue;
 import core.util.GSPerformanceUtil;
 import core.util.random.GenstarRandom;
+import core.util.random.GenstarSplittableRandom;
 import gospl.algo.sampler.IDistributionSampler;
 import gospl.distribution.matrix.AFullNDimensionalMatrix;
 import gospl.distribution.matrix.control.AControl;
 import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinateInterner;
 
 /**
  * Sample method to draw from a discrete distribution, based on binary search algorithm
@@ -47,11 +47,12 @@ public class GosplBinarySampler implements IDistributionSampler {
 		gspu.sysoStempPerformance(0, this);
 		this.indexedKey = new ArrayList<>(distribution.size());
 		this.indexedProbabilitySum = new ArrayList<>(distribution.size());
+		GosplCoordinateInterner interner = GosplCoordinateInterner.of(distribution);
 		double sumOfProbabilities = 0d;
 		int count = 1;
 		for(Entry<ACoordinate<APopulationAttribute, APopulationValue>, AControl<Double>> entry : 
 				distribution.getMatrix().entrySet()){
-			indexedKey.add(entry.getKey());
+			indexedKey.add(interner.intern(entry.getKey()));
 			sumOfProbabilities += entry.getValue().getValue();
 			indexedProbabilitySum.add(sumOfProbabilities);
 			if(count++ % (distribution.size() / 10) == 0)
@@ -91,11 +92,12 @@ public class GosplBinarySampler implements IDistributionSampler {
 	/**
 	 * {@inheritDoc}
 	 * <p>
-	 * WARNING: make use of {@link Stream#parallel()}
+	 * WARNING: make use of parallelism through {@link GenstarSplittableRandom}, 
+	 * draws are reproducible for a given {@link GenstarRandom} seed
 	 */
 	@Override
 	public final List<ACoordinate<APopulationAttribute, APopulationValue>> draw(int numberOfDraw) {
-		return IntStream.range(0, numberOfDraw).parallel().mapToObj(i -> draw()).collect(Collectors.toList());
+		return GenstarSplittableRandom.parallelDraws(numberOfDraw, this::draw);
 	}
 		
 	
@@ -8,8 +8,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -18,7 +16,9 @@ import core.metamodel.IPopulation;
 import core.metamodel.pop.APopulationAttribute;
 import core.metamodel.pop.APopulationEntity;
 import core.metamodel.pop.APopulationValue;
+import core.util.random.GenstarRandom;
 import core.util.random.GenstarRandomUtils;
+import core.util.random.GenstarSplittableRandom;
 import core.util.random.roulette.RouletteWheelSelectionFactory;
 import gospl.algo.sampler.IHierarchicalSampler;
 import gospl.algo.sampler.evaluation.BasicSamplingEvaluation;
@@ -39,12 +39,32 @@ import gospl.distribution.matrix.coordinate.GosplCoordinate;
  */
 public class GosplHierarchicalSampler implements IHierarchicalSampler, IEvaluableSampler {
 
+	/**
+	 * Maximum number of parent value tuples for which the compiled mode computes conditional 
+	 * tables of an attribute at setup: tables of attributes with more tuples are computed on first use
+	 */
+	public static int COMPILED_TABLE_LIMIT = 1 << 16;
+
 	private Logger logger = LogManager.getLogger();
 	private Collection<List<APopulationAttribute>> explorationOrder = null;
 	private ASegmentedNDimensionalMatrix<Double> segmentedMatrix;
 	
+	private boolean compiled;
+	private GosplHierarchicalSamplingPlan samplingPlan = null;
+	
 	public GosplHierarchicalSampler() {
-		// TODO Auto-generated constructor stub
+		this(false);
+	}
+	
+	/**
+	 * When {@code compiled} is true, the exploration is compiled into conditional lookup tables when the distribution 
+	 * is set (see {@link GosplHierarchicalSamplingPlan}): drawing an individual then only requires a few array lookups
+	 * instead of querying the segmented matrix for every value of every attribute
+	 * 
+	 * @param compiled
+	 */
+	public GosplHierarchicalSampler(boolean compiled) {
+		this.compiled = compiled;
 	}
 
 
@@ -60,7 +80,8 @@ public class GosplHierarchicalSampler implements IHierarchicalSampler, IEvaluabl
 			) {
 		this.explorationOrder = explorationOrder;
 		this.segmentedMatrix = segmentedMatrix;
-		
+		if(compiled)
+			this.samplingPlan = new GosplHierarchicalSamplingPlan(explorationOrder, segmentedMatrix);
 	}
 
 	
@@ -68,19 +89,22 @@ public class GosplHierarchicalSampler implements IHierarchicalSampler, IEvaluabl
 
 	@Override
 	public ACoordinate<APopulationAttribute, APopulationValue> draw() {
+		
+		if (samplingPlan != null)
+			return samplingPlan.draw(GenstarRandom.getInstance());
 
 		Map<APopulationAttribute,APopulationValue> att2value = new HashMap<>();
 		
-		logger.info("starting hierarchical sampling...");
+		logger.debug("starting hierarchical sampling...");
 		for (List<APopulationAttribute> subgraph : explorationOrder) {
-			logger.info("starting hierarchical sampling for the first subgraph {}", subgraph);
+			logger.debug("starting hierarchical sampling for the first subgraph {}", subgraph);
 			for (APopulationAttribute att: subgraph) {
 			
 				// maybe we processed it already ? (because of control attributes / mapped aspects)
 				if (att2value.containsKey(att))
 					continue;
 				
-				logger.info("\tsampling att {}", att);
+				logger.debug("\tsampling att {}", att);
 			
 				
 				if (att2value.containsKey(att.getReferentAttribute())) {
@@ -99,12 +123,12 @@ public class GosplHierarchicalSampler implements IHierarchicalSampler, IEvaluabl
 					}
 					APopulationValue theOneMapped = GenstarRandomUtils.oneOf(mappedValues);
 					att2value.put(att, theOneMapped);
-					logger.info("\t\tpicked {} = {} (through referent attribute)", att, theOneMapped);
+					logger.debug("\t\tpicked {} = {} (through referent attribute)", att, theOneMapped);
 
 					
 				} else {
 					
-					logger.info("\tshould pick one of the values {}", att.getValues());
+					logger.debug("\tshould pick one of the values {}", att.getValues());
 	
 					// what we want is the distribution of probabilities for each of these possible values of the current attribute...
 					List<APopulationValue> keys = new ArrayList<>(att.getValues());
@@ -152,7 +176,7 @@ public class GosplHierarchicalSampler implements IHierarchicalSampler, IEvaluabl
 					} else {
 						theOne = RouletteWheelSelectionFactory.getRouletteWheel(distribution,keys).drawObject();
 					}
-					logger.info("\t\tpicked {} = {}", att, theOne);
+					logger.debug("\t\tpicked {} = {}", att, theOne);
 					att2value.put(att, theOne);
 					
 					// well, we defined a value... maybe its defining the value of another thing ?
@@ -167,7 +191,7 @@ public class GosplHierarchicalSampler implements IHierarchicalSampler, IEvaluabl
 						// another random
 						APopulationValue theOneMapped = GenstarRandomUtils.oneOf(mappedValues);
 						att2value.put(att.getReferentAttribute(), theOneMapped);
-						logger.info("\t\tpicked {} = {} (through referent attribute)", att.getReferentAttribute(), theOneMapped);
+						logger.debug("\t\tpicked {} = {} (through referent attribute)", att.getReferentAttribute(), theOneMapped);
 
 					}
 				}
@@ -181,11 +205,12 @@ public class GosplHierarchicalSampler implements IHierarchicalSampler, IEvaluabl
 	/**
 	 * {@inheritDoc}
 	 * <p>
-	 * WARNING: make use of {@link Stream#parallel()}
+	 * WARNING: make use of parallelism through {@link GenstarSplittableRandom}, 
+	 * draws are reproducible for a given {@link GenstarRandom} seed
 	 */
 	@Override
 	public final List<ACoordinate<APopulationAttribute, APopulationValue>> draw(int numberOfDraw) {
-		return IntStream.range(0, numberOfDraw).parallel().mapToObj(i -> draw()).collect(Collectors.toList());
+		return GenstarSplittableRandom.parallelDraws(numberOfDraw, this::draw);
 	}
 	
 	/**
@@ -0,0 +1,348 @@
+package gospl.algo.sampler.sr;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import core.util.random.roulette.PrimitiveAliasTable;
+import gospl.distribution.exception.IllegalNDimensionalMatrixAccess;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.ASegmentedNDimensionalMatrix;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinateInterner;
+
+/**
+ * Compiled form of the exploration made by {@link GosplHierarchicalSampler}: since the set of attributes
+ * already drawn at each step of the exploration does not depend on drawn values, the whole exploration
+ * is turned into a fixed sequence of steps at build time:
+ * <p>
+ * <ul>
+ * <li> attributes drawn through their referent attribute get a table of candidate values
+ * per referent value
+ * <li> other attributes get one alias table per tuple of parent values, parents being the attributes
+ * already drawn that share a matrix with the referent of the attribute. Tables are stored in an array indexed
+ * by the mixed-radix index of the parent tuple: they are all computed at build time when there is
+ * less than {@link GosplHierarchicalSampler#COMPILED_TABLE_LIMIT} tuples, or on first use otherwise
+ * </ul>
+ * <p>
+ * Values are identified by their ordinal in the domain of each attribute: the values of the attribute,
+ * its empty value and any value it can be mapped to
+ *
+ * @author kevinchapuis
+ *
+ */
+class GosplHierarchicalSamplingPlan {
+
+	private Logger logger = LogManager.getLogger();
+
+	private final ASegmentedNDimensionalMatrix<Double> segmentedMatrix;
+
+	private final List<APopulationAttribute> slots = new ArrayList<>();
+	private final Map<APopulationAttribute, Integer> slotIndexes = new HashMap<>();
+	private final List<List<APopulationValue>> domains = new ArrayList<>();
+	private final List<Map<APopulationValue, Integer>> ordinals = new ArrayList<>();
+
+	private final List<AStep> steps = new ArrayList<>();
+	private final GosplCoordinateInterner interner;
+
+	GosplHierarchicalSamplingPlan(Collection<List<APopulationAttribute>> explorationOrder,
+			ASegmentedNDimensionalMatrix<Double> segmentedMatrix){
+		this.segmentedMatrix = segmentedMatrix;
+
+		// Simulate the exploration to know which attributes are drawn and how
+		Set<APopulationAttribute> assigned = new LinkedHashSet<>();
+		for(List<APopulationAttribute> subgraph : explorationOrder){
+			for(APopulationAttribute att : subgraph){
+				if(assigned.contains(att))
+					continue;
+				APopulationAttribute referent = att.getReferentAttribute();
+				if(assigned.contains(referent)){
+					steps.add(new MappedStep(slot(att), slot(referent)));
+					assigned.add(att);
+				} else {
+					Set<APopulationAttribute> parents = new LinkedHashSet<>();
+					for(AFullNDimensionalMatrix<Double> m : segmentedMatrix.getMatricesInvolving(referent))
+						m.getDimensions().stream().filter(assigned::contains).forEach(parents::add);
+					int slot = slot(att);
+					int referentSlot = referent != att ? slot(referent) : -1;
+					steps.add(new DrawStep(slot, parents.stream().mapToInt(this::slot).toArray(), referentSlot));
+					assigned.add(att);
+					if(referentSlot != -1)
+						assigned.add(referent);
+				}
+			}
+		}
+
+		// Candidate values of mapped attributes are part of their domain
+		for(AStep step : steps)
+			step.extendDomains();
+		for(List<APopulationValue> domain : domains){
+			Map<APopulationValue, Integer> index = new HashMap<>();
+			for(int o = 0; o < domain.size(); o++)
+				index.put(domain.get(o), o);
+			ordinals.add(index);
+		}
+		for(AStep step : steps)
+			step.compile();
+
+		Map<APopulationAttribute, Set<APopulationValue>> interned = new LinkedHashMap<>();
+		for(int s = 0; s < slots.size(); s++)
+			interned.put(slots.get(s), new LinkedHashSet<>(domains.get(s)));
+		this.interner = new GosplCoordinateInterner(interned);
+	}
+
+	/**
+	 * Draw one coordinate using {@code random}
+	 *
+	 * @param random
+	 * @return
+	 */
+	ACoordinate<APopulationAttribute, APopulationValue> draw(Random random){
+		int[] drawn = new int[slots.size()];
+		for(AStep step : steps)
+			step.draw(drawn, random);
+		List<APopulationValue> values = new ArrayList<>(slots.size());
+		for(int s = 0; s < slots.size(); s++)
+			values.add(domains.get(s).get(drawn[s]));
+		return interner.intern(values);
+	}
+
+	// ------------------------- INNER UTILITIES ------------------------- //
+
+	private int slot(APopulationAttribute attribute){
+		Integer slot = slotIndexes.get(attribute);
+		if(slot == null){
+			slot = slots.size();
+			slots.add(attribute);
+			slotIndexes.put(attribute, slot);
+			List<APopulationValue> domain = new ArrayList<>(attribute.getValues());
+			if(attribute.getEmptyValue() != null && !domain.contains(attribute.getEmptyValue()))
+				domain.add(attribute.getEmptyValue());
+			domains.add(domain);
+		}
+		return slot;
+	}
+
+	private void extendDomain(int slot, Collection<APopulationValue> values){
+		List<APopulationValue> domain = domains.get(slot);
+		for(APopulationValue value : values)
+			if(!domain.contains(value))
+				domain.add(value);
+	}
+
+	/*
+	 * Ordinals in {@code target} domain of the values {@code source} value maps to through the {@code mapper}
+	 * attribute, or null if there is none
+	 */
+	private int[] getMappedOrdinals(APopulationAttribute mapper, int target, APopulationValue source){
+		Set<APopulationValue> mapped = mapper.findMappedAttributeValues(source);
+		if(mapped.isEmpty())
+			return null;
+		return mapped.stream().mapToInt(value -> ordinals.get(target).get(value)).toArray();
+	}
+
+	/*
+	 * Uniform pick of a mapped value, as in GenstarRandomUtils#oneOf(Set)
+	 */
+	private static int oneOf(int[] candidates, Random random){
+		if(candidates == null)
+			throw new IllegalArgumentException("cannot take one value out of an empty set");
+		if(candidates.length == 1)
+			return candidates[0];
+		return candidates[random.nextInt(candidates.length)];
+	}
+
+	// ------------------------- STEPS ------------------------- //
+
+	private abstract class AStep {
+
+		abstract void extendDomains();
+
+		abstract void compile();
+
+		abstract void draw(int[] drawn, Random random);
+
+	}
+
+	/*
+	 * Attribute which value is picked uniformly among the values mapped to the value of its referent
+	 */
+	private final class MappedStep extends AStep {
+
+		private final int slot;
+		private final int referentSlot;
+		private int[][] candidates;
+
+		private MappedStep(int slot, int referentSlot){
+			this.slot = slot;
+			this.referentSlot = referentSlot;
+		}
+
+		@Override
+		void extendDomains(){
+			for(APopulationValue value : domains.get(referentSlot))
+				extendDomain(slot, slots.get(slot).findMappedAttributeValues(value));
+		}
+
+		@Override
+		void compile(){
+			List<APopulationValue> referentDomain = domains.get(referentSlot);
+			candidates = new int[referentDomain.size()][];
+			for(int o = 0; o < candidates.length; o++)
+				candidates[o] = getMappedOrdinals(slots.get(slot), slot, referentDomain.get(o));
+		}
+
+		@Override
+		void draw(int[] drawn, Random random){
+			drawn[slot] = oneOf(candidates[drawn[referentSlot]], random);
+		}
+
+	}
+
+	/*
+	 * Attribute drawn from its probabilities conditional to the values of parent attributes
+	 */
+	private final class DrawStep extends AStep {
+
+		private final int slot;
+		private final int[] parents;
+		private final int referentSlot;
+
+		private int[] radix;
+		private AtomicReferenceArray<AliasTable> tables;
+		private Map<Long, AliasTable> lazyTables;
+		private int[][] referentCandidates;
+
+		private DrawStep(int slot, int[] parents, int referentSlot){
+			this.slot = slot;
+			this.parents = parents;
+			this.referentSlot = referentSlot;
+		}
+
+		@Override
+		void extendDomains(){
+			if(referentSlot == -1)
+				return;
+			for(APopulationValue value : domains.get(slot))
+				extendDomain(referentSlot, slots.get(slot).findMappedAttributeValues(value));
+		}
+
+		@Override
+		void compile(){
+			radix = new int[parents.length];
+			long tupleCount = 1L;
+			for(int p = 0; p < parents.length; p++){
+				radix[p] = domains.get(parents[p]).size();
+				tupleCount = Math.multiplyExact(tupleCount, radix[p]);
+			}
+			if(tupleCount <= GosplHierarchicalSampler.COMPILED_TABLE_LIMIT){
+				tables = new AtomicReferenceArray<>((int) tupleCount);
+				for(int tuple = 0; tuple < tupleCount; tuple++){
+					try {
+						tables.set(tuple, buildTable(tuple));
+					} catch (IllegalArgumentException | IllegalNDimensionalMatrixAccess e) {
+						// Left to the draw, which will raise the exception if ever this tuple happens
+						logger.debug("No alias table for tuple "+tuple+" of attribute "+slots.get(slot)
+								+": deferred to draw", e);
+					}
+				}
+			} else
+				lazyTables = new ConcurrentHashMap<>();
+			if(referentSlot != -1){
+				List<APopulationValue> domain = domains.get(slot);
+				referentCandidates = new int[domain.size()][];
+				for(int o = 0; o < domain.size(); o++)
+					referentCandidates[o] = getMappedOrdinals(slots.get(slot), referentSlot, domain.get(o));
+			}
+		}
+
+		@Override
+		void draw(int[] drawn, Random random){
+			long tuple = 0L;
+			for(int p = parents.length - 1; p >= 0; p--)
+				tuple = tuple * radix[p] + drawn[parents[p]];
+			AliasTable table;
+			if(tables != null){
+				table = tables.get((int) tuple);
+				if(table == null){
+					table = buildTable(tuple);
+					tables.set((int) tuple, table);
+				}
+			} else
+				table = lazyTables.computeIfAbsent(tuple, this::buildTable);
+			drawn[slot] = table.draw(random);
+			if(referentSlot != -1)
+				drawn[referentSlot] = oneOf(referentCandidates[drawn[slot]], random);
+		}
+
+		/*
+		 * Probabilities of the values of the attribute knowing the values of the parents, as computed by
+		 * GosplHierarchicalSampler#draw(): values without probability are excluded and the empty value is
+		 * drawn if no value has a probability
+		 */
+		private AliasTable buildTable(long tuple){
+			List<APopulationValue> conditions = new ArrayList<>(parents.length + 1);
+			long index = tuple;
+			for(int p = 0; p < parents.length; p++){
+				conditions.add(domains.get(parents[p]).get((int) (index % radix[p])));
+				index /= radix[p];
+			}
+			APopulationAttribute attribute = slots.get(slot);
+			List<Integer> candidates = new ArrayList<>();
+			List<Double> probabilities = new ArrayList<>();
+			double total = 0d;
+			for(APopulationValue value : attribute.getValues()){
+				List<APopulationValue> aspects = new ArrayList<>(conditions);
+				aspects.add(value);
+				try {
+					double probability = segmentedMatrix.getVal(aspects).getValue();
+					total += probability;
+					candidates.add(ordinals.get(slot).get(value));
+					probabilities.add(probability);
+				} catch (NullPointerException e) {
+					// Value excluded from the distribution as it has no probability
+				}
+			}
+			if(candidates.isEmpty() || total == 0d)
+				return new AliasTable(new int[]{ordinals.get(slot).get(attribute.getEmptyValue())}, new double[]{1d});
+			return new AliasTable(candidates.stream().mapToInt(Integer::intValue).toArray(),
+					probabilities.stream().mapToDouble(Double::doubleValue).toArray());
+		}
+
+	}
+
+	/*
+	 * Alias table over a few ordinals (see PrimitiveAliasTable)
+	 */
+	private static final class AliasTable {
+
+		private final int[] values;
+		private final PrimitiveAliasTable table;
+
+		private AliasTable(int[] values, double[] weights){
+			this.values = values;
+			this.table = values.length == 1 ? null : new PrimitiveAliasTable(weights);
+		}
+
+		private int draw(Random random){
+			if(table == null)
+				return values[0];
+			return values[table.drawIndex(random)];
+		}
+
+	}
+
+}
@@ -0,0 +1,154 @@
+package gospl.algo.sampler.sr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import core.util.random.GenstarRandom;
+import core.util.random.GenstarSplittableRandom;
+import core.util.random.roulette.PrimitiveAliasTable;
+import gospl.algo.sampler.IDistributionSampler;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinateInterner;
+
+/**
+ * Alias method sampler (Vose's algorithm, see {@link GosplAliasSampler}) built on primitive tables only:
+ * <p>
+ * <ul>
+ * <li> probability and alias tables are held by a {@link PrimitiveAliasTable}, i.e. {@code double[]} and {@code int[]}
+ * <li> {@link #drawIndices(int, int[])} draws cell indices in bulk into a caller provided array, without boxing
+ * nor intermediate collection. Coordinates can then be retrieved with {@link #getCoordinate(int)}
+ * <li> bulk draws are made in parallel chunks, each of them drawing from its own random engine split from
+ * {@link GenstarRandom} (see {@link GenstarSplittableRandom}): concurrent draws do not contend on a shared
+ * {@link java.util.Random} and are reproducible for a given seed
+ * </ul>
+ * <p>
+ * Cells are indexed in the order given by {@link AFullNDimensionalMatrix#getCoordinates(java.util.Set)}
+ *
+ * @author kevinchapuis
+ *
+ */
+public class GosplPrimitiveAliasSampler implements IDistributionSampler {
+
+	protected Logger logger = LogManager.getLogger();
+
+	private ACoordinate<APopulationAttribute, APopulationValue>[] indexedKey;
+	private double[] initProba;
+
+	/* The probability and alias tables. */
+	private PrimitiveAliasTable table;
+
+	// -------------------- setup methods -------------------- //
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void setDistribution(AFullNDimensionalMatrix<Double> distribution){
+		if(distribution == null)
+			throw new NullPointerException();
+		if(distribution.getMatrix().isEmpty())
+			throw new IllegalArgumentException("Probability vector must be nonempty.");
+
+		List<ACoordinate<APopulationAttribute, APopulationValue>> coordinates =
+				new ArrayList<>(distribution.getCoordinates(Collections.emptySet()));
+		GosplCoordinateInterner interner = GosplCoordinateInterner.of(distribution);
+		int n = coordinates.size();
+		this.indexedKey = new ACoordinate[n];
+		this.initProba = new double[n];
+		double total = 0d;
+		for(int i = 0; i < n; i++){
+			indexedKey[i] = interner.intern(coordinates.get(i));
+			initProba[i] = distribution.getVal(indexedKey[i]).getValue();
+			total += initProba[i];
+		}
+		if(!(total > 0d))
+			throw new IllegalArgumentException("Sum of probabilities for this sampler must be positive (SOP = "+total+")");
+
+		this.table = new PrimitiveAliasTable(initProba);
+	}
+
+	// -------------------- main contract -------------------- //
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * WARNING: make use of parallelism through {@link #drawIndices(int, int[])}
+	 */
+	@Override
+	public final List<ACoordinate<APopulationAttribute, APopulationValue>> draw(int numberOfDraw) {
+		int[] indices = new int[numberOfDraw];
+		drawIndices(numberOfDraw, indices);
+		List<ACoordinate<APopulationAttribute, APopulationValue>> draws = new ArrayList<>(numberOfDraw);
+		for(int index : indices)
+			draws.add(indexedKey[index]);
+		return draws;
+	}
+
+	@Override
+	public ACoordinate<APopulationAttribute, APopulationValue> draw() {
+		return indexedKey[table.drawIndex()];
+	}
+
+	/**
+	 * Draw {@code numberOfDraw} cell indices and store them in the {@code numberOfDraw} first
+	 * elements of {@code indices}. Draws are split in chunks handled in parallel, each 
+	 * chunk using its own random engine (see {@link GenstarSplittableRandom#parallelChunks(int, GenstarSplittableRandom.ChunkTask)})
+	 *
+	 * @see #getCoordinate(int)
+	 * @param numberOfDraw
+	 * @param indices
+	 * @throws IllegalArgumentException if {@code indices} cannot hold {@code numberOfDraw} draws
+	 */
+	public void drawIndices(int numberOfDraw, int[] indices) {
+		if(indices.length < numberOfDraw)
+			throw new IllegalArgumentException("Cannot store "+numberOfDraw+" draws in an array of size "+indices.length);
+		GenstarSplittableRandom.parallelChunks(numberOfDraw, (from, to, random) -> {
+			for(int i = from; i < to; i++)
+				indices[i] = table.drawIndex(random.nextInt(table.size()), random.nextDouble());
+		});
+	}
+
+	/**
+	 * The coordinate of the cell at {@code index}, as drawn by {@link #drawIndices(int, int[])}
+	 *
+	 * @param index
+	 * @return
+	 */
+	public ACoordinate<APopulationAttribute, APopulationValue> getCoordinate(int index) {
+		return indexedKey[index];
+	}
+
+	/**
+	 * The number of cells this sampler draws within
+	 *
+	 * @return
+	 */
+	public int size() {
+		return indexedKey.length;
+	}
+
+	@Override
+	public String toCsv(String csvSeparator){
+		List<APopulationAttribute> attributs = new ArrayList<>(IntStream.range(0, indexedKey.length)
+				.mapToObj(i -> indexedKey[i]).flatMap(coord -> coord.getDimensions().stream())
+				.collect(Collectors.toSet()));
+		StringBuilder sb = new StringBuilder(String.join(csvSeparator, attributs.stream()
+				.map(att -> att.getAttributeName()).collect(Collectors.toList())));
+		sb.append(csvSeparator).append("Probability\n");
+		for(int i = 0; i < indexedKey.length; i++){
+			ACoordinate<APopulationAttribute, APopulationValue> coord = indexedKey[i];
+			sb.append(attributs.stream().map(att -> coord.getDimensions().contains(att) ?
+					coord.getMap().get(att).getStringValue() : " ").collect(Collectors.joining(csvSeparator)));
+			sb.append(csvSeparator).append(initProba[i]).append("\n");
+		}
+		return sb.toString();
+	}
+
+}
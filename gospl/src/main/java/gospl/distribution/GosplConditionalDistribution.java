@@ -1,11 +1,15 @@
 package gospl.distribution;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -33,9 +37,34 @@ import gospl.distribution.matrix.coordinate.GosplCoordinate;
 public class GosplConditionalDistribution extends ASegmentedNDimensionalMatrix<Double> {
 
 	Logger logger = LogManager.getLogger();
+	
+	/**
+	 * Maximum number of marginal probabilities memoized by {@link #getVal(Collection)}
+	 */
+	public static int MARGINAL_CACHE_SIZE = 1 << 16;
+	
+	/**
+	 * Number of independently locked segments of the marginal cache
+	 */
+	public static int MARGINAL_CACHE_STRIPES = 16;
+	
+	private final Map<Set<APopulationAttribute>, List<QueryStep>> queryPlans = new ConcurrentHashMap<>();
+	
+	private final List<Map<MarginalKey, Marginal>> marginalCache = new ArrayList<>();
 
 	protected GosplConditionalDistribution(Set<AFullNDimensionalMatrix<Double>> jointDistributionSet) throws IllegalDistributionCreation {
 		super(jointDistributionSet);
+		// Each stripe is a LRU cache of its share of the whole capacity
+		int stripeSize = Math.max(1, MARGINAL_CACHE_SIZE / MARGINAL_CACHE_STRIPES);
+		for(int i = 0; i < Math.max(1, MARGINAL_CACHE_STRIPES); i++)
+			marginalCache.add(Collections.synchronizedMap(
+					new LinkedHashMap<MarginalKey, Marginal>(16, 0.75f, true){
+						private static final long serialVersionUID = 1L;
+						@Override
+						protected boolean removeEldestEntry(Map.Entry<MarginalKey, Marginal> eldest) {
+							return size() > stripeSize;
+						}
+					}));
 	}
 	
 
@@ -47,41 +76,34 @@ public class GosplConditionalDistribution extends ASegmentedNDimensionalMatrix<D
 	 * Provide the most informed control associated with the given set of aspects
 	 * <br>
 	 * TODO: describe the whole process
+	 * <p>
+	 * The order in which matrices are visited and the conditioning dimensions of each of them 
+	 * only depend on the dimensions of the aspects: they are computed once per set of dimensions 
+	 * (see {@link QueryStep}). Marginal probabilities of inner matrices are memoized in a bounded 
+	 * LRU cache (see {@link #MARGINAL_CACHE_SIZE}), split into stripes locked independently so that
+	 * concurrent queries seldom wait for each other (see {@link #MARGINAL_CACHE_STRIPES}): each of them 
+	 * is recomputed when its matrix has been written since (see {@link AFullNDimensionalMatrix#getVersion()}), and the whole cache is flushed when
+	 * a value is set through this distribution or with {@link #clearCache()}
 	 */
 	@Override
 	public AControl<Double> getVal(Collection<APopulationValue> aspects) {
 		// Setup output with identity product value
 		AControl<Double> conditionalProba = this.getIdentityProductVal();
-		// Setup a record of visited dimension to avoid duplicated probabilities
-		Set<APopulationAttribute> remainingDimension = aspects.stream()
-				.map(aspect -> aspect.getAttribute()).collect(Collectors.toSet());
-
-		// Select matrices that contains at least one concerned dimension and ordered them
-		// in decreasing order of the number of matches
-		List<AFullNDimensionalMatrix<Double>> concernedMatrices = jointDistributionSet.stream()
-				.filter(matrix -> matrix.getDimensions().stream().anyMatch(dimension -> remainingDimension.contains(dimension)))
-				.sorted((m1, m2) -> m1.getDimensions().stream().filter(dim -> remainingDimension.contains(dim)).count() >=
-				m2.getDimensions().stream().filter(dim -> remainingDimension.contains(dim)).count() ? -1 : 1)
-				.collect(Collectors.toList());
-
-		// Store visited dimension to compute conditional probabilities
-		Set<APopulationAttribute> assignedDimension = new HashSet<>();
-
-		for(AFullNDimensionalMatrix<Double> mat : concernedMatrices){
-			if(mat.getDimensions().stream()
-					.noneMatch(dimension -> remainingDimension.contains(dimension)))
-				continue;
-
+		
+		for(QueryStep step : this.getQueryPlan(aspects.stream()
+				.map(aspect -> aspect.getAttribute()).collect(Collectors.toSet()))){
+			AFullNDimensionalMatrix<Double> mat = step.matrix;
+			
 			// Setup concerned values
 			Set<APopulationValue> concernedValues = aspects.stream()
-					.filter(a -> mat.getDimensions().contains(a.getAttribute()))
+					.filter(a -> step.dimensions.contains(a.getAttribute()))
 					.collect(Collectors.toSet());
-			AControl<Double> newProbability = mat.getVal(concernedValues);
+			AControl<Double> newProbability = this.getMarginal(mat, concernedValues);
 
 			// COMPUTE CONDITIONAL PROBABILITY
 			// Setup conditional values (known probability to compute conditional probability)
 			Set<APopulationValue> conditionalValues = concernedValues.stream()
-					.filter(val -> assignedDimension.stream().anyMatch(dim -> dim.getValues().contains(val)))
+					.filter(val -> step.assignedDimension.stream().anyMatch(dim -> dim.getValues().contains(val)))
 					.collect(Collectors.toSet());
 
 			// add bottom up & top down conditional values
@@ -89,8 +111,10 @@ public class GosplConditionalDistribution extends ASegmentedNDimensionalMatrix<D
 			// Hence issues arise: Either conditional probability are over or under estimated, 
 			// because referent binding is not force to be complete (a set of value referees to some other set, 
 			// while only a subset can be of target here)
-			Map<Set<APopulationValue>, AControl<Double>> bottomup = this.estimateBottomUpReferences(mat, aspects, assignedDimension);
-			Map<Set<APopulationValue>, AControl<Double>> topdown = this.estimateTopDownReferences(mat, aspects, assignedDimension); 
+			Map<Set<APopulationValue>, AControl<Double>> bottomup = this.computeControlReferences(
+					step.bottomupReferences, aspects, step.assignedDimension);
+			Map<Set<APopulationValue>, AControl<Double>> topdown = this.computeControlReferences(
+					step.topdownReferences, aspects, step.assignedDimension); 
 			
 			conditionalValues.addAll(Stream.concat(bottomup.keySet().stream().flatMap(set -> set.stream()),
 					topdown.keySet().stream().flatMap(set -> set.stream())).collect(Collectors.toSet()));
@@ -100,7 +124,7 @@ public class GosplConditionalDistribution extends ASegmentedNDimensionalMatrix<D
 				return this.getNulVal();
 			
 			AControl<Double> conditionalProbability = conditionalValues.isEmpty() ? 
-					this.getIdentityProductVal() : mat.getVal(conditionalValues); 
+					this.getIdentityProductVal() : this.getMarginal(mat, conditionalValues); 
 			if(conditionalProbability.getValue() > 1)
 				throw new IllegalArgumentException("Conditional probability is above 1: "+conditionalProbability.getValue());
 			
@@ -113,22 +137,26 @@ public class GosplConditionalDistribution extends ASegmentedNDimensionalMatrix<D
 
 			// Update conditional probability
 			conditionalProba.multiply(newProbability);
-
-			// Update visited probability
-			Set<APopulationAttribute> updateDimension = concernedValues
-					.stream().map(a -> a.getAttribute()).collect(Collectors.toSet()); 
-			assignedDimension.addAll(updateDimension);
-			remainingDimension.removeAll(updateDimension);
 		}
 		return conditionalProba;
 	}
 
+	/**
+	 * Flush memoized query plans and marginal probabilities: writes through inner matrices setters
+	 * are detected, but this must be called when controls of inner matrices are modified in place
+	 */
+	public void clearCache() {
+		queryPlans.clear();
+		marginalCache.forEach(Map::clear);
+	}
+
 	// ------------------ Setters ------------------ //
 
 	@Override
 	public boolean addValue(ACoordinate<APopulationAttribute, APopulationValue> coordinates, AControl<? extends Number> value) {
 		Set<AFullNDimensionalMatrix<Double>> jds = jointDistributionSet
 				.stream().filter(jd -> jd.getDimensions().equals(coordinates.getDimensions())).collect(Collectors.toSet());
+		this.clearCache();
 		return jds.iterator().next().addValue(coordinates, value);
 	}
 
@@ -152,6 +180,7 @@ public class GosplConditionalDistribution extends ASegmentedNDimensionalMatrix<D
 				.stream().filter(jd -> jd.getDimensions().equals(coordinates.getDimensions())).collect(Collectors.toSet());
 		if(jds.size() != 1)
 			return false;
+		this.clearCache();
 		return jds.iterator().next().setValue(coordinates, value);
 	}
 
@@ -194,32 +223,79 @@ public class GosplConditionalDistribution extends ASegmentedNDimensionalMatrix<D
 
 	// -------------------- Inner Utilities -------------------- //
 
-	private Map<Set<APopulationValue>, AControl<Double>> estimateBottomUpReferences(
-			AFullNDimensionalMatrix<Double> mat, Collection<APopulationValue> aspects,
-			Set<APopulationAttribute> assignedDimension){
-		// Setup conditional bottom up values: value for which this matrix has partial 
-		// bottom-up information, i.e. one attribute of this matrix has for referent
-		// one value attribute for which probability has already be defined 
-		Map<APopulationAttribute, APopulationAttribute> refAttributeToBottomup = mat.getDimensions().stream()
-				.filter(att -> !att.getReferentAttribute().equals(att) && !att.isRecordAttribute()
-						&& assignedDimension.contains(att.getReferentAttribute()))
-				.collect(Collectors.toMap(att -> att.getReferentAttribute(), Function.identity()));
-		// Transpose top down value set to control proportional referent
-		return computeControlReferences(refAttributeToBottomup, aspects, assignedDimension);
+	/*
+	 * Matrices to visit for a given set of dimensions, in decreasing order of the number of matches,
+	 * together with the conditioning information of each visit
+	 */
+	private List<QueryStep> getQueryPlan(Set<APopulationAttribute> dimensions){
+		return queryPlans.computeIfAbsent(dimensions, this::buildQueryPlan);
 	}
+	
+	private List<QueryStep> buildQueryPlan(Set<APopulationAttribute> dimensions){
+		// Setup a record of visited dimension to avoid duplicated probabilities
+		Set<APopulationAttribute> remainingDimension = new HashSet<>(dimensions);
 
-	private Map<Set<APopulationValue>, AControl<Double>> estimateTopDownReferences(
-			AFullNDimensionalMatrix<Double> mat, Collection<APopulationValue> aspects,
-			Set<APopulationAttribute> assignedDimension){
-		// Setup conditional top down values: value for which this matrix has partial 
-		// top down information, i.e. one attribute of this matrix is the referent of
-		// one value attribute for which probability has already be defined
-		Map<APopulationAttribute, APopulationAttribute> assignedAttributeToTopdown = assignedDimension.stream()
-				.filter(att -> !att.getReferentAttribute().equals(att) && !att.isRecordAttribute()
-						&& mat.getDimensions().contains(att))
-				.collect(Collectors.toMap(Function.identity(), att -> att.getReferentAttribute()));
-		// Transpose bottom up value set to control proportional referent
-		return computeControlReferences(assignedAttributeToTopdown, aspects, assignedDimension);
+		// Select matrices that contains at least one concerned dimension and ordered them
+		// in decreasing order of the number of matches
+		List<AFullNDimensionalMatrix<Double>> concernedMatrices = jointDistributionSet.stream()
+				.filter(matrix -> matrix.getDimensions().stream().anyMatch(dimension -> remainingDimension.contains(dimension)))
+				.sorted((m1, m2) -> m1.getDimensions().stream().filter(dim -> remainingDimension.contains(dim)).count() >=
+				m2.getDimensions().stream().filter(dim -> remainingDimension.contains(dim)).count() ? -1 : 1)
+				.collect(Collectors.toList());
+
+		// Store visited dimension to compute conditional probabilities
+		Set<APopulationAttribute> assignedDimension = new HashSet<>();
+		
+		List<QueryStep> plan = new ArrayList<>();
+		for(AFullNDimensionalMatrix<Double> mat : concernedMatrices){
+			if(mat.getDimensions().stream()
+					.noneMatch(dimension -> remainingDimension.contains(dimension)))
+				continue;
+			
+			Set<APopulationAttribute> concernedDimension = dimensions.stream()
+					.filter(dimension -> mat.getDimensions().contains(dimension))
+					.collect(Collectors.toSet());
+			
+			// Setup conditional bottom up values: value for which this matrix has partial 
+			// bottom-up information, i.e. one attribute of this matrix has for referent
+			// one value attribute for which probability has already be defined 
+			Map<APopulationAttribute, APopulationAttribute> refAttributeToBottomup = mat.getDimensions().stream()
+					.filter(att -> !att.getReferentAttribute().equals(att) && !att.isRecordAttribute()
+							&& assignedDimension.contains(att.getReferentAttribute()))
+					.collect(Collectors.toMap(att -> att.getReferentAttribute(), Function.identity()));
+			
+			// Setup conditional top down values: value for which this matrix has partial 
+			// top down information, i.e. one attribute of this matrix is the referent of
+			// one value attribute for which probability has already be defined
+			Map<APopulationAttribute, APopulationAttribute> assignedAttributeToTopdown = assignedDimension.stream()
+					.filter(att -> !att.getReferentAttribute().equals(att) && !att.isRecordAttribute()
+							&& mat.getDimensions().contains(att))
+					.collect(Collectors.toMap(Function.identity(), att -> att.getReferentAttribute()));
+			
+			plan.add(new QueryStep(mat, concernedDimension, new HashSet<>(assignedDimension), 
+					refAttributeToBottomup, assignedAttributeToTopdown));
+			
+			// Update visited dimension
+			assignedDimension.addAll(concernedDimension);
+			remainingDimension.removeAll(concernedDimension);
+		}
+		return Collections.unmodifiableList(plan);
+	}
+	
+	/*
+	 * Memoized marginal of a matrix: returns a new control, so it can be modified by the caller. Version
+	 * is read before computing the marginal, so that a concurrent write makes the memoized value stale
+	 */
+	private AControl<Double> getMarginal(AFullNDimensionalMatrix<Double> matrix, Set<APopulationValue> values){
+		MarginalKey key = new MarginalKey(matrix, values);
+		long version = matrix.getVersion();
+		Map<MarginalKey, Marginal> stripe = marginalCache.get(Math.floorMod(key.hash, marginalCache.size()));
+		Marginal marginal = stripe.get(key);
+		if(marginal == null || marginal.version != version){
+			marginal = new Marginal(matrix.getVal(values).getValue(), version);
+			stripe.put(key, marginal);
+		}
+		return new ControlFrequency(marginal.value);
 	}
 	
 	private Map<Set<APopulationValue>, AControl<Double>> computeControlReferences(
@@ -242,8 +318,8 @@ public class GosplConditionalDistribution extends ASegmentedNDimensionalMatrix<D
 					topdownAtt.findMappedAttributeValues(val).stream()).collect(Collectors.toSet());
 			AFullNDimensionalMatrix<Double> matrix = this.jointDistributionSet.stream().filter(m -> 
 					m.getDimensions().contains(bottomupAtt)).findAny().get();
-			output.put(topdownVals, matrix.getVal(CurrentAttToAssignedValues.get(topdownAtt))
-					.multiply(1d / matrix.getVal(bottomupVals).getValue()));
+			output.put(topdownVals, this.getMarginal(matrix, CurrentAttToAssignedValues.get(topdownAtt))
+					.multiply(1d / this.getMarginal(matrix, bottomupVals).getValue()));
 		}
 		return output;
 	}
@@ -280,4 +356,78 @@ public class GosplConditionalDistribution extends ASegmentedNDimensionalMatrix<D
 
 
 	
+	// -------------------- Inner classes -------------------- //
+	
+	/*
+	 * One matrix visit of a query plan: the dimensions it is asked for, the dimensions already assigned
+	 * by previous visits and the referent attribute relationships to account for
+	 */
+	private static final class QueryStep {
+		
+		private final AFullNDimensionalMatrix<Double> matrix;
+		private final Set<APopulationAttribute> dimensions;
+		private final Set<APopulationAttribute> assignedDimension;
+		private final Map<APopulationAttribute, APopulationAttribute> bottomupReferences;
+		private final Map<APopulationAttribute, APopulationAttribute> topdownReferences;
+		
+		private QueryStep(AFullNDimensionalMatrix<Double> matrix, Set<APopulationAttribute> dimensions, 
+				Set<APopulationAttribute> assignedDimension, 
+				Map<APopulationAttribute, APopulationAttribute> bottomupReferences,
+				Map<APopulationAttribute, APopulationAttribute> topdownReferences){
+			this.matrix = matrix;
+			this.dimensions = dimensions;
+			this.assignedDimension = assignedDimension;
+			this.bottomupReferences = bottomupReferences;
+			this.topdownReferences = topdownReferences;
+		}
+		
+	}
+	
+	/*
+	 * Memoized marginal, together with the version of the matrix it has been computed from
+	 */
+	private static final class Marginal {
+		
+		private final double value;
+		private final long version;
+		
+		private Marginal(double value, long version){
+			this.value = value;
+			this.version = version;
+		}
+		
+	}
+	
+	/*
+	 * Key of a memoized marginal: matrices are compared by identity
+	 */
+	private static final class MarginalKey {
+		
+		private final AFullNDimensionalMatrix<Double> matrix;
+		private final Set<APopulationValue> values;
+		private final int hash;
+		
+		private MarginalKey(AFullNDimensionalMatrix<Double> matrix, Set<APopulationValue> values){
+			this.matrix = matrix;
+			this.values = values;
+			this.hash = 31 * System.identityHashCode(matrix) + values.hashCode();
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj)
+				return true;
+			if(!(obj instanceof MarginalKey))
+				return false;
+			MarginalKey other = (MarginalKey) obj;
+			return matrix == other.matrix && values.equals(other.values);
+		}
+		
+	}
+
 }
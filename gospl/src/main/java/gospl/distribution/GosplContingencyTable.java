@@ -14,6 +14,8 @@ import gospl.distribution.matrix.AFullNDimensionalMatrix;
 import gospl.distribution.matrix.control.AControl;
 import gospl.distribution.matrix.control.ControlContingency;
 import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.dense.DenseContingencyCellMap;
+import gospl.distribution.matrix.dense.DenseMatrixLayout;
 
 
 /**
@@ -29,6 +31,19 @@ public class GosplContingencyTable extends AFullNDimensionalMatrix<Integer> {
 		super(dimensionAspectMap, GSSurveyType.ContingencyTable);
 	}
 	
+	/**
+	 * Create a contingency table which can be backed by a dense array of integers
+	 * 
+	 * @see DenseContingencyCellMap
+	 * 
+	 * @param dimensionAspectMap
+	 * @param dense
+	 */
+	protected GosplContingencyTable(Map<APopulationAttribute, Set<APopulationValue>> dimensionAspectMap, boolean dense) {
+		super(dimensionAspectMap, GSSurveyType.ContingencyTable, 
+				dense ? new DenseContingencyCellMap(new DenseMatrixLayout(dimensionAspectMap)) : null);
+	}
+	
 	protected GosplContingencyTable(Set<APopulationAttribute> attributes) {
 		this(
 				attributes.stream().collect(Collectors.toMap(Function.identity(),APopulationAttribute::getValues))
@@ -56,8 +71,7 @@ public class GosplContingencyTable extends AFullNDimensionalMatrix<Integer> {
 	@Override
 	public boolean setValue(ACoordinate<APopulationAttribute, APopulationValue> coordinate, AControl<? extends Number> value){
 		if(isCoordinateCompliant(coordinate)){
-			coordinate.setHashIndex(matrix.size()+1+matrix.hashCode());
-			matrix.put(coordinate, new ControlContingency(value.getValue().intValue()));
+			putControl(coordinate, new ControlContingency(value.getValue().intValue()));
 			return true;
 		}
 		return false;
@@ -14,6 +14,8 @@ import gospl.distribution.matrix.AFullNDimensionalMatrix;
 import gospl.distribution.matrix.control.AControl;
 import gospl.distribution.matrix.control.ControlFrequency;
 import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.dense.DenseFrequencyCellMap;
+import gospl.distribution.matrix.dense.DenseMatrixLayout;
 
 /**
  * TODO: javadoc
@@ -28,6 +30,21 @@ public class GosplJointDistribution extends AFullNDimensionalMatrix<Double> {
 		super(dimensionAspectMap, metaDataType);
 	}
 	
+	/**
+	 * Create a joint distribution which can be backed by a dense array of frequencies
+	 * 
+	 * @see DenseFrequencyCellMap
+	 * 
+	 * @param dimensionAspectMap
+	 * @param metaDataType
+	 * @param dense
+	 */
+	public GosplJointDistribution(Map<APopulationAttribute, Set<APopulationValue>> dimensionAspectMap, 
+			GSSurveyType metaDataType, boolean dense) {
+		super(dimensionAspectMap, metaDataType, 
+				dense ? new DenseFrequencyCellMap(new DenseMatrixLayout(dimensionAspectMap)) : null);
+	}
+	
 	public GosplJointDistribution(Set<APopulationAttribute> attributes, GSSurveyType metaDataType) {
 		this(
 			attributes.stream().collect(Collectors.toMap(Function.identity(), APopulationAttribute::getValues)),
@@ -55,8 +72,7 @@ public class GosplJointDistribution extends AFullNDimensionalMatrix<Double> {
 	@Override
 	public boolean setValue(ACoordinate<APopulationAttribute, APopulationValue> coordinate, AControl<? extends Number> value){
 		if(isCoordinateCompliant(coordinate)){
-			coordinate.setHashIndex(matrix.size()+1+matrix.hashCode());
-			matrix.put(coordinate, new ControlFrequency(value.getValue().doubleValue()));
+			putControl(coordinate, new ControlFrequency(value.getValue().doubleValue()));
 			return true;
 		}
 		return false;
@@ -96,6 +112,7 @@ public class GosplJointDistribution extends AFullNDimensionalMatrix<Double> {
 		for (AControl<Double> c: getMatrix().values()) {
 			c.multiply(1/total);
 		}
+		markModified();
 			
 	}
 	
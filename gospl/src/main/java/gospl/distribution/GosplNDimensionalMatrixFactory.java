@@ -20,6 +20,7 @@ import gospl.distribution.matrix.control.ControlContingency;
 import gospl.distribution.matrix.control.ControlFrequency;
 import gospl.distribution.matrix.coordinate.ACoordinate;
 import gospl.distribution.matrix.coordinate.GosplCoordinate;
+import gospl.distribution.matrix.dense.DenseFrequencyCellMap;
 
 /**
  * Factory to build various type of {@link INDimensionalMatrix} from many sources:
@@ -184,6 +185,84 @@ public class GosplNDimensionalMatrixFactory {
 		return matrix;
 	}
 	
+	//////////////////////////////////////////////////
+	//				DENSE MATRIX					//
+	//////////////////////////////////////////////////
+	
+	/**
+	 * Create an empty distribution backed by a dense array of frequencies: memory is allocated 
+	 * for the whole cartesian product of dimensions' values at creation time
+	 * 
+	 * @see DenseFrequencyCellMap
+	 * 
+	 * @param dimensions
+	 * @param type
+	 * @return
+	 */
+	public AFullNDimensionalMatrix<Double> createEmptyDenseDistribution(
+			Set<APopulationAttribute> dimensions, GSSurveyType type){
+		AFullNDimensionalMatrix<Double> matrix =  new GosplJointDistribution(dimensions.stream().collect(Collectors.toMap(dim -> dim, dim -> dim.getValues())), 
+				type, true);
+		matrix.addGenesis("created from scratch GosplNDimensionalMatrixFactory@createEmptyDenseDistribution");
+		return matrix;
+	}
+	
+	public AFullNDimensionalMatrix<Double> createEmptyDenseDistribution(
+			Set<APopulationAttribute> dimensions){
+		return createEmptyDenseDistribution(dimensions, GSSurveyType.GlobalFrequencyTable);
+	}
+	
+	/**
+	 * Create a dense frequency matrix from entities' population characteristics
+	 * 
+	 * @see #createDistribution(IPopulation)
+	 * 
+	 * @param population
+	 * @return
+	 */
+	public AFullNDimensionalMatrix<Double> createDenseDistribution(
+			IPopulation<APopulationEntity, APopulationAttribute, APopulationValue> population){
+		AFullNDimensionalMatrix<Double> matrix = new GosplJointDistribution(
+				population.getPopulationAttributes().stream().collect(Collectors.toMap(att -> att, att -> att.getValues())), 
+				GSSurveyType.GlobalFrequencyTable, true);
+		matrix.addGenesis("created from population GosplNDimensionalMatrixFactory@createDenseDistribution");
+
+		double unitFreq = 1d/population.size();
+		
+		for(APopulationEntity entity : population){
+			ACoordinate<APopulationAttribute, APopulationValue> entityCoord = new GosplCoordinate(
+					new HashSet<>(entity.getValues()));
+			if(!matrix.addValue(entityCoord, new ControlFrequency(unitFreq)))
+				matrix.getVal(entityCoord).add(unitFreq);
+		}
+		
+		return matrix;
+	}
+	
+	/**
+	 * Create a dense contingency matrix from entities' population characteristics
+	 * 
+	 * @see #createContingency(IPopulation)
+	 * 
+	 * @param population
+	 * @return
+	 */
+	public AFullNDimensionalMatrix<Integer> createDenseContingency(
+			IPopulation<APopulationEntity, APopulationAttribute, APopulationValue> population) {
+		AFullNDimensionalMatrix<Integer> matrix = new GosplContingencyTable(population.getPopulationAttributes().stream()
+				.collect(Collectors.toMap(att -> att, att -> att.getValues())), true);
+		matrix.addGenesis("created from a population GosplNDimensionalMatrixFactory@createDenseContingency");
+
+		for(APopulationEntity entity : population){
+			ACoordinate<APopulationAttribute, APopulationValue> entityCoord = new GosplCoordinate(
+					new HashSet<>(entity.getValues()));
+			if(!matrix.addValue(entityCoord, new ControlContingency(1)))
+				matrix.getVal(entityCoord).add(1);
+		}
+		
+		return matrix;
+	}
+	
 	//////////////////////////////////////////////////
 	//				SEGMENTED MATRIX				//
 	//////////////////////////////////////////////////
@@ -2,6 +2,7 @@ package gospl.distribution.matrix;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -10,12 +11,11 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import core.metamodel.pop.APopulationAttribute;
 import core.metamodel.pop.APopulationValue;
@@ -23,12 +23,21 @@ import core.metamodel.pop.io.GSSurveyType;
 import gospl.distribution.matrix.control.AControl;
 import gospl.distribution.matrix.coordinate.ACoordinate;
 import gospl.distribution.matrix.coordinate.GosplCoordinate;
+import gospl.distribution.matrix.dense.ADenseCellMap;
 
 /**
  * TODO: javadoc
  * <p>
  * WARNING: the inner data collection is concurrent friendly. This implied a low efficiency when no parallelism
  * <p>
+ * Cells can either be stored in a sparse concurrent hash map (default) or in a dense primitive array
+ * addressed by mixed-radix offset (see {@link ADenseCellMap}). The latter is much more compact for
+ * large and mostly filled matrices, but requires coordinates to have exactly one value per dimension
+ * <p>
+ * Whatever the storage, cells are indexed by value (see {@link CellValueIndex}) so that marginal queries
+ * ({@link #getVal(APopulationValue)}, {@link #getVal(Collection)} and {@link #getCoordinates(Set)}) do not
+ * have to scan the whole matrix. Hence, new cells must be defined through {@link #putControl(ACoordinate, AControl)}
+ * <p>
  * 
  * @author kevinchapuis
  *
@@ -40,6 +49,12 @@ public abstract class AFullNDimensionalMatrix<T extends Number> implements INDim
 
 	private final Map<APopulationAttribute, Set<APopulationValue>> dimensions;
 	protected final Map<ACoordinate<APopulationAttribute, APopulationValue>, AControl<T>> matrix;
+	private final ADenseCellMap<T> denseMatrix;
+	
+	private final CellValueIndex valueIndex = new CellValueIndex();
+	private final List<ACoordinate<APopulationAttribute, APopulationValue>> sparseCells = 
+			Collections.synchronizedList(new ArrayList<>());
+	private final AtomicLong version = new AtomicLong();
 
 	private ACoordinate<APopulationAttribute, APopulationValue> emptyCoordinate = null;
 
@@ -56,10 +71,29 @@ public abstract class AFullNDimensionalMatrix<T extends Number> implements INDim
 	 * @param metaDataType
 	 */
 	public AFullNDimensionalMatrix(Map<APopulationAttribute, Set<APopulationValue>> dimensionAspectMap, GSSurveyType metaDataType) {
+		this(dimensionAspectMap, metaDataType, null);
+	}
+	
+	/**
+	 * Create a matrix which cells are stored in a dense primitive array rather than a hash map
+	 * of coordinates: if {@code denseStorage} is null, falls back to the default sparse storage
+	 * 
+	 * @see ADenseCellMap
+	 * 
+	 * @param dimensionAspectMap
+	 * @param metaDataType
+	 * @param denseStorage
+	 */
+	protected AFullNDimensionalMatrix(Map<APopulationAttribute, Set<APopulationValue>> dimensionAspectMap, GSSurveyType metaDataType,
+			ADenseCellMap<T> denseStorage) {
 		this.dimensions = new HashMap<>(dimensionAspectMap);
-		this.matrix = new ConcurrentHashMap<>(dimensions.entrySet().stream()
-				.mapToInt(d -> d.getValue().size())
-				.reduce(1, (ir, dimSize) -> ir * dimSize) / 4);
+		this.denseMatrix = denseStorage;
+		if(denseStorage == null)
+			this.matrix = new ConcurrentHashMap<>(dimensions.entrySet().stream()
+					.mapToInt(d -> d.getValue().size())
+					.reduce(1, (ir, dimSize) -> ir * dimSize) / 4);
+		else
+			this.matrix = denseStorage;
 		this.dataType = metaDataType;
 		this.emptyCoordinate = new GosplCoordinate(Collections.<APopulationValue>emptySet());
 		this.label = dimensionAspectMap.keySet().stream().map(dim -> dim.getAttributeName().length()>3?dim.getAttributeName().substring(0, 3):dim.getAttributeName())
@@ -115,6 +149,61 @@ public abstract class AFullNDimensionalMatrix<T extends Number> implements INDim
 	public boolean isSegmented(){
 		return false;
 	}
+	
+	/**
+	 * Whether cells are stored in a dense primitive array (see {@link ADenseCellMap}) 
+	 * or in a sparse hash map
+	 * 
+	 * @return
+	 */
+	public boolean isDense(){
+		return denseMatrix != null;
+	}
+	
+	/**
+	 * The dense storage of this matrix, or null if the matrix is sparse
+	 * 
+	 * @see #isDense()
+	 * @return
+	 */
+	public ADenseCellMap<T> getDenseMatrix(){
+		return denseMatrix;
+	}
+	
+	/**
+	 * Define every cell of a dense matrix in one bulk pass: the value of the cell at offset {@code i}
+	 * (see {@link ADenseCellMap#getLayout()}) is {@code values[i]}. Cells are written straight into the
+	 * dense storage and indexed at once, without building any coordinate
+	 * 
+	 * @param values
+	 * @throws IllegalArgumentException if the matrix is not dense or if there is not exactly one value per cell
+	 */
+	public void setDenseValues(double[] values){
+		if(denseMatrix == null)
+			throw new IllegalArgumentException("Cannot bulk write values into a sparse matrix");
+		denseMatrix.setCells(values);
+		valueIndex.register(denseMatrix.getLayout());
+		markModified();
+	}
+	
+	/**
+	 * Number of writes made through this matrix, i.e. through setters, {@link #setDenseValues(double[])} 
+	 * or {@link #normalize()}: memoized results computed out of this matrix can be checked against it. 
+	 * In place modifications of controls returned by getters are not counted
+	 * 
+	 * @return
+	 */
+	public long getVersion(){
+		return version.get();
+	}
+	
+	/**
+	 * Increment the version of this matrix (see {@link #getVersion()}): sub classes must call it 
+	 * when they write values without using {@link #putControl(ACoordinate, AControl)}
+	 */
+	protected void markModified(){
+		version.incrementAndGet();
+	}
 
 	@Override
 	public GSSurveyType getMetaDataType() {
@@ -246,40 +335,24 @@ public abstract class AFullNDimensionalMatrix<T extends Number> implements INDim
 	 */
 	@Override
 	public AControl<T> getVal(APopulationValue aspect) {
-		if(!matrix.keySet().stream().anyMatch(coord -> coord.contains(aspect)))
+		if(!valueIndex.contains(aspect))
 			throw new NullPointerException("Aspect "+aspect+" is absent from this control table ("+this.hashCode()+")");
-		AControl<T> result = getNulVal();
-		for(AControl<T> control : this.matrix.entrySet().stream()
-				.filter(e -> e.getKey().values().contains(aspect))
-				.map(Entry::getValue).collect(Collectors.toSet()))
-			getSummedControl(result, control);
-		return result;
+		return getSummedControl(valueIndex.select(aspect));
 	}
 
 	/**
 	 * {@inheritDoc}
 	 * <p>
-	 * WARNING: make use of parallelism through {@link Stream#parallel()}
+	 * Cells are retrieved through the value index: union of cells for aspects of the same
+	 * dimension and intersection between dimensions
 	 */
 	@Override
 	public AControl<T> getVal(Collection<APopulationValue> aspects) {
-		if(aspects.stream().allMatch(a -> matrix.keySet().stream().noneMatch(coord -> coord.contains(a))))
+		if(aspects.stream().noneMatch(valueIndex::contains))
 			throw new NullPointerException("Aspect collection "+Arrays.toString(aspects.toArray())+" of size "
 					+ aspects.size()+" is absent from this matrix"
 					+ " (size = "+this.size()+" - attribute = "+Arrays.toString(this.getDimensions().toArray())+")");
-
-		Map<APopulationAttribute, Set<APopulationValue>> attAsp = aspects.stream()
-				.collect(Collectors.groupingBy(aspect -> aspect.getAttribute(),
-				Collectors.mapping(Function.identity(), Collectors.toSet())));
-		
-		AControl<T> result = getNulVal();
-		for(AControl<T> control : this.matrix.entrySet().parallelStream()
-				.filter(e -> attAsp.entrySet()
-						.stream().allMatch(aa -> aa.getValue()
-								.stream().anyMatch(a -> e.getKey().contains(a))))
-				.map(Entry::getValue).collect(Collectors.toSet()))
-			getSummedControl(result, control);
-		return result;
+		return getSummedControl(valueIndex.select(aspects));
 	}
 	
 	public final AControl<T> getVal(String ... coordinates) {
@@ -339,18 +412,57 @@ public abstract class AFullNDimensionalMatrix<T extends Number> implements INDim
 	
 	@Override
 	public Collection<ACoordinate<APopulationAttribute, APopulationValue>> getCoordinates(Set<APopulationValue> values){
-		Map<APopulationAttribute, Set<APopulationValue>> attValues = values.stream()
-				.filter(val -> this.getDimensions().contains(val.getAttribute()))
-				.collect(Collectors.groupingBy(value -> value.getAttribute(),
-				Collectors.mapping(Function.identity(), Collectors.toSet())));
-		return this.matrix.keySet().stream().filter(coord -> attValues.values()
-				.stream().allMatch(attVals -> attVals.stream().anyMatch(val -> coord.contains(val))))
-				.collect(Collectors.toList());
+		BitSet cells = valueIndex.select(values.stream()
+				.filter(val -> dimensions.containsKey(val.getAttribute()))
+				.collect(Collectors.toList()));
+		List<ACoordinate<APopulationAttribute, APopulationValue>> coordinates = new ArrayList<>(cells.cardinality());
+		for(int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell+1))
+			coordinates.add(getCellCoordinate(cell));
+		return coordinates;
+	}
+	
+	/**
+	 * Store the control of a cell and index it if the cell was not yet defined: this is the only 
+	 * way sub classes should write into {@link #matrix}, otherwise marginal queries will miss the cell
+	 * <p>
+	 * Cells cannot be removed from the index
+	 * 
+	 * @param coordinate
+	 * @param control
+	 */
+	protected void putControl(ACoordinate<APopulationAttribute, APopulationValue> coordinate, AControl<T> control){
+		markModified();
+		if(matrix.put(coordinate, control) != null)
+			return;
+		if(denseMatrix != null)
+			valueIndex.register(denseMatrix.getLayout().getOffset(coordinate), coordinate.values());
+		else synchronized (sparseCells) {
+			valueIndex.register(sparseCells.size(), coordinate.values());
+			sparseCells.add(coordinate);
+		}
 	}
 
 	private AControl<T> getSummedControl(AControl<T> controlOne, AControl<T> controlTwo){
 		return controlOne.add(controlTwo);
 	}
+	
+	private AControl<T> getSummedControl(BitSet cells){
+		AControl<T> result = getNulVal();
+		for(int cell = cells.nextSetBit(0); cell >= 0; cell = cells.nextSetBit(cell+1))
+			getSummedControl(result, getCellControl(cell));
+		return result;
+	}
+	
+	/*
+	 * Cell ids are offsets for dense matrices and insertion rank for sparse ones
+	 */
+	private AControl<T> getCellControl(int cell){
+		return denseMatrix != null ? denseMatrix.getControl(cell) : matrix.get(sparseCells.get(cell));
+	}
+	
+	private ACoordinate<APopulationAttribute, APopulationValue> getCellCoordinate(int cell){
+		return denseMatrix != null ? denseMatrix.getLayout().getCoordinate(cell) : sparseCells.get(cell);
+	}
 
 	// -------------------------- UTILITY -------------------------- //
 
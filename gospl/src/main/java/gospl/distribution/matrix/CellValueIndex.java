@@ -0,0 +1,143 @@
+package gospl.distribution.matrix;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import gospl.distribution.matrix.dense.DenseMatrixLayout;
+
+/**
+ * Inverted index of the cells of a {@link AFullNDimensionalMatrix}: each value is bound to
+ * the bitmap of the cell ids which coordinate contains this value. Marginal queries can then
+ * be answered with bitmap unions (values of the same attribute) and intersections (values of
+ * different attributes) rather than scanning the whole matrix.
+ * <p>
+ * The index is kept up to date incrementally when new cells are defined. Cell ids are given
+ * by the matrix: offset for dense matrices, insertion rank for sparse ones
+ * <p>
+ * Reads are lock-free: they are answered out of an immutable snapshot of the index, which is
+ * published again, under the lock of writers, at the first read following a write
+ *
+ * @author kevinchapuis
+ *
+ */
+class CellValueIndex {
+
+	private final Map<APopulationValue, BitSet> valueCells = new HashMap<>();
+	private final BitSet allCells = new BitSet();
+	
+	private volatile Snapshot snapshot = new Snapshot(valueCells, allCells);
+
+	/**
+	 * Index a new cell
+	 *
+	 * @param cellId
+	 * @param values
+	 */
+	synchronized void register(int cellId, Collection<APopulationValue> values) {
+		for(APopulationValue value : values)
+			valueCells.computeIfAbsent(value, v -> new BitSet()).set(cellId);
+		allCells.set(cellId);
+		snapshot = null;
+	}
+
+	/**
+	 * Index every cell of a dense layout at once: cell ids are offsets
+	 *
+	 * @param layout
+	 */
+	synchronized void register(DenseMatrixLayout layout) {
+		BitSet[][] cells = new BitSet[layout.getDimensionCount()][];
+		for(int d = 0; d < cells.length; d++){
+			cells[d] = new BitSet[layout.getRadix(d)];
+			for(int ordinal = 0; ordinal < cells[d].length; ordinal++)
+				cells[d][ordinal] = valueCells.computeIfAbsent(layout.getValue(d, ordinal), v -> new BitSet());
+		}
+		for(int offset = 0; offset < layout.getCellCount(); offset++)
+			for(int d = 0; d < cells.length; d++)
+				cells[d][layout.getOrdinal(offset, d)].set(offset);
+		allCells.set(0, layout.getCellCount());
+		snapshot = null;
+	}
+
+	/**
+	 * Whether at least one cell is described by this value
+	 *
+	 * @param value
+	 * @return
+	 */
+	boolean contains(APopulationValue value) {
+		return getSnapshot().valueCells.containsKey(value);
+	}
+
+	/**
+	 * Gives the ids of all cells described by this value. The returned bitmap is a copy
+	 *
+	 * @param value
+	 * @return
+	 */
+	BitSet select(APopulationValue value) {
+		BitSet cells = getSnapshot().valueCells.get(value);
+		return cells == null ? new BitSet() : (BitSet) cells.clone();
+	}
+
+	/**
+	 * Gives the ids of all cells which coordinate contains, for each attribute represented
+	 * in {@code values}, at least one of the values of this attribute. If {@code values} is
+	 * empty, all cells are returned
+	 *
+	 * @param values
+	 * @return
+	 */
+	BitSet select(Collection<APopulationValue> values) {
+		Snapshot snapshot = getSnapshot();
+		Map<APopulationAttribute, BitSet> attributeCells = new HashMap<>();
+		for(APopulationValue value : values){
+			BitSet union = attributeCells.computeIfAbsent(value.getAttribute(), a -> new BitSet());
+			BitSet cells = snapshot.valueCells.get(value);
+			if(cells != null)
+				union.or(cells);
+		}
+		BitSet selection = (BitSet) snapshot.allCells.clone();
+		for(BitSet union : attributeCells.values())
+			selection.and(union);
+		return selection;
+	}
+
+	/*
+	 * Last published snapshot, or a new one if cells have been registered since
+	 */
+	private Snapshot getSnapshot() {
+		Snapshot current = snapshot;
+		if(current != null)
+			return current;
+		synchronized (this) {
+			if(snapshot == null)
+				snapshot = new Snapshot(valueCells, allCells);
+			return snapshot;
+		}
+	}
+	
+	/*
+	 * Immutable copy of the index. Copies are trimmed, hence cloning them, as select does, does not 
+	 * write into them and concurrent reads are safe
+	 */
+	private static final class Snapshot {
+		
+		private final Map<APopulationValue, BitSet> valueCells;
+		private final BitSet allCells;
+		
+		private Snapshot(Map<APopulationValue, BitSet> valueCells, BitSet allCells){
+			Map<APopulationValue, BitSet> copy = new HashMap<>(valueCells.size() * 2);
+			for(Map.Entry<APopulationValue, BitSet> entry : valueCells.entrySet())
+				copy.put(entry.getKey(), (BitSet) entry.getValue().clone());
+			this.valueCells = copy;
+			this.allCells = (BitSet) allCells.clone();
+		}
+		
+	}
+
+}
@@ -143,9 +143,7 @@ public abstract class ACoordinate<D, A> {
 	public boolean equals(Object obj) {
 		if (this == obj)
 			return true;
-		if (obj == null)
-			return false;
-		if (getClass() != obj.getClass())
+		if (!(obj instanceof ACoordinate))
 			return false;
 		@SuppressWarnings("rawtypes")
 		ACoordinate other = (ACoordinate) obj;
@@ -0,0 +1,210 @@
+package gospl.distribution.matrix.coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+
+/**
+ * Pool of {@link GosplInternedCoordinate} defined against a fixed set of dimensions and aspects:
+ * <p>
+ * <ul>
+ * <li> dimensions are ordered by name and each aspect, including the empty value of the dimension,
+ * is given an ordinal within its dimension
+ * <li> a coordinate is keyed by the ordinals of its aspects, packed into a {@code long} when all dimensions
+ * fit in 64 bits or stored as an {@code int[]} otherwise. Absent dimensions are allowed, hence partial
+ * coordinates can be interned as well
+ * <li> there is one and only one coordinate per combination of aspects: interning twice the same
+ * aspects gives the same instance
+ * </ul>
+ * <p>
+ * Interned coordinates are equal to (and have the same hash as) {@link GosplCoordinate} made of the same
+ * aspects, so they can be used as keys of any {@link AFullNDimensionalMatrix} built on these dimensions
+ * <p>
+ * Interning is thread safe
+ *
+ * @author kevinchapuis
+ *
+ */
+public class GosplCoordinateInterner {
+
+	private final List<APopulationAttribute> dimensions;
+	private final Map<APopulationAttribute, Integer> dimensionIndexes;
+	private final APopulationValue[][] values;
+	private final Map<APopulationValue, int[]> valueIndexes;
+
+	/*
+	 * Bit position of each dimension in packed keys: ordinal + 1 is stored, 0 standing
+	 * for an absent dimension. Null when keys cannot be packed in a long
+	 */
+	private final int[] shifts;
+
+	private final Map<Object, GosplInternedCoordinate> pool = new ConcurrentHashMap<>();
+
+	/**
+	 * Interner for the dimensions and aspects of a matrix
+	 *
+	 * @param matrix
+	 * @return
+	 */
+	public static GosplCoordinateInterner of(AFullNDimensionalMatrix<?> matrix) {
+		return new GosplCoordinateInterner(matrix.getDimensionsAsAttributesAndValues());
+	}
+
+	/**
+	 * Build an interner from dimensions and related aspects
+	 *
+	 * @param dimensionAspectMap
+	 */
+	public GosplCoordinateInterner(Map<APopulationAttribute, Set<APopulationValue>> dimensionAspectMap) {
+		this.dimensions = new ArrayList<>(dimensionAspectMap.keySet());
+		Collections.sort(dimensions, Comparator.comparing(APopulationAttribute::getAttributeName));
+
+		this.dimensionIndexes = new HashMap<>();
+		this.values = new APopulationValue[dimensions.size()][];
+		this.valueIndexes = new HashMap<>();
+		int[] bitShifts = new int[dimensions.size()];
+		int bits = 0;
+		for(int d = 0; d < dimensions.size(); d++){
+			dimensionIndexes.put(dimensions.get(d), d);
+			List<APopulationValue> aspects = new ArrayList<>(dimensionAspectMap.get(dimensions.get(d)));
+			Collections.sort(aspects, Comparator.comparing(APopulationValue::getInputStringValue));
+			APopulationValue emptyValue = dimensions.get(d).getEmptyValue();
+			if(emptyValue != null && !aspects.contains(emptyValue))
+				aspects.add(emptyValue);
+			values[d] = aspects.toArray(new APopulationValue[aspects.size()]);
+			for(int o = 0; o < values[d].length; o++)
+				valueIndexes.put(values[d][o], new int[]{d, o});
+			bitShifts[d] = bits;
+			bits += Integer.SIZE - Integer.numberOfLeadingZeros(values[d].length);
+		}
+		this.shifts = bits <= Long.SIZE ? bitShifts : null;
+	}
+
+	// ------------------------- INTERNING ------------------------- //
+
+	/**
+	 * Gives the interned coordinate made of the same aspects as {@code coordinate}
+	 *
+	 * @param coordinate
+	 * @return
+	 * @throws IllegalArgumentException if one aspect is unknown to this interner
+	 */
+	public GosplInternedCoordinate intern(ACoordinate<APopulationAttribute, APopulationValue> coordinate) {
+		if(coordinate instanceof GosplInternedCoordinate
+				&& ((GosplInternedCoordinate) coordinate).getInterner() == this)
+			return (GosplInternedCoordinate) coordinate;
+		return intern(coordinate.values());
+	}
+
+	/**
+	 * Gives the interned coordinate made of {@code aspects}
+	 *
+	 * @param aspects
+	 * @return
+	 * @throws IllegalArgumentException if one aspect is unknown to this interner or if
+	 * two aspects refer to the same dimension
+	 */
+	public GosplInternedCoordinate intern(Collection<APopulationValue> aspects) {
+		int[] ordinals = new int[dimensions.size()];
+		Arrays.fill(ordinals, -1);
+		for(APopulationValue aspect : aspects){
+			int[] index = valueIndexes.get(aspect);
+			if(index == null)
+				throw new IllegalArgumentException("Aspect "+aspect+" does not fit any dimension of this interner");
+			if(ordinals[index[0]] != -1)
+				throw new IllegalArgumentException("Coordinate must complies to the moto: One attribute, one value");
+			ordinals[index[0]] = index[1];
+		}
+		return pool.computeIfAbsent(getKey(ordinals), key -> new GosplInternedCoordinate(this, ordinals));
+	}
+
+	// ------------------------- ACCESSORS ------------------------- //
+
+	/**
+	 * The ordered list of dimensions
+	 *
+	 * @return
+	 */
+	public List<APopulationAttribute> getDimensions() {
+		return Collections.unmodifiableList(dimensions);
+	}
+
+	/**
+	 * The index of the dimension, or -1 if it is not part of this interner
+	 *
+	 * @param dimension
+	 * @return
+	 */
+	public int getDimensionIndex(APopulationAttribute dimension) {
+		Integer index = dimensionIndexes.get(dimension);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * The aspect of dimension at index {@code dimension} with given {@code ordinal}
+	 *
+	 * @param dimension
+	 * @param ordinal
+	 * @return
+	 */
+	public APopulationValue getValue(int dimension, int ordinal) {
+		return values[dimension][ordinal];
+	}
+
+	/**
+	 * The number of coordinates interned so far
+	 *
+	 * @return
+	 */
+	public int size() {
+		return pool.size();
+	}
+
+	// ------------------------- INNER UTILITIES ------------------------- //
+
+	private Object getKey(int[] ordinals) {
+		if(shifts == null)
+			return new OrdinalKey(ordinals);
+		long key = 0L;
+		for(int d = 0; d < ordinals.length; d++)
+			key |= (long) (ordinals[d] + 1) << shifts[d];
+		return key;
+	}
+
+	/*
+	 * Key of coordinates with too many dimensions to be packed in a long
+	 */
+	private static final class OrdinalKey {
+
+		private final int[] ordinals;
+		private final int hash;
+
+		private OrdinalKey(int[] ordinals) {
+			this.ordinals = ordinals;
+			this.hash = Arrays.hashCode(ordinals);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof OrdinalKey && Arrays.equals(ordinals, ((OrdinalKey) obj).ordinals);
+		}
+
+	}
+
+}
@@ -0,0 +1,115 @@
+package gospl.distribution.matrix.coordinate;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+
+/**
+ * Immutable coordinate obtained from a {@link GosplCoordinateInterner}: aspects are identified by their ordinal
+ * against the fixed dimension order of the interner, while hash, dimensions and dimension to aspect
+ * map are computed once at creation
+ * <p>
+ * It is equal to any {@link ACoordinate} made of the same aspects, and have the same hash
+ *
+ * @author kevinchapuis
+ *
+ */
+public class GosplInternedCoordinate extends ACoordinate<APopulationAttribute, APopulationValue> {
+
+	private final GosplCoordinateInterner interner;
+	private final int[] ordinals;
+	private final Map<APopulationAttribute, APopulationValue> map;
+	private final int hash;
+
+	GosplInternedCoordinate(GosplCoordinateInterner interner, int[] ordinals) {
+		super(buildValues(interner, ordinals));
+		this.interner = interner;
+		this.ordinals = ordinals;
+		Map<APopulationAttribute, APopulationValue> aspects = new LinkedHashMap<>();
+		for(APopulationValue value : values())
+			aspects.put(value.getAttribute(), value);
+		this.map = Collections.unmodifiableMap(aspects);
+		this.hash = super.hashCode();
+	}
+
+	/**
+	 * The ordinal of the aspect of dimension at index {@code dimension} (see {@link GosplCoordinateInterner#getDimensionIndex(APopulationAttribute)}),
+	 * or -1 if this coordinate has no aspect for this dimension
+	 *
+	 * @param dimension
+	 * @return
+	 */
+	public int getOrdinal(int dimension) {
+		return ordinals[dimension];
+	}
+
+	/**
+	 * The interner this coordinate comes from
+	 *
+	 * @return
+	 */
+	public GosplCoordinateInterner getInterner() {
+		return interner;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The set is unmodifiable
+	 */
+	@Override
+	public Set<APopulationValue> values() {
+		return super.values();
+	}
+
+	@Override
+	public Set<APopulationAttribute> getDimensions() {
+		return map.keySet();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The map is unmodifiable
+	 */
+	@Override
+	public Map<APopulationAttribute, APopulationValue> getMap() {
+		return map;
+	}
+
+	@Override
+	protected boolean isCoordinateSetComplient(Set<APopulationValue> coordinateSet) {
+		// Checked by the interner
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		// Interned coordinates are unique within an interner
+		if (obj instanceof GosplInternedCoordinate
+				&& ((GosplInternedCoordinate) obj).interner == interner)
+			return false;
+		return super.equals(obj);
+	}
+
+	private static Set<APopulationValue> buildValues(GosplCoordinateInterner interner, int[] ordinals) {
+		Set<APopulationValue> values = new LinkedHashSet<>();
+		for(int d = 0; d < ordinals.length; d++)
+			if(ordinals[d] != -1)
+				values.add(interner.getValue(d, ordinals[d]));
+		return Collections.unmodifiableSet(values);
+	}
+
+}
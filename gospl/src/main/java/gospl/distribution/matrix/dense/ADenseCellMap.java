@@ -0,0 +1,286 @@
+package gospl.distribution.matrix.dense;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.control.AControl;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+
+/**
+ * Dense storage for the cells of a {@link AFullNDimensionalMatrix}: cell values are kept in a flat
+ * primitive array addressed by the mixed-radix offset given by a {@link DenseMatrixLayout}.
+ * <p>
+ * This storage is exposed as a {@link java.util.Map} so that it can back {@link AFullNDimensionalMatrix}
+ * without changing its contract. Note that:
+ * <p>
+ * <ul>
+ * <li> controls returned by {@link #get(Object)}, {@link #values()} or entries are light views over the
+ * array: modifying them (e.g. {@link AControl#multiply(AControl)}) writes straight into the matrix
+ * <li> coordinates are not stored but rebuilt from offsets when iterating over keys or entries
+ * <li> a coordinate that does not address exactly one cell (partial coordinate, unknown or empty value)
+ * cannot be stored and leads to an {@link IllegalArgumentException}
+ * </ul>
+ * <p>
+ * Concurrent reads are safe, writes are synchronized on the map, including writes through cell views; note
+ * that updating a cell view (e.g. {@link AControl#add(AControl)}) reads then writes the cell, and is not atomic
+ *
+ * @author kevinchapuis
+ *
+ * @param <T>
+ */
+public abstract class ADenseCellMap<T extends Number>
+	extends AbstractMap<ACoordinate<APopulationAttribute, APopulationValue>, AControl<T>> {
+
+	protected final DenseMatrixLayout layout;
+
+	private final BitSet definedCells;
+	private int size = 0;
+
+	protected ADenseCellMap(DenseMatrixLayout layout) {
+		this.layout = layout;
+		this.definedCells = new BitSet(layout.getCellCount());
+	}
+
+	// ------------------------- CELL CONTRACT ------------------------- //
+
+	/**
+	 * Gives a control that reads and writes through the cell at {@code offset}
+	 *
+	 * @param offset
+	 * @return
+	 */
+	protected abstract AControl<T> getCellView(int offset);
+
+	/**
+	 * Gives a control detached from the matrix, holding the current value of the cell at {@code offset}
+	 *
+	 * @param offset
+	 * @return
+	 */
+	protected abstract AControl<T> getCellCopy(int offset);
+
+	/**
+	 * Write the value of the cell at {@code offset}
+	 *
+	 * @param offset
+	 * @param value
+	 */
+	protected abstract void setCell(int offset, Number value);
+
+	/**
+	 * Read the value of the cell at {@code offset} as a primitive double
+	 *
+	 * @param offset
+	 * @return
+	 */
+	public abstract double getCellValue(int offset);
+
+	// ------------------------- DENSE ACCESSORS ------------------------- //
+
+	/**
+	 * The layout used to address cells
+	 *
+	 * @return
+	 */
+	public DenseMatrixLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Whether the cell at {@code offset} has been defined or not
+	 *
+	 * @param offset
+	 * @return
+	 */
+	public boolean isDefined(int offset) {
+		return definedCells.get(offset);
+	}
+
+	/**
+	 * The offset of the next defined cell starting from {@code offset} (inclusive) or -1 if there is none
+	 *
+	 * @param offset
+	 * @return
+	 */
+	public int nextDefinedCell(int offset) {
+		return definedCells.nextSetBit(offset);
+	}
+
+	/**
+	 * Gives the control of the cell at {@code offset}, or null if the cell has not been defined.
+	 * The control is a view that writes through the matrix
+	 *
+	 * @param offset
+	 * @return
+	 */
+	public AControl<T> getControl(int offset) {
+		return definedCells.get(offset) ? getCellView(offset) : null;
+	}
+
+	/**
+	 * Define every cell at once, the value of the cell at offset {@code i} being {@code values[i]}
+	 *
+	 * @param values
+	 * @throws IllegalArgumentException if there is not exactly one value per cell
+	 */
+	public synchronized void setCells(double[] values) {
+		if(values.length != layout.getCellCount())
+			throw new IllegalArgumentException(values.length+" values are given for a dense matrix of "
+					+layout.getCellCount()+" cells");
+		for(int offset = 0; offset < values.length; offset++)
+			setCell(offset, values[offset]);
+		definedCells.set(0, values.length);
+		size = values.length;
+	}
+
+	// ------------------------- MAP CONTRACT ------------------------- //
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		int offset = getOffset(key);
+		return offset >= 0 && definedCells.get(offset);
+	}
+
+	@Override
+	public AControl<T> get(Object key) {
+		int offset = getOffset(key);
+		return offset < 0 ? null : getControl(offset);
+	}
+
+	@Override
+	public synchronized AControl<T> put(ACoordinate<APopulationAttribute, APopulationValue> key, AControl<T> value) {
+		int offset = layout.getOffset(key);
+		if(offset < 0)
+			throw new IllegalArgumentException("Coordinate "+key+" does not address a unique cell of this dense matrix: "
+					+ "it must have one and only one value for each of the "+layout.getDimensionCount()+" dimensions");
+		AControl<T> previous = null;
+		if(definedCells.get(offset))
+			previous = getCellCopy(offset);
+		else {
+			definedCells.set(offset);
+			size++;
+		}
+		setCell(offset, value.getValue());
+		return previous;
+	}
+
+	@Override
+	public synchronized AControl<T> remove(Object key) {
+		int offset = getOffset(key);
+		if(offset < 0 || !definedCells.get(offset))
+			return null;
+		AControl<T> previous = getCellCopy(offset);
+		setCell(offset, 0);
+		definedCells.clear(offset);
+		size--;
+		return previous;
+	}
+
+	@Override
+	public synchronized void clear() {
+		for(int offset = definedCells.nextSetBit(0); offset >= 0; offset = definedCells.nextSetBit(offset+1))
+			setCell(offset, 0);
+		definedCells.clear();
+		size = 0;
+	}
+
+	@Override
+	public Collection<AControl<T>> values() {
+		return new AbstractCollection<AControl<T>>() {
+			@Override
+			public Iterator<AControl<T>> iterator() {
+				return new DefinedCellIterator<AControl<T>>() {
+					@Override
+					protected AControl<T> get(int offset) {
+						return getCellView(offset);
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public Set<Entry<ACoordinate<APopulationAttribute, APopulationValue>, AControl<T>>> entrySet() {
+		return new AbstractSet<Entry<ACoordinate<APopulationAttribute, APopulationValue>, AControl<T>>>() {
+			@Override
+			public Iterator<Entry<ACoordinate<APopulationAttribute, APopulationValue>, AControl<T>>> iterator() {
+				return new DefinedCellIterator<Entry<ACoordinate<APopulationAttribute, APopulationValue>, AControl<T>>>() {
+					@Override
+					protected Entry<ACoordinate<APopulationAttribute, APopulationValue>, AControl<T>> get(int offset) {
+						return new SimpleImmutableEntry<>(layout.getCoordinate(offset), getCellView(offset));
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	// ------------------------- INNER UTILITIES ------------------------- //
+
+	@SuppressWarnings("unchecked")
+	private int getOffset(Object key) {
+		if(!(key instanceof ACoordinate))
+			return -1;
+		return layout.getOffset((ACoordinate<APopulationAttribute, APopulationValue>) key);
+	}
+
+	/*
+	 * Iterate over defined cells in offset order
+	 */
+	private abstract class DefinedCellIterator<E> implements Iterator<E> {
+
+		private int next = definedCells.nextSetBit(0);
+		private int current = -1;
+
+		protected abstract E get(int offset);
+
+		@Override
+		public boolean hasNext() {
+			return next >= 0;
+		}
+
+		@Override
+		public E next() {
+			if(next < 0)
+				throw new NoSuchElementException();
+			current = next;
+			next = definedCells.nextSetBit(current+1);
+			return get(current);
+		}
+
+		@Override
+		public void remove() {
+			if(current < 0)
+				throw new IllegalStateException();
+			synchronized (ADenseCellMap.this) {
+				setCell(current, 0);
+				definedCells.clear(current);
+				size--;
+			}
+			current = -1;
+		}
+
+	}
+
+}
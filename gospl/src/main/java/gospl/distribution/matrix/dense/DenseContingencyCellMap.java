@@ -0,0 +1,69 @@
+package gospl.distribution.matrix.dense;
+
+import gospl.distribution.matrix.control.AControl;
+import gospl.distribution.matrix.control.ControlContingency;
+
+/**
+ * Dense storage of contingencies: one {@code int} per cell
+ * 
+ * @see ADenseCellMap
+ * 
+ * @author kevinchapuis
+ *
+ */
+public class DenseContingencyCellMap extends ADenseCellMap<Integer> {
+
+	private final int[] cells;
+	
+	public DenseContingencyCellMap(DenseMatrixLayout layout) {
+		super(layout);
+		this.cells = new int[layout.getCellCount()];
+	}
+
+	@Override
+	protected AControl<Integer> getCellView(int offset) {
+		return new ContingencyCell(offset);
+	}
+
+	@Override
+	protected AControl<Integer> getCellCopy(int offset) {
+		return new ControlContingency(cells[offset]);
+	}
+
+	@Override
+	protected void setCell(int offset, Number value) {
+		cells[offset] = value.intValue();
+	}
+
+	@Override
+	public double getCellValue(int offset) {
+		return cells[offset];
+	}
+	
+	/*
+	 * Control that reads and writes through the cell array
+	 */
+	private final class ContingencyCell extends ControlContingency {
+		
+		private final int offset;
+		
+		private ContingencyCell(int offset) {
+			super(cells[offset]);
+			this.offset = offset;
+		}
+		
+		@Override
+		public Integer getValue() {
+			return cells[offset];
+		}
+		
+		@Override
+		protected void setValue(Integer control) {
+			synchronized (DenseContingencyCellMap.this) {
+				cells[offset] = control;
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,69 @@
+package gospl.distribution.matrix.dense;
+
+import gospl.distribution.matrix.control.AControl;
+import gospl.distribution.matrix.control.ControlFrequency;
+
+/**
+ * Dense storage of frequencies: one {@code double} per cell
+ * 
+ * @see ADenseCellMap
+ * 
+ * @author kevinchapuis
+ *
+ */
+public class DenseFrequencyCellMap extends ADenseCellMap<Double> {
+
+	private final double[] cells;
+	
+	public DenseFrequencyCellMap(DenseMatrixLayout layout) {
+		super(layout);
+		this.cells = new double[layout.getCellCount()];
+	}
+
+	@Override
+	protected AControl<Double> getCellView(int offset) {
+		return new FrequencyCell(offset);
+	}
+
+	@Override
+	protected AControl<Double> getCellCopy(int offset) {
+		return new ControlFrequency(cells[offset]);
+	}
+
+	@Override
+	protected void setCell(int offset, Number value) {
+		cells[offset] = value.doubleValue();
+	}
+
+	@Override
+	public double getCellValue(int offset) {
+		return cells[offset];
+	}
+	
+	/*
+	 * Control that reads and writes through the cell array
+	 */
+	private final class FrequencyCell extends ControlFrequency {
+		
+		private final int offset;
+		
+		private FrequencyCell(int offset) {
+			super(cells[offset]);
+			this.offset = offset;
+		}
+		
+		@Override
+		public Double getValue() {
+			return cells[offset];
+		}
+		
+		@Override
+		protected void setValue(Double control) {
+			synchronized (DenseFrequencyCellMap.this) {
+				cells[offset] = control;
+			}
+		}
+		
+	}
+
+}
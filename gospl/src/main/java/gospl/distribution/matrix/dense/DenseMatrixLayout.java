@@ -0,0 +1,236 @@
+package gospl.distribution.matrix.dense;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinate;
+
+/**
+ * Fixed integer layout of a full n-dimensional matrix: each dimension (attribute) gets an index
+ * and each of its value an ordinal, so that any complete coordinate can be translated into a
+ * single offset within a flat array using mixed-radix encoding:
+ * <p>
+ * {@code offset = sum(ordinal(d) * stride(d))}, with {@code stride(0) = 1} and
+ * {@code stride(d) = stride(d-1) * radix(d-1)}
+ * <p>
+ * Dimensions are sorted by attribute name and values by input string value, so that the layout
+ * (and hence cell offsets) does not depend on hash ordering
+ * <p>
+ * WARNING: only values given as aspects of the dimensions are indexed, i.e. empty values
+ * ({@link APopulationAttribute#getEmptyValue()}) cannot be part of a dense coordinate
+ *
+ * @author kevinchapuis
+ *
+ */
+public class DenseMatrixLayout {
+
+	private final List<APopulationAttribute> dimensions;
+	private final APopulationValue[][] values;
+	private final Map<APopulationValue, ValueIndex> valueIndexes;
+
+	private final int[] radix;
+	private final int[] strides;
+	private final int cellCount;
+
+	/**
+	 * Build the layout of a matrix from its dimensions and related aspects
+	 *
+	 * @param dimensionAspectMap
+	 * @throws IllegalArgumentException if the cartesian product of aspects exceed {@link Integer#MAX_VALUE}
+	 */
+	public DenseMatrixLayout(Map<APopulationAttribute, Set<APopulationValue>> dimensionAspectMap) {
+		this.dimensions = new ArrayList<>(dimensionAspectMap.keySet());
+		Collections.sort(dimensions, Comparator.comparing(APopulationAttribute::getAttributeName));
+
+		this.values = new APopulationValue[dimensions.size()][];
+		this.valueIndexes = new HashMap<>();
+		this.radix = new int[dimensions.size()];
+		this.strides = new int[dimensions.size()];
+
+		int stride = 1;
+		for(int d = 0; d < dimensions.size(); d++){
+			List<APopulationValue> aspects = new ArrayList<>(dimensionAspectMap.get(dimensions.get(d)));
+			Collections.sort(aspects, Comparator.comparing(APopulationValue::getInputStringValue));
+			values[d] = aspects.toArray(new APopulationValue[aspects.size()]);
+			for(int o = 0; o < values[d].length; o++)
+				valueIndexes.put(values[d][o], new ValueIndex(d, o));
+			radix[d] = values[d].length;
+			strides[d] = stride;
+			try {
+				stride = Math.multiplyExact(stride, Math.max(1, radix[d]));
+			} catch (ArithmeticException e) {
+				throw new IllegalArgumentException("Matrix with dimensions "+dimensions
+						+" exceed the maximum size of a dense matrix ("+Integer.MAX_VALUE+" cells)", e);
+			}
+		}
+		this.cellCount = dimensions.stream().anyMatch(d -> dimensionAspectMap.get(d).isEmpty()) ? 0 : stride;
+	}
+
+	// ------------------------- ACCESSORS ------------------------- //
+
+	/**
+	 * The total number of cells, i.e. the size of the cartesian product of all aspects
+	 *
+	 * @return
+	 */
+	public int getCellCount() {
+		return cellCount;
+	}
+
+	/**
+	 * The number of dimensions of the layout
+	 *
+	 * @return
+	 */
+	public int getDimensionCount() {
+		return dimensions.size();
+	}
+
+	/**
+	 * The ordered list of dimensions
+	 *
+	 * @return
+	 */
+	public List<APopulationAttribute> getDimensions() {
+		return Collections.unmodifiableList(dimensions);
+	}
+
+	/**
+	 * The index of the dimension, or -1 if it is not part of this layout
+	 *
+	 * @param dimension
+	 * @return
+	 */
+	public int getDimensionIndex(APopulationAttribute dimension) {
+		return dimensions.indexOf(dimension);
+	}
+
+	/**
+	 * The number of aspects of dimension at index {@code dimension}
+	 *
+	 * @param dimension
+	 * @return
+	 */
+	public int getRadix(int dimension) {
+		return radix[dimension];
+	}
+
+	/**
+	 * The offset increment associated to one step in dimension at index {@code dimension}
+	 *
+	 * @param dimension
+	 * @return
+	 */
+	public int getStride(int dimension) {
+		return strides[dimension];
+	}
+
+	/**
+	 * The aspect of dimension at index {@code dimension} with given {@code ordinal}
+	 *
+	 * @param dimension
+	 * @param ordinal
+	 * @return
+	 */
+	public APopulationValue getValue(int dimension, int ordinal) {
+		return values[dimension][ordinal];
+	}
+
+	/**
+	 * The dimension index of a value, or -1 if the value is unknown
+	 *
+	 * @param value
+	 * @return
+	 */
+	public int getDimensionIndex(APopulationValue value) {
+		ValueIndex vi = valueIndexes.get(value);
+		return vi == null ? -1 : vi.dimension;
+	}
+
+	/**
+	 * The ordinal of a value within its dimension, or -1 if the value is unknown
+	 *
+	 * @param value
+	 * @return
+	 */
+	public int getOrdinal(APopulationValue value) {
+		ValueIndex vi = valueIndexes.get(value);
+		return vi == null ? -1 : vi.ordinal;
+	}
+
+	// ------------------------- OFFSET ------------------------- //
+
+	/**
+	 * Translate a coordinate into a cell offset. The coordinate must have exactly one
+	 * aspect per dimension of the layout, otherwise -1 is returned
+	 *
+	 * @param coordinate
+	 * @return the offset of the cell or -1 if the coordinate does not address a unique cell
+	 */
+	public int getOffset(ACoordinate<APopulationAttribute, APopulationValue> coordinate) {
+		if(coordinate.size() != dimensions.size())
+			return -1;
+		// coordinates comply to the "one attribute, one value" moto, so having as many
+		// known values as dimensions means one value per dimension
+		int offset = 0;
+		for(APopulationValue value : coordinate.values()){
+			ValueIndex vi = valueIndexes.get(value);
+			if(vi == null)
+				return -1;
+			offset += vi.ordinal * strides[vi.dimension];
+		}
+		return offset;
+	}
+
+	/**
+	 * The ordinal of dimension at index {@code dimension} for the cell at {@code offset}
+	 *
+	 * @param offset
+	 * @param dimension
+	 * @return
+	 */
+	public int getOrdinal(int offset, int dimension) {
+		return (offset / strides[dimension]) % radix[dimension];
+	}
+
+	/**
+	 * Build back the coordinate of the cell at {@code offset}. A new coordinate is created
+	 * at each call
+	 *
+	 * @param offset
+	 * @return
+	 */
+	public ACoordinate<APopulationAttribute, APopulationValue> getCoordinate(int offset) {
+		if(offset < 0 || offset >= cellCount)
+			throw new IndexOutOfBoundsException("Offset "+offset+" is out of layout bounds [0:"+cellCount+"[");
+		Set<APopulationValue> coordinate = new HashSet<>(dimensions.size() * 2);
+		for(int d = 0; d < dimensions.size(); d++)
+			coordinate.add(values[d][getOrdinal(offset, d)]);
+		return new GosplCoordinate(coordinate);
+	}
+
+	/*
+	 * Position of a value in the layout
+	 */
+	private static final class ValueIndex {
+
+		private final int dimension;
+		private final int ordinal;
+
+		private ValueIndex(int dimension, int ordinal) {
+			this.dimension = dimension;
+			this.ordinal = ordinal;
+		}
+
+	}
+
+}
@@ -0,0 +1,79 @@
+package gospl.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationEntity;
+import core.metamodel.pop.io.GSSurveyWrapper;
+import gospl.algo.generator.IPopulationSink;
+
+/**
+ * Population sink that writes entities to a csv file as they are generated, with the same layout
+ * as sample surveys created by {@link GosplSurveyFactory}: an individual number followed by one
+ * column per attribute
+ * <p>
+ * When no attribute is given, columns are the attributes of the first entity written
+ * 
+ * @author kevinchapuis
+ *
+ */
+public class GosplCsvPopulationSink implements IPopulationSink {
+
+	private final BufferedWriter bw;
+	private final char separator;
+	
+	private List<APopulationAttribute> attributes;
+	private int individual = 1;
+	
+	public GosplCsvPopulationSink(Path csvFile) throws IOException {
+		this(csvFile, null, GSSurveyWrapper.DEFAULT_SEPARATOR);
+	}
+	
+	public GosplCsvPopulationSink(Path csvFile, Collection<APopulationAttribute> attributes,
+			char separator) throws IOException {
+		this.bw = Files.newBufferedWriter(csvFile);
+		this.separator = separator;
+		if(attributes != null)
+			this.writeHeader(attributes);
+	}
+	
+	@Override
+	public void consume(Collection<APopulationEntity> batch) throws IOException {
+		for(APopulationEntity e : batch) {
+			if(attributes == null)
+				this.writeHeader(e.getAttributes());
+			bw.write(String.valueOf(individual++));
+			for (APopulationAttribute attribute : attributes) {
+				bw.write(separator);
+				try {
+					bw.write(e.getValueForAttribute(attribute).getStringValue());
+				} catch (NullPointerException e2) {
+					bw.write("???");
+				}
+			}
+			bw.write("\n");
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		bw.close();
+	}
+	
+	private void writeHeader(Collection<APopulationAttribute> attributes) throws IOException {
+		this.attributes = new ArrayList<>(attributes);
+		bw.write("Individual");
+		bw.write(separator);
+		bw.write(this.attributes.stream().map(att -> att.getAttributeName())
+				.collect(Collectors.joining(String.valueOf(separator))));
+		bw.write("\n");
+	}
+
+}
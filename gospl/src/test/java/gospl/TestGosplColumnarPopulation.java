@@ -0,0 +1,125 @@
+package gospl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationEntity;
+import core.metamodel.pop.APopulationValue;
+import core.util.data.GSEnumDataType;
+import gospl.algo.generator.DistributionBasedGenerator;
+import gospl.algo.sampler.sr.GosplPrimitiveAliasSampler;
+import gospl.distribution.GosplNDimensionalMatrixFactory;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.entity.GosplEntity;
+import gospl.entity.attribute.GSEnumAttributeType;
+import gospl.entity.attribute.GosplAttributeFactory;
+
+public class TestGosplColumnarPopulation {
+
+	private APopulationAttribute gender;
+	private APopulationAttribute id;
+
+	@Before
+	public void setUp() throws Exception {
+		final GosplAttributeFactory gaf = new GosplAttributeFactory();
+		gender = gaf.createAttribute("Genre", GSEnumDataType.String,
+				Arrays.asList("Homme", "Femme"), GSEnumAttributeType.unique);
+		id = gaf.createAttribute("Id", GSEnumDataType.Integer, IntStream.range(0, 1000)
+				.mapToObj(Integer::toString).collect(Collectors.toList()), GSEnumAttributeType.unique);
+	}
+
+	@Test
+	public void testEntitiesRoundTrip() {
+		List<APopulationValue> genders = new ArrayList<>(gender.getValues());
+		List<APopulationValue> ids = new ArrayList<>(id.getValues());
+		List<APopulationEntity> entities = new ArrayList<>();
+		for(int i = 0; i < ids.size(); i++){
+			Map<APopulationAttribute, APopulationValue> values = new HashMap<>();
+			values.put(gender, genders.get(i % genders.size()));
+			values.put(id, ids.get(i));
+			entities.add(new GosplEntity(values));
+		}
+		GosplColumnarPopulation population = new GosplColumnarPopulation(16);
+		population.addAll(entities);
+
+		assertEquals(entities.size(), population.size());
+		assertEquals(new HashSet<>(Arrays.asList(gender, id)), population.getPopulationAttributes());
+		int row = 0;
+		for(APopulationEntity entity : population){
+			assertEquals(entities.get(row).getValueForAttribute(gender), entity.getValueForAttribute(gender));
+			assertEquals(entities.get(row).getValueForAttribute(id), entity.getValueForAttribute("Id"));
+			assertEquals(population.get(row), entity);
+			assertTrue(population.contains(entity));
+			row++;
+		}
+	}
+
+	@Test
+	public void testLateAttributeIsNullForPreviousRows() {
+		GosplColumnarPopulation population = new GosplColumnarPopulation();
+		Map<APopulationAttribute, APopulationValue> values = new HashMap<>();
+		values.put(gender, gender.getValues().iterator().next());
+		population.add(new GosplEntity(values));
+		values.put(id, id.getValues().iterator().next());
+		population.add(new GosplEntity(values));
+
+		assertNull(population.getValue(0, id));
+		assertEquals(1, population.get(0).getAttributes().size());
+		assertEquals(2, population.get(1).getValues().size());
+	}
+
+	@Test
+	public void testColumnarGeneration() {
+		Set<APopulationAttribute> attributes = new HashSet<>(Arrays.asList(gender));
+		AFullNDimensionalMatrix<Double> distribution = GosplNDimensionalMatrixFactory.getFactory()
+				.createEmptyDistribution(attributes);
+		distribution.setValue(0.3, "Genre", "Homme");
+		distribution.setValue(0.7, "Genre", "Femme");
+		GosplPrimitiveAliasSampler sampler = new GosplPrimitiveAliasSampler();
+		sampler.setDistribution(distribution);
+
+		GosplPopulation population = new DistributionBasedGenerator(sampler, true).generate(10000);
+		assertTrue(population instanceof GosplColumnarPopulation);
+		assertEquals(10000, population.size());
+		long women = population.stream().filter(entity -> entity.getValueForAttribute(gender)
+				.getStringValue().equals("Femme")).count();
+		assertEquals(0.7, women / 10000d, 0.03);
+	}
+
+	@Test
+	public void testStreamedGeneration() throws IOException {
+		Set<APopulationAttribute> attributes = new HashSet<>(Arrays.asList(gender));
+		AFullNDimensionalMatrix<Double> distribution = GosplNDimensionalMatrixFactory.getFactory()
+				.createEmptyDistribution(attributes);
+		distribution.setValue(0.3, "Genre", "Homme");
+		distribution.setValue(0.7, "Genre", "Femme");
+		GosplPrimitiveAliasSampler sampler = new GosplPrimitiveAliasSampler();
+		sampler.setDistribution(distribution);
+
+		GosplColumnarPopulation population = new GosplColumnarPopulation();
+		List<Integer> batchSizes = new ArrayList<>();
+		new DistributionBasedGenerator(sampler).generate(2500, 1000, batch -> {
+			batchSizes.add(batch.size());
+			population.addAll(batch);
+		});
+		assertEquals(Arrays.asList(1000, 1000, 500), batchSizes);
+		assertEquals(2500, population.size());
+	}
+
+}
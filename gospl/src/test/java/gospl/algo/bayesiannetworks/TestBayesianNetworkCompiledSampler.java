@@ -0,0 +1,92 @@
+package gospl.algo.bayesiannetworks;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import core.util.random.GenstarRandom;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+
+public class TestBayesianNetworkCompiledSampler {
+
+	private BayesianNetwork bn;
+	private NodeCategorical nGender;
+	private NodeCategorical nAge;
+
+	@Before
+	public void setUp() {
+
+		bn = new BayesianNetwork("test1");
+
+		nGender = new NodeCategorical("gender");
+		nGender.addDomain("male", "female");
+		nGender.setProbabilities(0.55, "male");
+		nGender.setProbabilities(0.45, "female");
+
+		nAge = new NodeCategorical("age");
+		nAge.addParent(nGender);
+		nAge.addDomain("<15", ">=15");
+		nAge.setProbabilities(0.55, "<15", "gender", "male");
+		nAge.setProbabilities(0.45, ">=15", "gender", "male");
+		nAge.setProbabilities(0.20, "<15", "gender", "female");
+		nAge.setProbabilities(0.80, ">=15", "gender", "female");
+
+		// children first, so that compilation has to order nodes
+		bn.add(nAge);
+		bn.add(nGender);
+	}
+
+	@Test
+	public void testCompiledCPT() throws Exception {
+
+		BayesianNetworkCompiledSampler sampler = new BayesianNetworkCompiledSampler(bn);
+
+		assertEquals(Arrays.asList(nGender, nAge), sampler.getNodes());
+		assertArrayEquals(new double[] {0.55, 0.45}, sampler.getCPT(0), 1e-9);
+		for (String gender: nGender.getDomain())
+			for (String age: nAge.getDomain()) {
+				int row = nGender.getDomainIndex(gender) * sampler.getParentStrides(1)[0];
+				assertEquals(nAge.getProbability(age, "gender", gender).doubleValue(),
+						sampler.getCPT(1)[row * 2 + nAge.getDomainIndex(age)], 1e-9);
+			}
+	}
+
+	@Test
+	public void testForwardSampling() throws Exception {
+
+		GenstarRandom.setSeed(42L);
+		BayesianNetworkCompiledSampler sampler = new BayesianNetworkCompiledSampler(bn);
+		List<ACoordinate<APopulationAttribute, APopulationValue>> draws = sampler.draw(100000);
+
+		assertEquals(100000, draws.size());
+		int males = 0, youngMales = 0, youngFemales = 0;
+		for (ACoordinate<APopulationAttribute, APopulationValue> individual: draws) {
+			boolean male = false, young = false;
+			for (APopulationValue value: individual.values()) {
+				if (value.getAttribute().getAttributeName().equals("gender"))
+					male = value.getStringValue().equals("male");
+				else
+					young = value.getStringValue().equals("<15");
+			}
+			if (male) {
+				males++;
+				if (young) youngMales++;
+			} else if (young)
+				youngFemales++;
+		}
+		assertEquals(0.55, males / 100000d, 0.01);
+		assertEquals(0.55, youngMales / (double) males, 0.01);
+		assertEquals(0.20, youngFemales / (double) (100000 - males), 0.01);
+
+		// same seed, same draws
+		GenstarRandom.setSeed(42L);
+		assertEquals(draws, sampler.draw(100000));
+	}
+
+}
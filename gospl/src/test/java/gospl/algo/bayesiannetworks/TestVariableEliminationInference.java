@@ -0,0 +1,168 @@
+package gospl.algo.bayesiannetworks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TestVariableEliminationInference {
+
+	@Test
+	public void testInference() {
+
+		BayesianNetwork bn = new BayesianNetwork("test1");
+
+		NodeCategorical nGender = new NodeCategorical("gender");
+		nGender.addDomain("male", "female");
+		nGender.setProbabilities(0.55, "male");
+		nGender.setProbabilities(0.45, "female");
+
+		NodeCategorical nAge = new NodeCategorical("age");
+		nAge.addParent(nGender);
+		nAge.addDomain("<15", ">=15");
+		nAge.setProbabilities(0.55, "<15", "gender", "male");
+		nAge.setProbabilities(0.45, ">=15", "gender", "male");
+		nAge.setProbabilities(0.50, "<15", "gender", "female");
+		nAge.setProbabilities(0.50, ">=15", "gender", "female");
+
+		bn.add(nGender);
+		bn.add(nAge);
+
+		VariableEliminationInferenceEngine ie = new VariableEliminationInferenceEngine(bn);
+
+		// test probabilities with no evidence
+		assertEquals(0.55, ie.getConditionalProbability(nGender, "male").doubleValue(), 1e-9);
+		assertEquals(0.45, ie.getConditionalProbability(nGender, "female").doubleValue(), 1e-9);
+		assertEquals(0.5275d, ie.getConditionalProbability(nAge, "<15").doubleValue(), 1e-9);
+		assertEquals(0.4725d, ie.getConditionalProbability(nAge, ">=15").doubleValue(), 1e-9);
+
+		// test with evidence
+		ie.addEvidence(nGender, "male");
+		assertEquals(1.0d, ie.getConditionalProbability(nGender, "male").doubleValue(), 1e-9);
+		assertEquals(0.0d, ie.getConditionalProbability(nGender, "female").doubleValue(), 1e-9);
+		assertEquals(0.55d, ie.getConditionalProbability(nAge, "<15").doubleValue(), 1e-9);
+		assertEquals(0.45d, ie.getConditionalProbability(nAge, ">=15").doubleValue(), 1e-9);
+
+		// we should be back to no evidence
+		ie.clearEvidence();
+		assertEquals(0.5275d, ie.getConditionalProbability(nAge, "<15").doubleValue(), 1e-9);
+
+		// evidence on the child now propagates to the parent
+		ie.addEvidence(nAge, "<15");
+		assertEquals(1.0d, ie.getConditionalProbability(nAge, "<15").doubleValue(), 1e-9);
+		assertEquals(0.55*0.55/0.5275, ie.getConditionalProbability(nGender, "male").doubleValue(), 1e-9);
+		assertEquals(0.45*0.50/0.5275, ie.getConditionalProbability(nGender, "female").doubleValue(), 1e-9);
+
+	}
+
+	@Test
+	public void testInferenceAgainstEnumeration() {
+
+		BayesianNetwork bn = new BayesianNetwork("test2");
+
+		NodeCategorical nA = new NodeCategorical("a");
+		nA.addDomain("a0", "a1");
+		nA.setProbabilities(0.3, "a0");
+		nA.setProbabilities(0.7, "a1");
+
+		NodeCategorical nB = new NodeCategorical("b");
+		nB.addDomain("b0", "b1");
+		nB.setProbabilities(0.6, "b0");
+		nB.setProbabilities(0.4, "b1");
+
+		// explaining away: c depends on both a and b
+		NodeCategorical nC = new NodeCategorical("c");
+		nC.addParent(nA);
+		nC.addParent(nB);
+		nC.addDomain("c0", "c1");
+		double[] pc0 = {0.9, 0.4, 0.3, 0.05};
+		for (int a = 0; a < 2; a++)
+			for (int b = 0; b < 2; b++) {
+				nC.setProbabilities(pc0[a*2+b], "c0", "a", "a"+a, "b", "b"+b);
+				nC.setProbabilities(1-pc0[a*2+b], "c1", "a", "a"+a, "b", "b"+b);
+			}
+
+		NodeCategorical nD = new NodeCategorical("d");
+		nD.addParent(nC);
+		nD.addDomain("d0", "d1");
+		nD.setProbabilities(0.8, "d0", "c", "c0");
+		nD.setProbabilities(0.2, "d1", "c", "c0");
+		nD.setProbabilities(0.1, "d0", "c", "c1");
+		nD.setProbabilities(0.9, "d1", "c", "c1");
+
+		bn.add(nD);
+		bn.add(nC);
+		bn.add(nB);
+		bn.add(nA);
+
+		VariableEliminationInferenceEngine ie = new VariableEliminationInferenceEngine(bn);
+		List<NodeCategorical> order = Arrays.asList(nA, nB, nC, nD);
+
+		Map<NodeCategorical,String> evidence = new HashMap<>();
+		evidence.put(nD, "d1");
+		evidence.put(nA, "a1");
+		for (Map.Entry<NodeCategorical,String> e: evidence.entrySet())
+			ie.addEvidence(e.getKey(), e.getValue());
+
+		for (NodeCategorical n: order)
+			for (String v: n.getDomain())
+				assertEquals(n+"="+v, enumerate(order, n, v, evidence),
+						ie.getConditionalProbability(n, v).doubleValue(), 1e-9);
+
+		// changing evidence values reuses the elimination plans
+		ie.addEvidence(nD, "d0");
+		evidence.put(nD, "d0");
+		assertEquals(enumerate(order, nB, "b1", evidence), ie.getConditionalProbability(nB, "b1").doubleValue(), 1e-9);
+
+		// impossible evidence
+		nD.setProbabilities(0.0, "d0", "c", "c0");
+		nD.setProbabilities(0.0, "d0", "c", "c1");
+		ie = new VariableEliminationInferenceEngine(bn);
+		ie.addEvidence(nD, "d0");
+		try {
+			ie.getConditionalProbability(nB, "b1");
+			fail("evidence with a null probability should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/*
+	 * p(n=v|evidence) by enumerating the full joint distribution
+	 */
+	private static double enumerate(List<NodeCategorical> nodes, NodeCategorical n, String v, Map<NodeCategorical,String> evidence) {
+		double[] res = new double[2];
+		enumerate(nodes, 0, new HashMap<>(), 1d, n, v, evidence, res);
+		return res[0] / res[1];
+	}
+
+	private static void enumerate(List<NodeCategorical> nodes, int idx, Map<String,String> assignment, double p,
+			NodeCategorical n, String v, Map<NodeCategorical,String> evidence, double[] res) {
+		if (idx == nodes.size()) {
+			res[1] += p;
+			if (assignment.get(n.getName()).equals(v))
+				res[0] += p;
+			return;
+		}
+		NodeCategorical current = nodes.get(idx);
+		for (String value: current.getDomain()) {
+			if (evidence.containsKey(current) && !evidence.get(current).equals(value))
+				continue;
+			Object[] parentAndValue = new Object[current.getParents().size()*2];
+			int i = 0;
+			for (NodeCategorical parent: current.parentsArray) {
+				parentAndValue[i++] = parent.getName();
+				parentAndValue[i++] = assignment.get(parent.getName());
+			}
+			assignment.put(current.getName(), value);
+			enumerate(nodes, idx+1, assignment, p*current.getProbability(value, parentAndValue).doubleValue(),
+					n, v, evidence, res);
+			assignment.remove(current.getName());
+		}
+	}
+
+}
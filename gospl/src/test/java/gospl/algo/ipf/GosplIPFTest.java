@@ -23,6 +23,7 @@ import gospl.algo.sampler.ISampler;
 import gospl.algo.sampler.sr.GosplBasicSampler;
 import gospl.distribution.GosplNDimensionalMatrixFactory;
 import gospl.distribution.exception.IllegalDistributionCreation;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
 import gospl.distribution.matrix.INDimensionalMatrix;
 import gospl.distribution.matrix.coordinate.ACoordinate;
 
@@ -67,5 +68,26 @@ public class GosplIPFTest {
 		IPopulation<APopulationEntity, APopulationAttribute, APopulationValue> popOut = gosplGenerator.generate(GENERATION_SIZE);
 		assertEquals(GENERATION_SIZE, popOut.size());
 	}
+	
+	@Test
+	public void testParallelFitIsDeterministic() {
+		// Small blocks so that descriptors are split across several fork-join tasks
+		int cellBlockSize = 2;
+		AFullNDimensionalMatrix<Double> sequentialFit = fit(1, cellBlockSize);
+		AFullNDimensionalMatrix<Double> twoThreadsFit = fit(2, cellBlockSize);
+		AFullNDimensionalMatrix<Double> fourThreadsFit = fit(4, cellBlockSize);
+		for(ACoordinate<APopulationAttribute, APopulationValue> coord : sequentialFit.getMatrix().keySet()){
+			double value = sequentialFit.getVal(coord).getValue();
+			assertEquals(value, twoThreadsFit.getVal(coord).getValue(), 0d);
+			assertEquals(value, fourThreadsFit.getVal(coord).getValue(), 0d);
+		}
+	}
+	
+	private AFullNDimensionalMatrix<Double> fit(int threadCount, int cellBlockSize) {
+		DistributionInferenceIPFAlgo ipf = new DistributionInferenceIPFAlgo(seed, 100, Math.pow(10, -4), 
+				threadCount, cellBlockSize);
+		ipf.setMarginalMatrix(marginals);
+		return ipf.process();
+	}
 
 }
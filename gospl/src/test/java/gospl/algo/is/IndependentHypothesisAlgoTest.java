@@ -2,14 +2,21 @@ package gospl.algo.is;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
 import gospl.algo.GosplAlgoUtilTest;
 import gospl.algo.sampler.IDistributionSampler;
 import gospl.algo.sampler.sr.GosplBasicSampler;
 import gospl.distribution.exception.IllegalDistributionCreation;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
 import gospl.distribution.matrix.ASegmentedNDimensionalMatrix;
+import gospl.distribution.matrix.coordinate.ACoordinate;
 
 public class IndependentHypothesisAlgoTest {
 	
@@ -19,7 +26,9 @@ public class IndependentHypothesisAlgoTest {
 	
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
-		partialDistribution = new GosplAlgoUtilTest().getSegmentedFrequency(SEGMENT_SIZE);
+		GosplAlgoUtilTest gaut = new GosplAlgoUtilTest();
+		gaut.buildPopulation(SEGMENT_SIZE);
+		partialDistribution = gaut.getSegmentedFrequency(SEGMENT_SIZE);
 	}
 
 	@Test
@@ -50,4 +59,31 @@ public class IndependentHypothesisAlgoTest {
 		// TODO: compare the two resulted sampler
 	}
 
+	@Test
+	public void testDenseDistributionEqualsDefaultOne() throws IllegalDistributionCreation {
+		AFullNDimensionalMatrix<Double> defaultDistribution = inferDistribution(new IndependantHypothesisAlgo(false));
+		AFullNDimensionalMatrix<Double> denseDistribution = inferDistribution(new IndependantHypothesisAlgo(true));
+		
+		assertTrue(denseDistribution.isDense());
+		assertEquals(defaultDistribution.size(), denseDistribution.size());
+		for(ACoordinate<APopulationAttribute, APopulationValue> coord : defaultDistribution.getMatrix().keySet())
+			assertEquals(defaultDistribution.getVal(coord).getValue(), denseDistribution.getVal(coord).getValue(), 1e-12);
+		for(APopulationAttribute dimension : defaultDistribution.getDimensions())
+			for(APopulationValue value : dimension.getValues())
+				assertEquals(defaultDistribution.getVal(value).getValue(), denseDistribution.getVal(value).getValue(), 1e-9);
+	}
+	
+	private AFullNDimensionalMatrix<Double> inferDistribution(IndependantHypothesisAlgo isAlgo) 
+			throws IllegalDistributionCreation {
+		List<AFullNDimensionalMatrix<Double>> distribution = new ArrayList<>();
+		isAlgo.inferSRSampler(partialDistribution, new GosplBasicSampler(){
+			@Override
+			public void setDistribution(AFullNDimensionalMatrix<Double> matrix) {
+				distribution.add(matrix);
+				super.setDistribution(matrix);
+			}
+		});
+		return distribution.get(0);
+	}
+
 }
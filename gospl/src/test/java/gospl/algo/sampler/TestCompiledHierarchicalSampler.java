@@ -0,0 +1,83 @@
+package gospl.algo.sampler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Test;
+
+import core.metamodel.IPopulation;
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationEntity;
+import core.metamodel.pop.APopulationValue;
+import core.util.data.GSEnumDataType;
+import core.util.random.GenstarRandom;
+import gospl.algo.GosplAlgoUtilTest;
+import gospl.algo.ISyntheticReconstructionAlgo;
+import gospl.algo.hs.HierarchicalHypothesisAlgo;
+import gospl.algo.sampler.sr.GosplHierarchicalSampler;
+import gospl.distribution.GosplNDimensionalMatrixFactory;
+import gospl.distribution.matrix.ASegmentedNDimensionalMatrix;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.entity.attribute.GSEnumAttributeType;
+import gospl.entity.attribute.GosplAttributeFactory;
+
+public class TestCompiledHierarchicalSampler extends AbstractTestBasedOnRouenCase<IHierarchicalSampler> {
+
+	public static int DRAWS = 20000;
+
+	@Override
+	protected ISyntheticReconstructionAlgo<IHierarchicalSampler> getInferenceAlgoToTest() {
+		return new HierarchicalHypothesisAlgo();
+	}
+	
+	@Override
+	protected IHierarchicalSampler getSamplerToTest() {
+		return new GosplHierarchicalSampler(true);
+	}
+
+	@Test
+	public void testCompiledMarginalsEqualNonCompiledOnes() throws Exception {
+		// Synthetic segmented matrix: gender x age and age x couple
+		GenstarRandom.setSeed(1L);
+		GosplAttributeFactory gaf = new GosplAttributeFactory();
+		APopulationAttribute gender = gaf.createAttribute("Genre", GSEnumDataType.String, 
+				Arrays.asList("Homme", "Femme"), GSEnumAttributeType.unique);
+		APopulationAttribute age = gaf.createAttribute("Age", GSEnumDataType.Integer, 
+				Arrays.asList("0-5", "6-15", "16-25", "26-40", "40-55", "55 et plus"), GSEnumAttributeType.range);
+		APopulationAttribute couple = gaf.createAttribute("Couple", GSEnumDataType.Boolean, 
+				Arrays.asList("oui", "non"), GSEnumAttributeType.unique);
+		IPopulation<APopulationEntity, APopulationAttribute, APopulationValue> population = 
+				new GosplAlgoUtilTest(new HashSet<>(Arrays.asList(gender, age, couple))).buildPopulation(1000);
+		GosplNDimensionalMatrixFactory factory = new GosplNDimensionalMatrixFactory();
+		ASegmentedNDimensionalMatrix<Double> distribution = factory.createDistributionFromDistributions(
+				factory.createDistribution(new HashSet<>(Arrays.asList(gender, age)), population),
+				factory.createDistribution(new HashSet<>(Arrays.asList(age, couple)), population));
+
+		Map<APopulationValue, Double> nonCompiled = drawMarginals(distribution, new GosplHierarchicalSampler(false));
+		Map<APopulationValue, Double> compiled = drawMarginals(distribution, new GosplHierarchicalSampler(true));
+		
+		assertEquals(nonCompiled.keySet(), compiled.keySet());
+		for(APopulationValue value : nonCompiled.keySet())
+			assertEquals(value.getStringValue(), nonCompiled.get(value), compiled.get(value), 0.02);
+	}
+
+	/*
+	 * Frequency of each value among DRAWS coordinates drawn under a fixed seed
+	 */
+	private Map<APopulationValue, Double> drawMarginals(ASegmentedNDimensionalMatrix<Double> distribution,
+			IHierarchicalSampler sampler) throws Exception {
+		ISampler<ACoordinate<APopulationAttribute, APopulationValue>> inferedSampler = 
+				getInferenceAlgoToTest().inferSRSampler(distribution, sampler);
+		GenstarRandom.setSeed(42L);
+		Map<APopulationValue, Double> marginals = new HashMap<>();
+		for(int i = 0; i < DRAWS; i++)
+			for(APopulationValue value : inferedSampler.draw().values())
+				marginals.merge(value, 1d / DRAWS, Double::sum);
+		return marginals;
+	}
+
+}
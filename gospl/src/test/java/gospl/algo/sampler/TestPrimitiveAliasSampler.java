@@ -0,0 +1,79 @@
+package gospl.algo.sampler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.util.data.GSEnumDataType;
+import core.util.random.GenstarRandom;
+import gospl.algo.sampler.sr.GosplPrimitiveAliasSampler;
+import gospl.distribution.GosplNDimensionalMatrixFactory;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.entity.attribute.GSEnumAttributeType;
+import gospl.entity.attribute.GosplAttributeFactory;
+
+public class TestPrimitiveAliasSampler {
+
+	private AFullNDimensionalMatrix<Double> distribution;
+	private GosplPrimitiveAliasSampler sampler;
+
+	private String[] ages = new String[]{"0-5", "6-15", "16-25", "26-40", "40-55", "55 et plus"};
+
+	@Before
+	public void setUp() throws Exception {
+		final GosplAttributeFactory gaf = new GosplAttributeFactory();
+		Set<APopulationAttribute> attributes = new HashSet<>();
+		attributes.add(gaf.createAttribute("Genre", GSEnumDataType.String,
+				Arrays.asList("Homme", "Femme"), GSEnumAttributeType.unique));
+		attributes.add(gaf.createAttribute("Age", GSEnumDataType.Integer,
+				Arrays.asList(ages), GSEnumAttributeType.range));
+		distribution = GosplNDimensionalMatrixFactory.getFactory().createEmptyDistribution(attributes);
+		double total = 0d;
+		for(int i = 0; i < ages.length; i++)
+			total += (i+1) + 2 * (ages.length - i);
+		for(int i = 0; i < ages.length; i++){
+			distribution.setValue((i+1) / total, "Genre", "Homme", "Age", ages[i]);
+			distribution.setValue(2 * (ages.length - i) / total, "Genre", "Femme", "Age", ages[i]);
+		}
+		sampler = new GosplPrimitiveAliasSampler();
+		sampler.setDistribution(distribution);
+	}
+
+	@Test
+	public void testDrawIndicesFitDistribution() {
+		int draws = 1000000;
+		int[] indices = new int[draws];
+		sampler.drawIndices(draws, indices);
+		int[] counts = new int[sampler.size()];
+		for(int index : indices)
+			counts[index]++;
+		for(int i = 0; i < counts.length; i++)
+			assertEquals(distribution.getVal(sampler.getCoordinate(i)).getValue(),
+					counts[i] / (double) draws, 0.005);
+	}
+
+	@Test
+	public void testDrawIndicesAreReproducible() {
+		int draws = 100000;
+		int[] first = new int[draws];
+		int[] second = new int[draws];
+		GenstarRandom.setSeed(1L);
+		sampler.drawIndices(draws, first);
+		GenstarRandom.setSeed(1L);
+		sampler.drawIndices(draws, second);
+		assertArrayEquals(first, second);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDrawIndicesRejectsSmallArray() {
+		sampler.drawIndices(10, new int[5]);
+	}
+
+}
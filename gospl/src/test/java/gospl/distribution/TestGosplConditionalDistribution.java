@@ -0,0 +1,156 @@
+package gospl.distribution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import core.util.data.GSEnumDataType;
+import gospl.distribution.exception.IllegalDistributionCreation;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.distribution.matrix.ASegmentedNDimensionalMatrix;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinate;
+import gospl.entity.attribute.GSEnumAttributeType;
+import gospl.entity.attribute.GosplAttributeFactory;
+
+public class TestGosplConditionalDistribution {
+
+	private GosplNDimensionalMatrixFactory factory = GosplNDimensionalMatrixFactory.getFactory();
+
+	private APopulationAttribute genre;
+	private APopulationAttribute age;
+	private APopulationAttribute couple;
+
+	/* Two segments sharing the age dimension, each with two undefined cells */
+	private AFullNDimensionalMatrix<Double> genreAge;
+	private AFullNDimensionalMatrix<Double> ageCouple;
+	private List<ACoordinate<APopulationAttribute, APopulationValue>> undefinedCells;
+
+	private ASegmentedNDimensionalMatrix<Double> distribution;
+	private List<Collection<APopulationValue>> queries;
+
+	@Before
+	public void setUp() throws Exception {
+		final GosplAttributeFactory gaf = new GosplAttributeFactory();
+		genre = gaf.createAttribute("Genre", GSEnumDataType.String,
+				Arrays.asList("Homme", "Femme"), GSEnumAttributeType.unique);
+		age = gaf.createAttribute("Age", GSEnumDataType.Integer,
+				Arrays.asList("0-15", "16-60", "60 et plus"), GSEnumAttributeType.range);
+		couple = gaf.createAttribute("Couple", GSEnumDataType.Boolean,
+				Arrays.asList("oui", "non"), GSEnumAttributeType.unique);
+
+		Random random = new Random(42);
+		undefinedCells = new ArrayList<>();
+		genreAge = fill(genre, age, random);
+		ageCouple = fill(age, couple, random);
+		distribution = factory.createDistributionFromDistributions(genreAge, ageCouple);
+
+		// Every combination of at most one value per attribute, and a few with several values of the same attribute
+		queries = new ArrayList<>();
+		for(APopulationValue g : withNull(genre))
+			for(APopulationValue a : withNull(age))
+				for(APopulationValue c : withNull(couple)){
+					List<APopulationValue> query = new ArrayList<>();
+					for(APopulationValue value : Arrays.asList(g, a, c))
+						if(value != null)
+							query.add(value);
+					if(!query.isEmpty())
+						queries.add(query);
+				}
+		queries.add(Arrays.asList(age.getValue("0-15"), age.getValue("16-60"), genre.getValue("Femme")));
+		queries.add(Arrays.asList(couple.getValue("oui"), couple.getValue("non"), age.getValue("60 et plus")));
+	}
+
+	@Test
+	public void testMemoizedValuesEqualRecomputedOnes() throws IllegalDistributionCreation {
+		// Second pass is answered out of memoized plans and marginals
+		assertSameAsRecomputed();
+		assertSameAsRecomputed();
+	}
+
+	@Test
+	public void testWritesThroughDistributionFlushCache() throws IllegalDistributionCreation {
+		assertSameAsRecomputed();
+		ACoordinate<APopulationAttribute, APopulationValue> cell = genreAge.getMatrix().keySet().iterator().next();
+		assertTrue(distribution.setValue(cell, genreAge.getVal(cell).getValue() / 2));
+		assertSameAsRecomputed();
+
+		ACoordinate<APopulationAttribute, APopulationValue> undefined = undefinedCells.get(1);
+		assertTrue(distribution.addValue(undefined, 0.01));
+		assertSameAsRecomputed();
+	}
+
+	@Test
+	public void testWritesThroughInnerMatricesAreDetected() throws IllegalDistributionCreation {
+		assertSameAsRecomputed();
+		for(AFullNDimensionalMatrix<Double> matrix : distribution.getMatrices()){
+			ACoordinate<APopulationAttribute, APopulationValue> cell = matrix.getMatrix().keySet().iterator().next();
+			assertTrue(matrix.setValue(cell, matrix.getVal(cell).getValue() / 3));
+		}
+		assertSameAsRecomputed();
+
+		assertTrue(genreAge.addValue(undefinedCells.get(0), 0.02));
+		assertSameAsRecomputed();
+	}
+
+	@Test
+	public void testClearCache() throws IllegalDistributionCreation {
+		assertSameAsRecomputed();
+		ACoordinate<APopulationAttribute, APopulationValue> cell = ageCouple.getMatrix().keySet().iterator().next();
+		ageCouple.getVal(cell).multiply(0.5);
+		// In place modification of a control is not detected: cache must be flushed
+		((GosplConditionalDistribution) distribution).clearCache();
+		assertSameAsRecomputed();
+	}
+
+	// ------------------------- UTILITIES ------------------------- //
+
+	/*
+	 * Compare with a new distribution over the same matrices, hence without any memoized value
+	 */
+	private void assertSameAsRecomputed() throws IllegalDistributionCreation {
+		for(Collection<APopulationValue> query : queries){
+			ASegmentedNDimensionalMatrix<Double> fresh = factory.createDistributionFromDistributions(genreAge, ageCouple);
+			assertEquals(query.toString(), valueOf(fresh, query), valueOf(distribution, query));
+		}
+	}
+
+	private Object valueOf(ASegmentedNDimensionalMatrix<Double> matrix, Collection<APopulationValue> query) {
+		try {
+			return matrix.getVal(query).getValue();
+		} catch (RuntimeException e) {
+			return e.getClass();
+		}
+	}
+
+	private AFullNDimensionalMatrix<Double> fill(APopulationAttribute first, APopulationAttribute second, Random random) {
+		AFullNDimensionalMatrix<Double> matrix = factory.createEmptyDistribution(new HashSet<>(Arrays.asList(first, second)));
+		List<ACoordinate<APopulationAttribute, APopulationValue>> cells = new ArrayList<>();
+		for(APopulationValue v1 : first.getValues())
+			for(APopulationValue v2 : second.getValues())
+				cells.add(new GosplCoordinate(new HashSet<>(Arrays.asList(v1, v2))));
+		undefinedCells.add(cells.remove(random.nextInt(cells.size())));
+		for(ACoordinate<APopulationAttribute, APopulationValue> cell : cells)
+			matrix.addValue(cell, 0.1 + random.nextDouble());
+		matrix.normalize();
+		return matrix;
+	}
+
+	private List<APopulationValue> withNull(APopulationAttribute attribute) {
+		List<APopulationValue> values = new ArrayList<>(attribute.getValues());
+		values.add(null);
+		return values;
+	}
+
+}
@@ -0,0 +1,133 @@
+package gospl.distribution.matrix;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import core.util.data.GSEnumDataType;
+import gospl.distribution.GosplNDimensionalMatrixFactory;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinate;
+import gospl.entity.attribute.GSEnumAttributeType;
+import gospl.entity.attribute.GosplAttributeFactory;
+
+public class TestCellValueIndex {
+
+	public static int QUERIES = 500;
+
+	private double delta = Math.pow(10, -9);
+
+	private List<APopulationAttribute> attributes;
+	private AFullNDimensionalMatrix<Double> matrix;
+	private Map<ACoordinate<APopulationAttribute, APopulationValue>, Double> cells;
+
+	@Before
+	public void setUp() throws Exception {
+		final GosplAttributeFactory gaf = new GosplAttributeFactory();
+		attributes = Arrays.asList(
+				gaf.createAttribute("Genre", GSEnumDataType.String,
+						Arrays.asList("Homme", "Femme"), GSEnumAttributeType.unique),
+				gaf.createAttribute("Age", GSEnumDataType.Integer,
+						Arrays.asList("0-5", "6-15", "16-25", "26-40", "40-55", "55 et plus"), GSEnumAttributeType.range),
+				gaf.createAttribute("Activite", GSEnumDataType.String,
+						Arrays.asList("Actif", "Chomeur", "Etudiant", "Retraite"), GSEnumAttributeType.unique));
+
+		// Sparse matrix: two thirds of the cells, defined in random order, so that insertion rank ids differ from offsets
+		List<ACoordinate<APopulationAttribute, APopulationValue>> coordinates = new ArrayList<>();
+		for(APopulationValue genre : attributes.get(0).getValues())
+			for(APopulationValue age : attributes.get(1).getValues())
+				for(APopulationValue activite : attributes.get(2).getValues())
+					coordinates.add(new GosplCoordinate(new HashSet<>(Arrays.asList(genre, age, activite))));
+		Random random = new Random(42);
+		Collections.shuffle(coordinates, random);
+		matrix = GosplNDimensionalMatrixFactory.getFactory().createEmptyDistribution(new HashSet<>(attributes));
+		cells = new HashMap<>();
+		for(ACoordinate<APopulationAttribute, APopulationValue> coordinate : coordinates.subList(0, coordinates.size() * 2 / 3)){
+			double value = random.nextDouble();
+			matrix.addValue(coordinate, value);
+			cells.put(coordinate, value);
+		}
+	}
+
+	@Test
+	public void testQueriesMatchBruteForce() {
+		Random random = new Random(7);
+		for(int q = 0; q < QUERIES; q++){
+			// Zero, one or several values per attribute
+			Set<APopulationValue> query = new LinkedHashSet<>();
+			for(APopulationAttribute attribute : attributes)
+				for(APopulationValue value : attribute.getValues())
+					if(random.nextInt(3) == 0)
+						query.add(value);
+
+			Set<ACoordinate<APopulationAttribute, APopulationValue>> expected = new HashSet<>();
+			double expectedSum = 0d;
+			for(ACoordinate<APopulationAttribute, APopulationValue> coordinate : cells.keySet())
+				if(matches(coordinate, query)){
+					expected.add(coordinate);
+					expectedSum += cells.get(coordinate);
+				}
+
+			assertEquals(query.toString(), expected, new HashSet<>(matrix.getCoordinates(query)));
+			assertEquals(expected.size(), matrix.getCoordinates(query).size());
+			if(!query.isEmpty())
+				assertEquals(query.toString(), expectedSum, matrix.getVal(query).getValue(), delta);
+		}
+	}
+
+	@Test
+	public void testSingleValueMatchesBruteForce() {
+		for(APopulationAttribute attribute : attributes)
+			for(APopulationValue value : attribute.getValues()){
+				double expectedSum = cells.keySet().stream().filter(c -> c.values().contains(value))
+						.mapToDouble(cells::get).sum();
+				assertEquals(value.toString(), expectedSum, matrix.getVal(value).getValue(), delta);
+			}
+	}
+
+	@Test
+	public void testNewCellsAreIndexed() {
+		ACoordinate<APopulationAttribute, APopulationValue> missing = null;
+		for(APopulationValue genre : attributes.get(0).getValues())
+			for(APopulationValue age : attributes.get(1).getValues())
+				for(APopulationValue activite : attributes.get(2).getValues()){
+					ACoordinate<APopulationAttribute, APopulationValue> coordinate =
+							new GosplCoordinate(new HashSet<>(Arrays.asList(genre, age, activite)));
+					if(!cells.containsKey(coordinate))
+						missing = coordinate;
+				}
+		APopulationValue genre = missing.getMap().get(attributes.get(0));
+		double before = matrix.getVal(genre).getValue();
+		matrix.addValue(missing, 0.5);
+		assertEquals(before + 0.5, matrix.getVal(genre).getValue(), delta);
+		assertEquals(1, matrix.getCoordinates(new HashSet<>(missing.values())).size());
+	}
+
+	/*
+	 * OR between values of the same attribute, AND between attributes
+	 */
+	private boolean matches(ACoordinate<APopulationAttribute, APopulationValue> coordinate, Set<APopulationValue> query) {
+		for(APopulationAttribute attribute : attributes){
+			Set<APopulationValue> values = new HashSet<>(query);
+			values.retainAll(attribute.getValues());
+			if(!values.isEmpty() && Collections.disjoint(values, coordinate.values()))
+				return false;
+		}
+		return true;
+	}
+
+}
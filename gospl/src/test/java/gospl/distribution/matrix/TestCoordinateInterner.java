@@ -0,0 +1,83 @@
+package gospl.distribution.matrix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import core.util.data.GSEnumDataType;
+import gospl.distribution.GosplNDimensionalMatrixFactory;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinateInterner;
+import gospl.distribution.matrix.coordinate.GosplInternedCoordinate;
+import gospl.entity.attribute.GSEnumAttributeType;
+import gospl.entity.attribute.GosplAttributeFactory;
+
+public class TestCoordinateInterner {
+
+	private AFullNDimensionalMatrix<Double> distribution;
+	private GosplCoordinateInterner interner;
+
+	@Before
+	public void setUp() throws Exception {
+		final GosplAttributeFactory gaf = new GosplAttributeFactory();
+		Set<APopulationAttribute> attributes = new HashSet<>();
+		attributes.add(gaf.createAttribute("Genre", GSEnumDataType.String,
+				Arrays.asList("Homme", "Femme"), GSEnumAttributeType.unique));
+		attributes.add(gaf.createAttribute("Age", GSEnumDataType.Integer,
+				Arrays.asList("0-5", "6-15", "16-25", "26-40", "40-55", "55 et plus"), GSEnumAttributeType.range));
+		distribution = GosplNDimensionalMatrixFactory.getFactory().createEmptyDistribution(attributes);
+		distribution.setValue(0.2, "Genre", "Homme", "Age", "0-5");
+		distribution.setValue(0.3, "Genre", "Femme", "Age", "16-25");
+		distribution.setValue(0.5, "Genre", "Homme", "Age", "55 et plus");
+		interner = GosplCoordinateInterner.of(distribution);
+	}
+
+	@Test
+	public void testInterningIsUnique() {
+		for(ACoordinate<APopulationAttribute, APopulationValue> coordinate : distribution.getMatrix().keySet()){
+			GosplInternedCoordinate interned = interner.intern(coordinate);
+			assertSame(interned, interner.intern(new HashSet<>(coordinate.values())));
+			assertSame(interned, interner.intern(interned));
+		}
+		assertEquals(distribution.size(), interner.size());
+	}
+
+	@Test
+	public void testInternedCoordinateIsAMatrixKey() {
+		for(ACoordinate<APopulationAttribute, APopulationValue> coordinate : distribution.getMatrix().keySet()){
+			GosplInternedCoordinate interned = interner.intern(coordinate);
+			assertEquals(coordinate, interned);
+			assertEquals(interned, coordinate);
+			assertEquals(coordinate.hashCode(), interned.hashCode());
+			assertEquals(coordinate.getMap(), interned.getMap());
+			assertEquals(distribution.getVal(coordinate).getValue(), distribution.getVal(interned).getValue());
+		}
+	}
+
+	@Test
+	public void testPartialCoordinates() {
+		APopulationValue homme = distribution.getDimension("Genre").getValue("Homme");
+		GosplInternedCoordinate partial = interner.intern(Collections.singleton(homme));
+		assertEquals(Collections.singleton(homme.getAttribute()), partial.getDimensions());
+		assertEquals(new GosplCoordinate(Collections.singleton(homme)), partial);
+		assertNotEquals(partial, interner.intern(distribution.getCoordinate("Genre", "Homme", "Age", "0-5")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOneValuePerDimension() {
+		APopulationAttribute age = distribution.getDimension("Age");
+		interner.intern(Arrays.asList(age.getValue("0-5"), age.getValue("6-15")));
+	}
+
+}
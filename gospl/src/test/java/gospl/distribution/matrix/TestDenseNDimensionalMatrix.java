@@ -0,0 +1,91 @@
+package gospl.distribution.matrix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationValue;
+import core.util.data.GSEnumDataType;
+import gospl.distribution.GosplNDimensionalMatrixFactory;
+import gospl.distribution.matrix.coordinate.ACoordinate;
+import gospl.distribution.matrix.coordinate.GosplCoordinate;
+import gospl.entity.attribute.GSEnumAttributeType;
+import gospl.entity.attribute.GosplAttributeFactory;
+
+public class TestDenseNDimensionalMatrix {
+
+	private Set<APopulationAttribute> attributes;
+	private double delta = Math.pow(10, -9);
+
+	private String[] ages = new String[]{"0-5", "6-15", "16-25", "26-40", "40-55", "55 et plus"};
+
+	@Before
+	public void setUp() throws Exception {
+		final GosplAttributeFactory gaf = new GosplAttributeFactory();
+		attributes = new HashSet<>();
+		attributes.add(gaf.createAttribute("Genre", GSEnumDataType.String,
+				Arrays.asList("Homme", "Femme"), GSEnumAttributeType.unique));
+		attributes.add(gaf.createAttribute("Age", GSEnumDataType.Integer,
+				Arrays.asList(ages), GSEnumAttributeType.range));
+	}
+
+	private AFullNDimensionalMatrix<Double> fill(AFullNDimensionalMatrix<Double> m) {
+		for(int i = 0; i < ages.length; i++){
+			m.setValue(0.47 / ages.length * (i+1) / 3.5, "Genre", "Homme", "Age", ages[i]);
+			m.setValue(0.53 / ages.length * (ages.length - i) / 3.5, "Genre", "Femme", "Age", ages[i]);
+		}
+		return m;
+	}
+
+	@Test
+	public void testDenseStorageMatchesSparseStorage() {
+		GosplNDimensionalMatrixFactory factory = GosplNDimensionalMatrixFactory.getFactory();
+		AFullNDimensionalMatrix<Double> sparse = fill(factory.createEmptyDistribution(attributes));
+		AFullNDimensionalMatrix<Double> dense = fill(factory.createEmptyDenseDistribution(attributes));
+
+		assertTrue(dense.isDense());
+		assertFalse(sparse.isDense());
+		assertEquals(sparse.size(), dense.size());
+		assertEquals(sparse.getVal().getValue(), dense.getVal().getValue(), delta);
+
+		for(ACoordinate<APopulationAttribute, APopulationValue> coord : sparse.getMatrix().keySet())
+			assertEquals(sparse.getVal(coord).getValue(), dense.getVal(coord).getValue(), delta);
+		for(String age : ages)
+			assertEquals(sparse.getVal("Age", age).getValue(), dense.getVal("Age", age).getValue(), delta);
+		assertEquals(sparse.getVal("Genre", "Femme").getValue(), dense.getVal("Genre", "Femme").getValue(), delta);
+		assertEquals(sparse.getCoordinates(sparse.getValues("Genre", "Homme", "Age", "0-5")).size(),
+				dense.getCoordinates(dense.getValues("Genre", "Homme", "Age", "0-5")).size());
+	}
+
+	@Test
+	public void testDenseControlWritesThrough() {
+		AFullNDimensionalMatrix<Double> dense = fill(GosplNDimensionalMatrixFactory.getFactory()
+				.createEmptyDenseDistribution(attributes));
+		ACoordinate<APopulationAttribute, APopulationValue> coord = dense.getCoordinate("Genre", "Homme", "Age", "0-5");
+		double before = dense.getVal(coord).getValue();
+		dense.getVal(coord).multiply(2d);
+		assertEquals(2 * before, dense.getVal(coord).getValue(), delta);
+
+		dense.normalize();
+		assertEquals(1d, dense.getVal().getValue(), delta);
+		assertFalse(dense.addValue(coord, 0.5));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDenseRejectsPartialCoordinate() {
+		AFullNDimensionalMatrix<Double> dense = GosplNDimensionalMatrixFactory.getFactory()
+				.createEmptyDenseDistribution(attributes);
+		APopulationAttribute genre = dense.getDimension("Genre");
+		dense.setValue(new GosplCoordinate(Collections.singleton(genre.getValue("Homme"))), 0.5);
+	}
+
+}
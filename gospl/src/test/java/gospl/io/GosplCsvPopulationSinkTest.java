@@ -0,0 +1,144 @@
+package gospl.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationEntity;
+import core.metamodel.pop.APopulationValue;
+import core.metamodel.pop.io.GSSurveyWrapper;
+import core.util.data.GSEnumDataType;
+import gospl.algo.generator.DistributionBasedGenerator;
+import gospl.algo.generator.IPopulationSink;
+import gospl.algo.sampler.sr.GosplPrimitiveAliasSampler;
+import gospl.distribution.GosplNDimensionalMatrixFactory;
+import gospl.distribution.matrix.AFullNDimensionalMatrix;
+import gospl.entity.GosplEntity;
+import gospl.entity.attribute.GSEnumAttributeType;
+import gospl.entity.attribute.GosplAttributeFactory;
+
+public class GosplCsvPopulationSinkTest {
+
+	public static char SEPARATOR = ';';
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+
+	private APopulationAttribute gender;
+	private APopulationAttribute age;
+	private GosplPrimitiveAliasSampler sampler;
+
+	@Before
+	public void setUp() throws Exception {
+		final GosplAttributeFactory gaf = new GosplAttributeFactory();
+		gender = gaf.createAttribute("Genre", GSEnumDataType.String,
+				Arrays.asList("Homme", "Femme"), GSEnumAttributeType.unique);
+		age = gaf.createAttribute("Age", GSEnumDataType.Integer,
+				Arrays.asList("0-15", "16-60", "60 et plus"), GSEnumAttributeType.range);
+		AFullNDimensionalMatrix<Double> distribution = GosplNDimensionalMatrixFactory.getFactory()
+				.createEmptyDistribution(new HashSet<>(Arrays.asList(gender, age)));
+		distribution.setValue(0.1, "Genre", "Homme", "Age", "0-15");
+		distribution.setValue(0.2, "Genre", "Homme", "Age", "16-60");
+		distribution.setValue(0.2, "Genre", "Homme", "Age", "60 et plus");
+		distribution.setValue(0.1, "Genre", "Femme", "Age", "0-15");
+		distribution.setValue(0.3, "Genre", "Femme", "Age", "16-60");
+		distribution.setValue(0.1, "Genre", "Femme", "Age", "60 et plus");
+		sampler = new GosplPrimitiveAliasSampler();
+		sampler.setDistribution(distribution);
+	}
+
+	@Test
+	public void testStreamedGenerationIsWrittenInBatches() throws IOException {
+		Path csv = tmpDir.newFile("population.csv").toPath();
+		List<Integer> batchSizes = new ArrayList<>();
+		try (GosplCsvPopulationSink csvSink = new GosplCsvPopulationSink(csv, Arrays.asList(gender, age), SEPARATOR)) {
+			IPopulationSink sink = batch -> {
+				batchSizes.add(batch.size());
+				csvSink.consume(batch);
+			};
+			new DistributionBasedGenerator(sampler).generate(2500, 1000, sink);
+		}
+		assertEquals(Arrays.asList(1000, 1000, 500), batchSizes);
+
+		List<String> lines = Files.readAllLines(csv);
+		assertEquals("Individual;Genre;Age", lines.get(0));
+		assertEquals(2501, lines.size());
+		Set<String> genders = gender.getValues().stream().map(APopulationValue::getStringValue).collect(Collectors.toSet());
+		Set<String> ages = age.getValues().stream().map(APopulationValue::getStringValue).collect(Collectors.toSet());
+		for(int i = 1; i < lines.size(); i++){
+			// Individual numbers go on across batch boundaries
+			String[] row = lines.get(i).split(String.valueOf(SEPARATOR));
+			assertEquals(3, row.length);
+			assertEquals(String.valueOf(i), row[0]);
+			assertTrue(genders.contains(row[1]));
+			assertTrue(ages.contains(row[2]));
+		}
+	}
+
+	@Test
+	public void testHeaderFromFirstEntity() throws IOException {
+		Path csv = tmpDir.newFile("population.csv").toPath();
+		Map<APopulationAttribute, APopulationValue> values = new HashMap<>();
+		values.put(gender, gender.getValue("Femme"));
+		APopulationEntity first = new GosplEntity(values);
+		values = new HashMap<>(values);
+		values.put(age, age.getValue("16-60"));
+		APopulationEntity second = new GosplEntity(values);
+		try (GosplCsvPopulationSink sink = new GosplCsvPopulationSink(csv)) {
+			sink.consume(Arrays.asList(first));
+			sink.consume(Arrays.asList(second));
+		}
+
+		// Attributes of the second entity unknown to the first one are not written
+		String separator = String.valueOf(GSSurveyWrapper.DEFAULT_SEPARATOR);
+		assertEquals(Arrays.asList("Individual"+separator+"Genre", "1"+separator+"Femme", "2"+separator+"Femme"),
+				Files.readAllLines(csv));
+	}
+
+	@Test
+	public void testMissingValues() throws IOException {
+		Path csv = tmpDir.newFile("population.csv").toPath();
+		Map<APopulationAttribute, APopulationValue> values = new HashMap<>();
+		values.put(gender, gender.getValue("Homme"));
+		Collection<APopulationEntity> batch = Collections.singletonList(new GosplEntity(values));
+		try (GosplCsvPopulationSink sink = new GosplCsvPopulationSink(csv, Arrays.asList(gender, age), SEPARATOR)) {
+			sink.consume(Collections.emptyList());
+			sink.consume(batch);
+		}
+		assertEquals(Arrays.asList("Individual;Genre;Age", "1;Homme;???"), Files.readAllLines(csv));
+	}
+
+	@Test
+	public void testEmptyGenerationOnlyWritesHeader() throws IOException {
+		Path csv = tmpDir.newFile("population.csv").toPath();
+		try (GosplCsvPopulationSink sink = new GosplCsvPopulationSink(csv, Arrays.asList(gender, age), SEPARATOR)) {
+			new DistributionBasedGenerator(sampler).generate(0, 10, sink);
+		}
+		assertEquals(Arrays.asList("Individual;Genre;Age"), Files.readAllLines(csv));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBatchSizeMustBePositive() throws IOException {
+		new DistributionBasedGenerator(sampler).generate(10, 0, batch -> {});
+	}
+
+}
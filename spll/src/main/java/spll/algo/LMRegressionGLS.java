@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -36,20 +35,15 @@ public class LMRegressionGLS extends GLSMultipleLinearRegression implements ISPL
 		this.regVars = new ArrayList<>(regressors
 				.parallelStream().map(varfm -> varfm.getVariable())
 				.collect(Collectors.toSet()));
-		this.observation = new ArrayList<>(observations.size());
+		SPLRegressionData<SPLVariable> data = new SPLRegressionData<>(observations, regressors, regVars);
+		this.observation = new ArrayList<>(data.getObservations());
 		double[] instances = new double[regVars.size() * observations.size() + observations.size()];
-		int instanceCount = 0;
-		for(AGeoEntity geoEntity : observations.keySet()){
-			observation.add(geoEntity);
-			instances[instanceCount++] = observations.get(geoEntity);
-			for(int i = 0; i < regVars.size(); i++){
-				int idx = i;
-				Optional<ISPLMatcher<SPLVariable, Double>> optVar = regressors.parallelStream()
-						.filter(varfm -> varfm.getEntity().equals(geoEntity) 
-								&& varfm.getVariable().equals(regVars.get(idx)))
-						.findFirst();
-				instances[instanceCount++] = optVar.isPresent() ? optVar.get().getValue() : 0d;
-			}
+		for(int row = 0; row < observation.size(); row++){
+			int offset = row * (regVars.size() + 1);
+			instances[offset] = data.getY()[row];
+			int[] columns = data.getRowColumns(row);
+			for(int k = 0; k < columns.length; k++)
+				instances[offset + 1 + columns[k]] = data.getRowValues(row)[k];
 		}
 
 		super.newSampleData(instances, observations.size(), regVars.size());
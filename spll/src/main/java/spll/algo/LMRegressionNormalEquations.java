@@ -0,0 +1,209 @@
+package spll.algo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.exception.MathIllegalArgumentException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.apache.commons.math3.linear.QRDecomposition;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+
+import core.metamodel.geo.AGeoEntity;
+import spll.datamapper.matcher.ISPLMatcher;
+import spll.datamapper.variable.SPLVariable;
+
+/**
+ * Ordinary least square regression solved through normal equations: {@code X'X b = X'y}
+ * <p>
+ * <ul>
+ * <li> design matrix is never built: X'X and X'y are accumulated from sparse rows (see {@link SPLRegressionData}),
+ * in parallel partitions of observations, so that memory does not depend on the number of observations
+ * and each observation costs the square of its number of matched variables
+ * <li> normal equations are solved with a Cholesky decomposition, falling back to QR decomposition when X'X
+ * is not numerically positive definite
+ * </ul>
+ * <p>
+ * Scales to large number of observations (areas) with hundreds of variables; WARNING: normal equations
+ * square the condition number of the problem, so that {@link LMRegressionOLS} should be preferred on small
+ * but ill conditioned data
+ *
+ * @author kevinchapuis
+ *
+ */
+public class LMRegressionNormalEquations implements ISPLRegressionAlgo<SPLVariable, Double> {
+
+	private SPLRegressionData<SPLVariable> data;
+	private boolean noIntercept = false;
+
+	private double[] parameters;
+	private Map<SPLVariable, Double> regression;
+	private double intercept;
+
+	@Override
+	public void setupData(Map<AGeoEntity, Double> observations,
+			Set<ISPLMatcher<SPLVariable, Double>> regressors) {
+		// Reset regression if already been calculated with another setup
+		this.regression = null;
+		this.parameters = null;
+		this.data = new SPLRegressionData<>(observations, regressors);
+	}
+
+	@Override
+	public Map<SPLVariable, Double> getRegressionParameter() {
+		if(regression == null){
+			double[] rVec = estimateRegressionParameters();
+			int offset = noIntercept ? 0 : 1;
+			intercept = noIntercept ? 0d : rVec[0];
+			regression = new HashMap<>();
+			List<SPLVariable> regVars = data.getVariables();
+			for(int i = 0; i < regVars.size(); i++)
+				regression.put(regVars.get(i), rVec[i + offset]);
+		}
+		return regression;
+	}
+
+	@Override
+	public Map<AGeoEntity, Double> getResidual() {
+		double[] rVec = estimateRegressionParameters();
+		int offset = noIntercept ? 0 : 1;
+		Map<AGeoEntity, Double> residual = new HashMap<>();
+		List<AGeoEntity> observation = data.getObservations();
+		for(int row = 0; row < observation.size(); row++){
+			double estimate = noIntercept ? 0d : rVec[0];
+			int[] columns = data.getRowColumns(row);
+			double[] values = data.getRowValues(row);
+			for(int k = 0; k < columns.length; k++)
+				estimate += values[k] * rVec[columns[k] + offset];
+			residual.put(observation.get(row), data.getY()[row] - estimate);
+		}
+		return residual;
+	}
+
+	@Override
+	public double getIntercept() {
+		getRegressionParameter();
+		return intercept;
+	}
+
+	/**
+	 * Whether the model should include an intercept term (default) or not
+	 *
+	 * @param noIntercept
+	 */
+	public void setNoIntercept(boolean noIntercept) {
+		this.noIntercept = noIntercept;
+		this.regression = null;
+		this.parameters = null;
+	}
+
+	/**
+	 * Regression parameters: intercept first (unless there is no intercept) followed by
+	 * variable coefficients in the order of {@link SPLRegressionData#getVariables()}
+	 *
+	 * @return
+	 * @throws IllegalStateException if data has not been set up
+	 * @throws org.apache.commons.math3.linear.SingularMatrixException if X'X is singular
+	 */
+	public double[] estimateRegressionParameters() {
+		if(data == null)
+			throw new IllegalStateException("Regression data must be set up before estimation");
+		if(parameters == null){
+			NormalEquations ne = IntStream.range(0, data.getObservations().size()).parallel()
+					.collect(() -> new NormalEquations(data.getVariables().size() + (noIntercept ? 0 : 1)),
+							this::accumulate, NormalEquations::combine);
+			RealMatrix xtx = ne.getXTX();
+			RealVector xty = new ArrayRealVector(ne.xty, false);
+			RealVector solution;
+			try {
+				solution = new CholeskyDecomposition(xtx).getSolver().solve(xty);
+			} catch (MathIllegalArgumentException e) {
+				solution = new QRDecomposition(xtx).getSolver().solve(xty);
+			}
+			parameters = solution.toArray();
+		}
+		return parameters.clone();
+	}
+
+	/**
+	 * The regression data this regression is based on
+	 *
+	 * @return
+	 */
+	public SPLRegressionData<SPLVariable> getRegressionData() {
+		return data;
+	}
+
+	/**
+	 * Variables of the regression, in the order of {@link #estimateRegressionParameters()}
+	 *
+	 * @return
+	 */
+	public List<SPLVariable> getVariables() {
+		return new ArrayList<>(data.getVariables());
+	}
+
+	// ------------------------- INNER UTILITIES ------------------------- //
+
+	/*
+	 * Add one observation to the upper triangle of X'X and to X'y
+	 */
+	private void accumulate(NormalEquations ne, int row) {
+		int offset = noIntercept ? 0 : 1;
+		int[] columns = data.getRowColumns(row);
+		double[] values = data.getRowValues(row);
+		double y = data.getY()[row];
+		int p = ne.size;
+		if(!noIntercept){
+			ne.xtx[0] += 1d;
+			ne.xty[0] += y;
+			for(int k = 0; k < columns.length; k++)
+				ne.xtx[columns[k] + offset] += values[k];
+		}
+		for(int k = 0; k < columns.length; k++){
+			int i = columns[k] + offset;
+			ne.xty[i] += values[k] * y;
+			for(int l = k; l < columns.length; l++)
+				ne.xtx[i * p + columns[l] + offset] += values[k] * values[l];
+		}
+	}
+
+	private static final class NormalEquations {
+
+		private final int size;
+		private final double[] xtx;
+		private final double[] xty;
+
+		private NormalEquations(int size) {
+			this.size = size;
+			this.xtx = new double[size * size];
+			this.xty = new double[size];
+		}
+
+		private void combine(NormalEquations other) {
+			for(int i = 0; i < xtx.length; i++)
+				xtx[i] += other.xtx[i];
+			for(int i = 0; i < xty.length; i++)
+				xty[i] += other.xty[i];
+		}
+
+		/*
+		 * Symmetric matrix from the accumulated upper triangle
+		 */
+		private RealMatrix getXTX() {
+			double[][] matrix = new double[size][size];
+			for(int i = 0; i < size; i++)
+				for(int j = i; j < size; j++)
+					matrix[i][j] = matrix[j][i] = xtx[i * size + j];
+			return new Array2DRowRealMatrix(matrix, false);
+		}
+
+	}
+
+}
@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -32,24 +31,10 @@ public class LMRegressionOLS extends OLSMultipleLinearRegression implements ISPL
 		this.regVars = new ArrayList<>(regressors
 				.parallelStream().map(varfm -> varfm.getVariable())
 				.collect(Collectors.toSet()));
-		this.observation = new ArrayList<>(observations.size());
-		double[] y = new double[observations.size()];
-		double[][] x = new double[observations.size()][];
-		int observationIdx = 0;
-		for(AGeoEntity geoEntity : observations.keySet()){
-			observation.add(geoEntity);
-			y[observationIdx] = observations.get(geoEntity);
-			x[observationIdx] = new double[regVars.size()];
-			for(int i = 0; i < regVars.size(); i++){
-				int index = i;
-				Optional<ISPLMatcher<SPLVariable, Double>> optVar = regressors.parallelStream()
-						.filter(varfm -> varfm.getEntity().equals(geoEntity) 
-								&& varfm.getVariable().equals(regVars.get(index)))
-						.findFirst();
-				x[observationIdx][index] = optVar.isPresent() ? optVar.get().getValue() : 0d;
-			}
-			observationIdx++;
-		}
+		SPLRegressionData<SPLVariable> data = new SPLRegressionData<>(observations, regressors, regVars);
+		this.observation = new ArrayList<>(data.getObservations());
+		double[] y = data.getY();
+		double[][] x = data.getDenseDesignMatrix();
 		super.newSampleData(y, x);
 	}
 
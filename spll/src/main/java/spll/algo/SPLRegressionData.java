@@ -0,0 +1,212 @@
+package spll.algo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import core.metamodel.geo.AGeoEntity;
+import spll.datamapper.matcher.ISPLMatcher;
+import spll.datamapper.variable.ISPLVariable;
+
+/**
+ * Regression data assembled from observations and matchers in one pass over the matchers:
+ * each matcher is dispatched to its observation (row) and variable (column) through hash lookups,
+ * instead of searching the matcher set for each observation x variable pair
+ * <p>
+ * Rows are stored sparse, as only matched values are kept: they can be turned into a dense
+ * design matrix (see {@link #getDenseDesignMatrix()}) or used directly (see {@link #getRowColumns(int)}
+ * and {@link #getRowValues(int)}). When several matchers refer to the same observation and variable,
+ * the first one encountered is retained
+ * <p>
+ * Matchers whose entity is not an observation are ignored, but their variable is still a column
+ *
+ * @author kevinchapuis
+ *
+ * @param <V>
+ */
+public class SPLRegressionData<V extends ISPLVariable> {
+
+	private final List<AGeoEntity> observations;
+	private final List<V> variables;
+	private final double[] y;
+
+	private final int[][] rowColumns;
+	private final double[][] rowValues;
+
+	/**
+	 * Assemble regression data with variables taken in the iteration order of the set
+	 * of variables found in {@code regressors}
+	 *
+	 * @param observations
+	 * @param regressors
+	 */
+	public SPLRegressionData(Map<AGeoEntity, Double> observations,
+			Collection<? extends ISPLMatcher<V, ? extends Number>> regressors) {
+		this(observations, regressors, new ArrayList<>(collectVariables(regressors)));
+	}
+
+	/**
+	 * Assemble regression data with given variable order; matchers with a variable
+	 * not in {@code variables} are ignored
+	 *
+	 * @param observations
+	 * @param regressors
+	 * @param variables
+	 */
+	public SPLRegressionData(Map<AGeoEntity, Double> observations,
+			Collection<? extends ISPLMatcher<V, ? extends Number>> regressors, List<V> variables) {
+		this.observations = new ArrayList<>(observations.keySet());
+		this.variables = new ArrayList<>(variables);
+
+		Map<AGeoEntity, Integer> rowIndex = new HashMap<>(this.observations.size() * 2);
+		this.y = new double[this.observations.size()];
+		for(int row = 0; row < y.length; row++){
+			rowIndex.put(this.observations.get(row), row);
+			y[row] = observations.get(this.observations.get(row));
+		}
+		Map<V, Integer> columnIndex = new HashMap<>(this.variables.size() * 2);
+		for(int column = 0; column < this.variables.size(); column++)
+			columnIndex.put(this.variables.get(column), column);
+
+		// One pass over matchers: resolve row and column of each of them
+		int[] matchRows = new int[regressors.size()];
+		int[] matchColumns = new int[regressors.size()];
+		double[] matchValues = new double[regressors.size()];
+		int[] rowSizes = new int[y.length];
+		int m = 0;
+		for(ISPLMatcher<V, ? extends Number> matcher : regressors){
+			Integer row = rowIndex.get(matcher.getEntity());
+			Integer column = columnIndex.get(matcher.getVariable());
+			if(row == null || column == null)
+				continue;
+			matchRows[m] = row;
+			matchColumns[m] = column;
+			matchValues[m++] = matcher.getValue().doubleValue();
+			rowSizes[row]++;
+		}
+
+		// Dispatch to rows, in matcher order
+		this.rowColumns = new int[y.length][];
+		this.rowValues = new double[y.length][];
+		for(int row = 0; row < y.length; row++){
+			rowColumns[row] = new int[rowSizes[row]];
+			rowValues[row] = new double[rowSizes[row]];
+			rowSizes[row] = 0;
+		}
+		for(int k = 0; k < m; k++){
+			int row = matchRows[k];
+			rowColumns[row][rowSizes[row]] = matchColumns[k];
+			rowValues[row][rowSizes[row]++] = matchValues[k];
+		}
+		for(int row = 0; row < y.length; row++)
+			sortRow(row);
+	}
+
+	/*
+	 * Stable sort of row cells by column, then keep the first cell of each column
+	 */
+	private void sortRow(int row) {
+		int[] columns = rowColumns[row];
+		double[] values = rowValues[row];
+		for(int i = 1; i < columns.length; i++){
+			int column = columns[i];
+			double value = values[i];
+			int j = i - 1;
+			for(; j >= 0 && columns[j] > column; j--){
+				columns[j + 1] = columns[j];
+				values[j + 1] = values[j];
+			}
+			columns[j + 1] = column;
+			values[j + 1] = value;
+		}
+		int size = 0;
+		for(int i = 0; i < columns.length; i++){
+			if(size > 0 && columns[size - 1] == columns[i])
+				continue;
+			columns[size] = columns[i];
+			values[size++] = values[i];
+		}
+		if(size < columns.length){
+			rowColumns[row] = Arrays.copyOf(columns, size);
+			rowValues[row] = Arrays.copyOf(values, size);
+		}
+	}
+
+	// ------------------------- ACCESSORS ------------------------- //
+
+	/**
+	 * Observed entities, in row order
+	 *
+	 * @return
+	 */
+	public List<AGeoEntity> getObservations() {
+		return Collections.unmodifiableList(observations);
+	}
+
+	/**
+	 * Regression variables, in column order
+	 *
+	 * @return
+	 */
+	public List<V> getVariables() {
+		return Collections.unmodifiableList(variables);
+	}
+
+	/**
+	 * Observed values, in row order: WARNING: the array is not copied
+	 *
+	 * @return
+	 */
+	public double[] getY() {
+		return y;
+	}
+
+	/**
+	 * Columns with a matched value for given row, in increasing order
+	 *
+	 * @param row
+	 * @return
+	 */
+	public int[] getRowColumns(int row) {
+		return rowColumns[row];
+	}
+
+	/**
+	 * Matched values of given row, in the order of {@link #getRowColumns(int)}
+	 *
+	 * @param row
+	 * @return
+	 */
+	public double[] getRowValues(int row) {
+		return rowValues[row];
+	}
+
+	/**
+	 * Build the dense design matrix: one row per observation and one column per variable,
+	 * unmatched cells being 0
+	 *
+	 * @return
+	 */
+	public double[][] getDenseDesignMatrix() {
+		double[][] x = new double[y.length][variables.size()];
+		for(int row = 0; row < y.length; row++)
+			for(int k = 0; k < rowColumns[row].length; k++)
+				x[row][rowColumns[row][k]] = rowValues[row][k];
+		return x;
+	}
+
+	private static <V extends ISPLVariable> Set<V> collectVariables(
+			Collection<? extends ISPLMatcher<V, ? extends Number>> regressors) {
+		Set<V> variables = new LinkedHashSet<>();
+		for(ISPLMatcher<V, ? extends Number> matcher : regressors)
+			variables.add(matcher.getVariable());
+		return variables;
+	}
+
+}
@@ -7,7 +7,6 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
@@ -16,7 +15,6 @@ import java.util.stream.IntStream;
 import org.opengis.referencing.operation.TransformException;
 
 import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.PrecisionModel;
 import com.vividsolutions.jts.operation.buffer.BufferParameters;
 import com.vividsolutions.jts.precision.GeometryPrecisionReducer;
@@ -29,7 +27,7 @@ import spll.algo.ISPLRegressionAlgo;
 import spll.algo.LMRegressionOLS;
 import spll.algo.exception.IllegalRegressionException;
 import spll.datamapper.exception.GSMapperException;
-import spll.datamapper.matcher.SPLAreaMatcherFactory;
+import spll.datamapper.matcher.SPLAreaIndexedMatcherFactory;
 import spll.datamapper.variable.SPLVariable;
 import spll.entity.GSFeature;
 import spll.entity.GSPixel;
@@ -37,6 +35,7 @@ import spll.io.SPLRasterFile;
 import spll.io.SPLVectorFile;
 import spll.popmapper.normalizer.ASPLNormalizer;
 import spll.popmapper.normalizer.SPLUniformNormalizer;
+import spll.util.SpllFeatureIndex;
 
 /**
  * TODO: javadoc
@@ -93,7 +92,7 @@ public class SPLAreaMapperBuilder extends ASPLMapperBuilder<SPLVariable, Double>
 			ASPLNormalizer normalizer) {
 		super(mainFile, mainAttribute, ancillaryFiles);
 		super.setRegressionAlgorithm(regAlgo);
-		super.setMatcherFactory(new SPLAreaMatcherFactory(variables));
+		super.setMatcherFactory(new SPLAreaIndexedMatcherFactory(variables));
 		super.setNormalizer(normalizer);
 	}
 	
@@ -143,7 +142,12 @@ public class SPLAreaMapperBuilder extends ASPLMapperBuilder<SPLVariable, Double>
 		Map<SPLVariable, Double> regCoef = mapper.getRegression();
 		double intercept = mapper.getIntercept();
 		
-		// Correction for each pixel (does not exclude noData pixels)
+		// Index main features once and assign each pixel to the feature its center lies within
+		SpllFeatureIndex<AGeoEntity> mainIndex = new SpllFeatureIndex<>(super.mainFile.getGeoEntity());
+		int[] pixelFeatures = mainIndex.rasterize(outputFormat.getEnvelope(), columns, rows);
+		
+		// Correction for each pixel (does not exclude noData pixels): residual is spread over the pixels
+		// the feature crops out of the output, which may differ from the pixels which center lies within it
 		Map<AGeoEntity, Double> pixCorrection = mapper.getResidual().entrySet()
 				.stream().collect(Collectors.toMap(e -> e.getKey(), 
 					e -> (e.getValue() + intercept) / outputFormat.getGeoEntityWithin(e.getKey().getGeometry()).size()));
@@ -155,14 +159,13 @@ public class SPLAreaMapperBuilder extends ASPLMapperBuilder<SPLVariable, Double>
 			
 		// Define utilities
 		Collection<IGSGeofile<? extends AGeoEntity>> ancillaries = new ArrayList<>(super.ancillaryFiles);
-		Collection<? extends AGeoEntity> mainGeoData = super.mainFile.getGeoEntity();
 		ancillaries.remove(outputFormat);
 
 		// Iterate over pixels to apply regression coefficient
 		IntStream.range(0, columns).parallel().forEach(
 				x -> IntStream.range(0, rows).forEach(
 						y -> pixels[x][y] = (float) this.computePixelWithinOutput(x, y, outputFormat,  ancillaries,
-								mainGeoData, regCoef, pixCorrection, gspu, intersect)
+								mainIndex, pixelFeatures[x * rows + y], regCoef, pixCorrection, gspu, intersect)
 						)
 				);
 		
@@ -193,14 +196,21 @@ public class SPLAreaMapperBuilder extends ASPLMapperBuilder<SPLVariable, Double>
 	// INNER UTILITY PIXEL PROCESS COUNT
 	private static int pixelRendered = 0;
 	
+	/*
+	 * featureIndex is the index, within mainIndex, of the feature the pixel center lies within (-1 if none)
+	 */
 	private double computePixelWithinOutput(int x, int y, SPLRasterFile geotiff, Collection<IGSGeofile<? extends AGeoEntity>> ancillaries,
-			Collection<? extends AGeoEntity> mainFeatures, Map<SPLVariable, Double> regCoef, Map<AGeoEntity, Double> pixResidual,
+			SpllFeatureIndex<AGeoEntity> mainIndex, int featureIndex, Map<SPLVariable, Double> regCoef, Map<AGeoEntity, Double> pixResidual,
 			GSPerformanceUtil gspu, boolean intersect) {
 		// Output progression
 		int prop10for100 = Math.round(Math.round(geotiff.getRowNumber() * geotiff.getColumnNumber() * 0.1d));
 		if((++pixelRendered+1) % prop10for100 == 0)
 			gspu.sysoStempPerformance((pixelRendered+1) / (prop10for100 * 10.0), this);
 
+		// Pixels outside main features are not read at all
+		if(featureIndex < 0)
+			return SPLRasterFile.DEF_NODATA.floatValue();
+
 		// Get the current pixel value
 		GSPixel refPixel = null;
 		try {
@@ -211,14 +221,11 @@ public class SPLAreaMapperBuilder extends ASPLMapperBuilder<SPLVariable, Double>
 		}
 		
 		// Get the related feature in main space features
-		Point pixelLocation = refPixel.getLocation();
-		Optional<? extends AGeoEntity> opFeature = mainFeatures.stream().filter(ft -> pixelLocation.within(ft.getGeometry())).findFirst();
+		AGeoEntity feature = mainIndex.get(featureIndex);
 
-		if(!opFeature.isPresent())
-			return SPLRasterFile.DEF_NODATA.floatValue();
 		if(intersect)
-			return computePixelIntersectOutput(refPixel, geotiff, ancillaries, mainFeatures, regCoef, pixResidual);
-		return computePixelWithin(refPixel, geotiff, ancillaries, opFeature.get(), regCoef, pixResidual.get(opFeature.get()));
+			return computePixelIntersectOutput(refPixel, geotiff, ancillaries, mainIndex, regCoef, pixResidual);
+		return computePixelWithin(refPixel, geotiff, ancillaries, feature, regCoef, pixResidual.get(feature));
 		
 	}
 	
@@ -264,13 +271,11 @@ public class SPLAreaMapperBuilder extends ASPLMapperBuilder<SPLVariable, Double>
 	 * WARNING: intersection area calculation is very computation demanding, so this method is pretty slow 
 	 */
 	private double computePixelIntersectOutput(GSPixel refPixel, SPLRasterFile geotiff, Collection<IGSGeofile<? extends AGeoEntity>> ancillaries,
-			Collection<? extends AGeoEntity> mainFeatures, Map<SPLVariable, Double> regCoef, Map<AGeoEntity, Double> pixResidual) {
+			SpllFeatureIndex<AGeoEntity> mainIndex, Map<SPLVariable, Double> regCoef, Map<AGeoEntity, Double> pixResidual) {
 
 		// Retain main feature the pixel is within
 		Geometry pixGeom = refPixel.getGeometry(); 
-		List<? extends AGeoEntity> feats = mainFeatures.stream()
-				.filter(ft -> ft.getGeometry().intersects(pixGeom))
-				.collect(Collectors.toList());
+		List<AGeoEntity> feats = mainIndex.getIntersect(pixGeom);
 		if(feats.isEmpty())
 			return SPLRasterFile.DEF_NODATA.floatValue();
 
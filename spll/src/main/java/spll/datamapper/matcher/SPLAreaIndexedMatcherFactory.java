@@ -0,0 +1,138 @@
+package spll.datamapper.matcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.opengis.referencing.operation.TransformException;
+
+import core.metamodel.geo.AGeoEntity;
+import core.metamodel.geo.AGeoValue;
+import core.metamodel.geo.io.IGSGeofile;
+import core.util.GSPerformanceUtil;
+import spll.datamapper.variable.SPLVariable;
+
+/**
+ * Area matcher factory that gives the same matchers as {@link SPLAreaMatcherFactory}, but:
+ * <p>
+ * <ul>
+ * <li> for each entity, regressor areas are aggregated in a hash map keyed by variable
+ * <li> entities are processed in parallel on a dedicated fork-join pool with bounded parallelism,
+ * see {@link #PARALLELISM}
+ * </ul>
+ * <p>
+ * Regressors are queried through {@link IGSGeofile#getGeoEntityIteratorWithin(com.vividsolutions.jts.geom.Geometry)},
+ * hence with the spatial index of the file when it has one (see {@link spll.io.SPLVectorFile#getIndex()}).
+ * Matchers are returned entity after entity in the order of the given collection
+ *
+ * @author kevinchapuis
+ *
+ */
+public class SPLAreaIndexedMatcherFactory implements ISPLMatcherFactory<SPLVariable, Double> {
+
+	/**
+	 * Default number of threads used to match entities
+	 */
+	public static int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+	private final Collection<? extends AGeoValue> variables;
+	private final int parallelism;
+
+	public SPLAreaIndexedMatcherFactory(Collection<? extends AGeoValue> variables) {
+		this(variables, PARALLELISM);
+	}
+
+	/**
+	 * Factory that match entities with at most {@code parallelism} threads
+	 *
+	 * @param variables
+	 * @param parallelism
+	 */
+	public SPLAreaIndexedMatcherFactory(Collection<? extends AGeoValue> variables, int parallelism) {
+		if(parallelism < 1)
+			throw new IllegalArgumentException("Parallelism must be strictly positive (was "+parallelism+")");
+		this.variables = variables;
+		this.parallelism = parallelism;
+	}
+
+	@Override
+	public List<ISPLMatcher<SPLVariable, Double>> getMatchers(AGeoEntity entity,
+			IGSGeofile<? extends AGeoEntity> regressorsFile) throws IOException, TransformException, InterruptedException, ExecutionException {
+		return getMatchers(Arrays.asList(entity), regressorsFile);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * </p>
+	 * WARNING: make use of parallelism
+	 *
+	 */
+	@Override
+	public List<ISPLMatcher<SPLVariable, Double>> getMatchers(Collection<? extends AGeoEntity> entities,
+			IGSGeofile<? extends AGeoEntity> regressorsFile)
+					throws IOException, TransformException, InterruptedException, ExecutionException {
+		GSPerformanceUtil gspu = new GSPerformanceUtil("Start processing regressors' data");
+		gspu.setObjectif(entities.size());
+
+		List<AGeoEntity> entityList = new ArrayList<>(entities);
+		@SuppressWarnings("unchecked")
+		Collection<ISPLMatcher<SPLVariable, Double>>[] matchers = new Collection[entityList.size()];
+		AtomicInteger matchedCount = new AtomicInteger();
+		int step = Math.max(1, entityList.size() / 10);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.submit(() -> IntStream.range(0, entityList.size()).parallel().forEach(i -> {
+				AGeoEntity entity = entityList.get(i);
+				matchers[i] = getMatchers(entity, regressorsFile.getGeoEntityIteratorWithin(entity.getGeometry()));
+				int count = matchedCount.incrementAndGet();
+				if(count % step == 0)
+					gspu.sysoStempPerformance(count / gspu.getObjectif(), this);
+			})).get();
+		} finally {
+			pool.shutdown();
+		}
+
+		List<ISPLMatcher<SPLVariable, Double>> varList = new ArrayList<>();
+		for(Collection<ISPLMatcher<SPLVariable, Double>> entityMatchers : matchers)
+			varList.addAll(entityMatchers);
+		gspu.sysoStempMessage("-------------------------\n"
+				+ "process ends up with "+varList.size()+" collected matches");
+		return varList;
+	}
+
+	// ----------------------------------------------------------- //
+
+	/*
+	 * Aggregate areas of regressors by variable
+	 */
+	private Collection<ISPLMatcher<SPLVariable, Double>> getMatchers(AGeoEntity entity,
+			Iterator<? extends AGeoEntity> geoData) {
+		Map<SPLVariable, ISPLMatcher<SPLVariable, Double>> areaMatchers = new LinkedHashMap<>();
+		while(geoData.hasNext()){
+			AGeoEntity geoEntity = geoData.next();
+			for(String prop : geoEntity.getPropertiesAttribute()){
+				AGeoValue value = geoEntity.getValueForAttribute(prop);
+				if(!variables.isEmpty() && !variables.contains(value))
+					continue;
+				SPLVariable variable = new SPLVariable(value, prop);
+				ISPLMatcher<SPLVariable, Double> matcher = areaMatchers.get(variable);
+				if(matcher == null)
+					areaMatchers.put(variable, new SPLAreaMatcher(entity, variable, geoEntity.getArea()));
+				else
+					matcher.expandValue(geoEntity.getArea());
+			}
+		}
+		return areaMatchers.values();
+	}
+
+}
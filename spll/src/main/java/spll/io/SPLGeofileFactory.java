@@ -13,6 +13,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -21,6 +22,7 @@ import java.util.stream.Collectors;
 import javax.media.jai.RasterFactory;
 
 import org.apache.commons.io.FilenameUtils;
+import org.apache.logging.log4j.LogManager;
 import org.geotools.coverage.Category;
 import org.geotools.coverage.GridSampleDimension;
 import org.geotools.coverage.grid.GridCoverage2D;
@@ -60,6 +62,8 @@ import core.metamodel.geo.AGeoEntity;
 import core.metamodel.geo.io.IGSGeofile;
 import core.metamodel.pop.APopulationAttribute;
 import core.metamodel.pop.APopulationEntity;
+import core.metamodel.pop.APopulationValue;
+import core.util.GSPerformanceUtil;
 import core.util.stats.GSBasicStats;
 import core.util.stats.GSEnumStats;
 import spll.SpllPopulation;
@@ -72,6 +76,12 @@ public class SPLGeofileFactory {
 	public static String ARC_EXT = "asc";
 	public static String GEOTIFF_EXT = "tif";
 	
+	/**
+	 * Number of entities written between two progress logs in streamed shapefile exports,
+	 * see {@link #streamShapeFiles(File, SpllPopulation, int)}
+	 */
+	public static int EXPORT_LOG_INTERVAL = 100000;
+	
 	public static Color[] bestRedPalette = new Color[] { new Color(254,240,217), 
 			new Color(253,204,138), new Color(252,141,89), new Color(227,74,51), 
 			new Color(179, 0, 0)};
@@ -293,6 +303,108 @@ public class SPLGeofileFactory {
 	}
 	
 
+	/**
+	 * Export a population in a shapefile without loading the whole population geometry in memory:
+	 * see {@link #streamShapeFiles(File, SpllPopulation, int)}
+	 * 
+	 * @param shapefile
+	 * @param population
+	 * @return the written shapefile
+	 * @throws IOException
+	 * @throws SchemaException
+	 */
+	public File streamShapeFile(File shapefile, SpllPopulation population) 
+			throws IOException, SchemaException {
+		return streamShapeFiles(shapefile, population, Integer.MAX_VALUE).get(0);
+	}
+	
+	/**
+	 * Export a population in one or several shapefiles, streaming entities straight from the population
+	 * iterator to the file writer:
+	 * <p>
+	 * <ul>
+	 * <li> attribute order is resolved once, and values are retrieved by attribute (not by name) for each entity
+	 * <li> no map of entity geometries is built: entities are written on the fly, one feature at a time, and
+	 * progress is logged every {@link #EXPORT_LOG_INTERVAL} entities
+	 * <li> when more than {@code maxEntitiesPerFile} entities are located, export is split into several shapefiles
+	 * named after {@code shapefile} with a part number suffix, e.g. {@code pop_0.shp}, {@code pop_1.shp}
+	 * </ul>
+	 * <p>
+	 * Only located entities (see {@link APopulationEntity#getLocation()}) are exported. Contrary to 
+	 * {@link #createShapeFile(File, SpllPopulation)} written files are not loaded back: use {@link #getShapeFile(File)}
+	 * to do so
+	 * 
+	 * @param shapefile
+	 * @param population
+	 * @param maxEntitiesPerFile
+	 * @return the written shapefiles, in part order
+	 * @throws IOException if a shapefile or its projection file (.prj) cannot be written
+	 * @throws SchemaException
+	 */
+	public List<File> streamShapeFiles(File shapefile, SpllPopulation population, int maxEntitiesPerFile) 
+			throws IOException, SchemaException {
+		if(population.isEmpty()) 
+			throw new IllegalStateException("Population in methode streamShapeFiles cannot be empty");
+		if(maxEntitiesPerFile < 1)
+			throw new IllegalArgumentException("Max number of entities per file must be strictly positive (was "
+					+maxEntitiesPerFile+")");
+		final File parent = shapefile.getAbsoluteFile().getParentFile();
+		if (!parent.exists()) {
+			parent.mkdirs();
+		}
+		
+		// Resolve attribute order once
+		List<APopulationAttribute> atts = new ArrayList<>(population.getPopulationAttributes());
+		final StringBuilder specs = new StringBuilder("geometry:" + Point.class.getSimpleName());
+		for (final APopulationAttribute at : atts) {
+			String name = at.getAttributeName().replaceAll("\"", "");
+			name = name.replaceAll("'", "");
+			specs.append(',').append(name).append(':').append("String");
+		}
+		
+		GSPerformanceUtil gspu = new GSPerformanceUtil("Stream population to shapefile "+shapefile.getName(), 
+				LogManager.getLogger());
+		List<File> files = new ArrayList<>();
+		Iterator<APopulationEntity> entities = population.iterator();
+		final List<Object> values = new ArrayList<>(atts.size() + 1);
+		APopulationEntity entity = nextLocated(entities);
+		while(entity != null){
+			File part = maxEntitiesPerFile == Integer.MAX_VALUE ? shapefile : 
+				new File(parent, FilenameUtils.getBaseName(shapefile.getName())
+						+"_"+files.size()+"."+SHAPEFILE_EXT);
+			ShapefileDataStore newDataStore = new ShapefileDataStore(part.toURI().toURL());
+			newDataStore.createSchema(DataUtilities.createType(newDataStore.getFeatureSource().getEntry().getTypeName(),
+					specs.toString()));
+			
+			int written = 0;
+			try (@SuppressWarnings("rawtypes")
+			FeatureWriter fw = newDataStore.getFeatureWriter(Transaction.AUTO_COMMIT)) {
+				for(; entity != null && written < maxEntitiesPerFile; entity = nextLocated(entities)){
+					values.clear();
+					values.add(entity.getLocation());
+					for (final APopulationAttribute att : atts) {
+						APopulationValue value = entity.getValueForAttribute(att);
+						values.add(value == null ? null : value.getStringValue());
+					}
+					final SimpleFeature ff = (SimpleFeature) fw.next();
+					ff.setAttributes(values);
+					fw.write();
+					if(++written % EXPORT_LOG_INTERVAL == 0)
+						gspu.sysoStempPerformance(written+" entities exported to "+part.getName(), this);
+				}
+			} finally {
+				newDataStore.dispose();
+			}
+			try (FileWriter fwz = new FileWriter(part.getAbsolutePath().replace("."+SHAPEFILE_EXT, ".prj"))) {
+				fwz.write(population.getCrs().toString());
+			}
+			files.add(part);
+		}
+		if(files.isEmpty())
+			throw new IllegalStateException("Population in methode streamShapeFiles has no located entity");
+		return files;
+	}
+	
 	/**
 	 * Create a shapefile based on a collection of feature 
 	 * 
@@ -354,6 +466,18 @@ public class SPLGeofileFactory {
 		return new SPLRasterFile(rasterfile);
 	}
 
+	/*
+	 * Next entity with a location, or null if there is none
+	 */
+	private APopulationEntity nextLocated(Iterator<APopulationEntity> entities) {
+		while(entities.hasNext()){
+			APopulationEntity entity = entities.next();
+			if(entity.getLocation() != null)
+				return entity;
+		}
+		return null;
+	}
+	
 	private String getGeometryType(final Collection<Geometry> geoms) {
 		String geomType = "";
 		for (final Geometry geom : geoms) {
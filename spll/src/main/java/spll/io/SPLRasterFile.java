@@ -1,11 +1,14 @@
 package spll.io;
 
+import java.awt.Rectangle;
+import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -62,6 +65,11 @@ public class SPLRasterFile implements IGSGeofile<GSPixel> {
 	
 	public static Number DEF_NODATA = -9999; 
 	private Number noData;
+	
+	/**
+	 * Default width and height, in cells, of tiles given by {@link #getTileIterator()}
+	 */
+	public static final int TILE_SIZE = 256;
 
 	/**
 	 * 
@@ -229,6 +237,142 @@ public class SPLRasterFile implements IGSGeofile<GSPixel> {
 		return gef.createGeoEntity(valsN, coverage.getGridGeometry().gridToWorld(new GridEnvelope2D(x, y, 1, 1)), x, y);
 	}
 
+	// ------------------- tile based accessors ------------------- //
+	
+	/**
+	 * Read band values of the block of {@code width} x {@code height} cells starting at grid coordinate 
+	 * ({@code x},{@code y}) into primitive arrays: unlike {@link #getPixel(int, int)} or {@link #getGeoEntityIterator()}, 
+	 * no object is created per cell. Block is clipped to the extent of the raster
+	 * 
+	 * @param x
+	 * @param y
+	 * @param width
+	 * @param height
+	 * @return
+	 * @throws IndexOutOfBoundsException if the block is outside the raster
+	 */
+	public SPLRasterTile getTile(int x, int y, int width, int height) {
+		int w = Math.min(width, getColumnNumber() - x);
+		int h = Math.min(height, getRowNumber() - y);
+		if(x < 0 || y < 0 || w < 1 || h < 1)
+			throw new IndexOutOfBoundsException("Block ["+x+";"+y+"] "+width+"x"+height+" is outside the raster "
+					+getColumnNumber()+"x"+getRowNumber());
+		int gridX = x + coverage.getGridGeometry().getGridRange2D().x;
+		int gridY = y + coverage.getGridGeometry().getGridRange2D().y;
+		Raster raster = coverage.getRenderedImage().getData(new Rectangle(gridX, gridY, w, h));
+		double[][] bands = new double[getBandNumber()][];
+		for(int b = 0; b < bands.length; b++)
+			bands[b] = raster.getSamples(gridX, gridY, w, h, b, new double[w * h]);
+		return new SPLRasterTile(x, y, w, h, bands, noData);
+	}
+	
+	/**
+	 * Iterate over the whole raster tile by tile, each of them being {@link #TILE_SIZE} cells wide and high
+	 * (except the last ones on each axis). Tiles are read lazily
+	 * 
+	 * @return
+	 */
+	public Iterator<SPLRasterTile> getTileIterator() {
+		return getTileIterator(TILE_SIZE);
+	}
+	
+	/**
+	 * Iterate over the whole raster tile by tile, each of them being {@code tileSize} cells wide and high
+	 * (except the last ones on each axis), row of tiles after row of tiles. Tiles are read lazily
+	 * 
+	 * @param tileSize
+	 * @return
+	 */
+	public Iterator<SPLRasterTile> getTileIterator(int tileSize) {
+		if(tileSize < 1)
+			throw new IllegalArgumentException("Tile size must be strictly positive (was "+tileSize+")");
+		final int tileColumns = (getColumnNumber() + tileSize - 1) / tileSize;
+		final int tileCount = tileColumns * ((getRowNumber() + tileSize - 1) / tileSize);
+		return new Iterator<SPLRasterTile>() {
+			private int tile = 0;
+			
+			@Override
+			public boolean hasNext() {
+				return tile < tileCount;
+			}
+			
+			@Override
+			public SPLRasterTile next() {
+				if(!hasNext())
+					throw new NoSuchElementException();
+				int t = tile++;
+				return getTile(t % tileColumns * tileSize, t / tileColumns * tileSize, tileSize, tileSize);
+			}
+		};
+	}
+	
+	/**
+	 * Number of bands (sample dimensions) of the raster
+	 * 
+	 * @return
+	 */
+	public int getBandNumber() {
+		return coverage.getNumSampleDimensions();
+	}
+	
+	/**
+	 * Width of a cell in world unit
+	 * 
+	 * @return
+	 */
+	public double getCellWidth() {
+		return coverage.getEnvelope2D().getWidth() / getColumnNumber();
+	}
+	
+	/**
+	 * Height of a cell in world unit
+	 * 
+	 * @return
+	 */
+	public double getCellHeight() {
+		return coverage.getEnvelope2D().getHeight() / getRowNumber();
+	}
+	
+	/**
+	 * World x coordinate of the center of cells in column {@code x}
+	 * 
+	 * @param x
+	 * @return
+	 */
+	public double getCenterX(int x) {
+		return coverage.getEnvelope2D().getMinX() + (x + 0.5) * getCellWidth();
+	}
+	
+	/**
+	 * World y coordinate of the center of cells in row {@code y}: row 0 is at the top of the raster
+	 * 
+	 * @param y
+	 * @return
+	 */
+	public double getCenterY(int y) {
+		return coverage.getEnvelope2D().getMaxY() - (y + 0.5) * getCellHeight();
+	}
+	
+	/**
+	 * Column of cells that contains world x coordinate {@code worldX}: may be outside of the raster
+	 * 
+	 * @param worldX
+	 * @return
+	 */
+	public int getGridX(double worldX) {
+		return (int) Math.floor((worldX - coverage.getEnvelope2D().getMinX()) / getCellWidth());
+	}
+	
+	/**
+	 * Row of cells that contains world y coordinate {@code worldY}: may be outside of the raster
+	 * 
+	 * @param worldY
+	 * @return
+	 */
+	public int getGridY(double worldY) {
+		return (int) Math.floor((coverage.getEnvelope2D().getMaxY() - worldY) / getCellHeight());
+	}
+
 	// --------------------------- Utilities --------------------------- // 
 	
 	public String printValues() {
@@ -0,0 +1,106 @@
+package spll.io;
+
+/**
+ * Rectangular block of cells read from a {@link SPLRasterFile}: band values are stored as primitive
+ * {@code double[]}, one array per band, with no object allocated per cell
+ * <p>
+ * Cells are identified by their grid coordinates within the whole raster file (the ones of {@link SPLRasterFile#getPixel(int, int)}):
+ * value of cell (x,y) for band b is stored in {@link #getBand(int)} at index {@code (y - getY()) * getWidth() + (x - getX())}.
+ * Transformation from grid to world coordinates are given by the raster file, see {@link SPLRasterFile#getCenterX(int)}
+ * and {@link SPLRasterFile#getCenterY(int)}
+ *
+ * @author kevinchapuis
+ *
+ */
+public class SPLRasterTile {
+
+	private final int x, y;
+	private final int width, height;
+	private final double[][] bands;
+	private final Number noData;
+
+	protected SPLRasterTile(int x, int y, int width, int height, double[][] bands, Number noData) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.bands = bands;
+		this.noData = noData;
+	}
+
+	/**
+	 * Value of band {@code band} for cell at grid coordinate ({@code gridX},{@code gridY})
+	 *
+	 * @param band
+	 * @param gridX
+	 * @param gridY
+	 * @return
+	 * @throws IndexOutOfBoundsException if the cell is not part of this tile
+	 */
+	public double getValue(int band, int gridX, int gridY) {
+		if(!contains(gridX, gridY))
+			throw new IndexOutOfBoundsException("Cell ["+gridX+";"+gridY+"] is not part of tile "+this);
+		return bands[band][(gridY - y) * width + (gridX - x)];
+	}
+
+	/**
+	 * Values of one band in row major order, see {@link SPLRasterTile}:
+	 * WARNING: the array is not copied
+	 *
+	 * @param band
+	 * @return
+	 */
+	public double[] getBand(int band) {
+		return bands[band];
+	}
+
+	public int getBandNumber() {
+		return bands.length;
+	}
+
+	/**
+	 * Whether {@code value} is the no data value of the raster file this tile comes from
+	 *
+	 * @param value
+	 * @return
+	 */
+	public boolean isNoData(double value) {
+		return noData != null && value == noData.doubleValue();
+	}
+
+	public boolean contains(int gridX, int gridY) {
+		return gridX >= x && gridX < x + width && gridY >= y && gridY < y + height;
+	}
+
+	/**
+	 * Grid column of the first cell of this tile
+	 *
+	 * @return
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * Grid row of the first cell of this tile
+	 *
+	 * @return
+	 */
+	public int getY() {
+		return y;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public String toString() {
+		return "tile ["+x+";"+y+"] "+width+"x"+height;
+	}
+
+}
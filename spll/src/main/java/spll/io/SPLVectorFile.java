@@ -52,6 +52,7 @@ import spll.entity.GeoEntityFactory;
 import spll.entity.attribute.RawGeoAttribute;
 import spll.entity.attribute.value.RawGeoData;
 import spll.entity.iterator.GSFeatureIterator;
+import spll.util.SpllFeatureIndex;
 import spll.util.SpllUtil;
 
 /**
@@ -65,7 +66,31 @@ import spll.util.SpllUtil;
  */
 public class SPLVectorFile implements IGSGeofile<GSFeature> {
 
+	/**
+	 * How within and intersect queries are computed:
+	 * <p>
+	 * <ul>
+	 * <li> {@link #FILTER}: a GeoTools filter is sent to the data store, that is read again for each query
+	 * <li> {@link #INDEX}: loaded features are queried in memory through a {@link SpllFeatureIndex}, i.e.
+	 * a STR-tree over envelopes and prepared geometries
+	 * <li> {@link #ENVELOPE}: same as {@link #INDEX}, but only envelopes are compared: result is
+	 * a super set of the exact one
+	 * </ul>
+	 * 
+	 * @author kevinchapuis
+	 *
+	 */
+	public enum QueryMode {FILTER, INDEX, ENVELOPE}
+	
+	/**
+	 * Query mode of newly created vector files
+	 */
+	public static QueryMode DEFAULT_QUERY_MODE = QueryMode.INDEX;
+	
 	private Set<GSFeature> features = null;
+	
+	private QueryMode queryMode = DEFAULT_QUERY_MODE;
+	private SpllFeatureIndex<GSFeature> index = null;
 
 	private final DataStore dataStore;
 	private final CoordinateReferenceSystem crs;
@@ -216,11 +241,23 @@ public class SPLVectorFile implements IGSGeofile<GSFeature> {
 		return new GSFeatureIterator(dataStore);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Query is computed according to {@link #getQueryMode()}
+	 */
 	@Override
 	public Iterator<GSFeature> getGeoEntityIteratorWithin(Geometry geom) {
-		FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2( GeoTools.getDefaultHints() );
-		Filter filter = ff.within(ff.property( BasicFeatureTypes.GEOMETRY_ATTRIBUTE_NAME), ff.literal( geom ));
-		return new GSFeatureIterator(dataStore, filter);
+		switch (queryMode) {
+		case INDEX:
+			return getIndex().getWithin(geom).iterator();
+		case ENVELOPE:
+			return getIndex().getEnvelopeWithin(geom.getEnvelopeInternal()).iterator();
+		default:
+			FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2( GeoTools.getDefaultHints() );
+			Filter filter = ff.within(ff.property( BasicFeatureTypes.GEOMETRY_ATTRIBUTE_NAME), ff.literal( geom ));
+			return new GSFeatureIterator(dataStore, filter);
+		}
 	}
 
 
@@ -231,11 +268,23 @@ public class SPLVectorFile implements IGSGeofile<GSFeature> {
 		return collection;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Query is computed according to {@link #getQueryMode()}
+	 */
 	@Override
 	public Iterator<GSFeature> getGeoEntityIteratorIntersect(Geometry geom) {
-		FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2( GeoTools.getDefaultHints() );
-		Filter filter = ff.intersects(ff.property( BasicFeatureTypes.GEOMETRY_ATTRIBUTE_NAME), ff.literal( geom ));
-		return new GSFeatureIterator(dataStore, filter);
+		switch (queryMode) {
+		case INDEX:
+			return getIndex().getIntersect(geom).iterator();
+		case ENVELOPE:
+			return getIndex().getEnvelopeIntersect(geom.getEnvelopeInternal()).iterator();
+		default:
+			FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2( GeoTools.getDefaultHints() );
+			Filter filter = ff.intersects(ff.property( BasicFeatureTypes.GEOMETRY_ATTRIBUTE_NAME), ff.literal( geom ));
+			return new GSFeatureIterator(dataStore, filter);
+		}
 	}
 
 	@Override
@@ -244,6 +293,39 @@ public class SPLVectorFile implements IGSGeofile<GSFeature> {
 		getGeoEntityIteratorIntersect(geom).forEachRemaining(collection::add);
 		return collection;
 	}
+	
+	// ------------------------- QUERY MODE ------------------------- //
+	
+	/**
+	 * The way within and intersect queries are computed, see {@link QueryMode}
+	 * 
+	 * @return
+	 */
+	public QueryMode getQueryMode() {
+		return queryMode;
+	}
+	
+	/**
+	 * Change the way within and intersect queries are computed, see {@link QueryMode}
+	 * 
+	 * @param queryMode
+	 */
+	public void setQueryMode(QueryMode queryMode) {
+		if(queryMode == null)
+			throw new NullPointerException("Query mode cannot be null");
+		this.queryMode = queryMode;
+	}
+	
+	/**
+	 * The in memory spatial index over features of this file: it is built at first call
+	 * 
+	 * @return
+	 */
+	public synchronized SpllFeatureIndex<GSFeature> getIndex() {
+		if(index == null)
+			index = new SpllFeatureIndex<>(features);
+		return index;
+	}
 
 	public DataStore getStore() {
 		return dataStore;
@@ -4,8 +4,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,9 +33,12 @@ import core.metamodel.geo.AGeoEntity;
 import core.metamodel.geo.AGeoValue;
 import core.metamodel.geo.io.GeoGSFileType;
 import core.metamodel.geo.io.IGSGeofile;
+import core.metamodel.pop.APopulationAttribute;
 import core.metamodel.pop.APopulationEntity;
+import core.metamodel.pop.APopulationValue;
 import core.util.GSPerformanceUtil;
 import core.util.random.GenstarRandom;
+import core.util.random.GenstarSplittableRandom;
 import spll.SpllPopulation;
 import spll.algo.LMRegressionOLS;
 import spll.algo.exception.IllegalRegressionException;
@@ -49,10 +55,13 @@ import spll.io.SPLGeofileFactory;
 import spll.io.SPLRasterFile;
 import spll.io.SPLVectorFile;
 import spll.popmapper.constraint.SpatialConstraint;
+import spll.popmapper.constraint.SpatialConstraintIndexedMaxDensity;
+import spll.popmapper.constraint.SpatialConstraintIndexedMaxNumber;
 import spll.popmapper.constraint.SpatialConstraintLocalization;
 import spll.popmapper.normalizer.SPLUniformNormalizer;
 import spll.popmapper.pointInalgo.PointInLocalizer;
 import spll.popmapper.pointInalgo.RandomPointInLocalizer;
+import spll.util.SpllFeatureIndex;
 import spll.util.SpllUtil;
 
 
@@ -77,13 +86,16 @@ public abstract class AbstratcLocalizer implements ISPLocalizer {
 	protected String keyAttMatch; //name of the attribute that is used to store the id of the referenced area in the match file
 
 	protected Random rand;
+	
+	protected boolean parallelAreas = false; //whether match areas are localized concurrently
+	protected boolean rasterDirectLocalization = false; //whether entities are directly drawn in raster map cells
 
 	/**
 	 * Private constructor to setup random engine
 	 */
 	private AbstratcLocalizer() {
 		rand = GenstarRandom.getInstance();
-		pointInLocalizer = new RandomPointInLocalizer(rand);
+		pointInLocalizer = new RandomPointInLocalizer();
 	}
 
 	/**
@@ -227,6 +239,54 @@ public abstract class AbstratcLocalizer implements ISPLocalizer {
 	public void setConstraints(List<SpatialConstraint> constraints) {
 		this.constraints = constraints;
 	}
+	
+	/**
+	 * Add a constraint on the maximum number of entities per nest of the population geography, {@code maxVal} being 
+	 * the capacity of every nest. Nests are indexed (see {@link SpatialConstraintIndexedMaxNumber}), hence candidate 
+	 * nests are read from the list of available ones rather than filtered out of all nests
+	 * 
+	 * @param maxVal
+	 * @return the constraint, e.g. to setup its priority and relaxation
+	 */
+	public SpatialConstraintIndexedMaxNumber addMaxNumberConstraint(Double maxVal) {
+		return addConstraint(new SpatialConstraintIndexedMaxNumber(population.getGeography().getGeoEntity(), maxVal));
+	}
+	
+	/**
+	 * Same as {@link #addMaxNumberConstraint(Double)}, the capacity of each nest being the value of its {@code keyAttMax} attribute
+	 * 
+	 * @param keyAttMax
+	 * @return the constraint, e.g. to setup its priority and relaxation
+	 */
+	public SpatialConstraintIndexedMaxNumber addMaxNumberConstraint(String keyAttMax) {
+		return addConstraint(new SpatialConstraintIndexedMaxNumber(population.getGeography().getGeoEntity(), keyAttMax));
+	}
+	
+	/**
+	 * Add a constraint on the maximum density of entities per nest of the population geography, {@code maxVal} being 
+	 * the density of every nest (see {@link SpatialConstraintIndexedMaxDensity})
+	 * 
+	 * @param maxVal
+	 * @return the constraint, e.g. to setup its priority and relaxation
+	 */
+	public SpatialConstraintIndexedMaxDensity addMaxDensityConstraint(Double maxVal) {
+		return addConstraint(new SpatialConstraintIndexedMaxDensity(population.getGeography().getGeoEntity(), maxVal));
+	}
+	
+	/**
+	 * Same as {@link #addMaxDensityConstraint(Double)}, the density of each nest being the value of its {@code keyAttMax} attribute
+	 * 
+	 * @param keyAttMax
+	 * @return the constraint, e.g. to setup its priority and relaxation
+	 */
+	public SpatialConstraintIndexedMaxDensity addMaxDensityConstraint(String keyAttMax) {
+		return addConstraint(new SpatialConstraintIndexedMaxDensity(population.getGeography().getGeoEntity(), keyAttMax));
+	}
+	
+	private <C extends SpatialConstraint> C addConstraint(C constraint) {
+		constraints.add(constraint);
+		return constraint;
+	}
 
 	// ----------------------------------------------------- //
 	// ------------------ POINT LOCALIZER ------------------ //
@@ -235,6 +295,57 @@ public abstract class AbstratcLocalizer implements ISPLocalizer {
 	public void setPointInLocalizer(PointInLocalizer pointInLocalizer) {
 		this.pointInLocalizer = pointInLocalizer;
 	}
+	
+	// ----------------------------------------------------- //
+	// -------------------- PARALLELISM -------------------- //
+	// ----------------------------------------------------- //
+	
+	/**
+	 * Whether entities of each area of the match file should be localized concurrently:
+	 * <p>
+	 * <ul>
+	 * <li> each area is localized with its own copy of the localization constraint and its own random engine, 
+	 * split from the Gen* one (see {@link GenstarSplittableRandom}), hence localization is reproducible
+	 * <li> only applies when there is no other constraint than the localization one, because other constraints
+	 * (e.g. nest capacities) are shared between areas; otherwise areas are localized one after the other
+	 * <li> areas of the match file must have distinct key values, otherwise an {@link IllegalArgumentException} is thrown
+	 * <li> point localizer is shared between areas: it must be thread safe and should rely on {@link GenstarRandom#getInstance()} 
+	 * to be reproducible, like the default {@link RandomPointInLocalizer#RandomPointInLocalizer()}
+	 * </ul>
+	 * 
+	 * @param parallelAreas
+	 */
+	public void setParallelAreas(boolean parallelAreas) {
+		this.parallelAreas = parallelAreas;
+	}
+	
+	public boolean isParallelAreas() {
+		return parallelAreas;
+	}
+	
+	/**
+	 * Whether entities should be localized directly in the cells of a raster map (see {@link #setMapper(IGSGeofile, String)}),
+	 * rather than in nests:
+	 * <p>
+	 * <ul>
+	 * <li> one alias table is built over the values of the map band, without creating any pixel entity (see {@link SPLRasterDensitySampler}):
+	 * each entity is then given a cell drawn with a probability proportional to its value, and a location drawn uniformly within this cell
+	 * <li> when a match is defined, each entity is drawn among cells whose center lies within the area its key attribute refers to
+	 * <li> entities are not given any nest, and neither spatial constraints nor point localizer are used
+	 * <li> entities are drawn in parallel, each chunk of entities with its own random engine (see {@link GenstarSplittableRandom})
+	 * </ul>
+	 * <p>
+	 * Only applies when the map is a raster file: vector maps are localized in nests
+	 * 
+	 * @param rasterDirectLocalization
+	 */
+	public void setRasterDirectLocalization(boolean rasterDirectLocalization) {
+		this.rasterDirectLocalization = rasterDirectLocalization;
+	}
+	
+	public boolean isRasterDirectLocalization() {
+		return rasterDirectLocalization;
+	}
 
 	// ----------------------------------------------------- //
 	// ---------------------- GETTERS ---------------------- //
@@ -257,8 +368,13 @@ public abstract class AbstratcLocalizer implements ISPLocalizer {
 	public SpllPopulation localisePopulation() {
 		constraints = constraints.stream().sorted((n1, n2) -> Integer.compare( n1.getPriority(), n2.getPriority())).collect(Collectors.toList());
 		try {
+			//case where entities are directly drawn in the cells of a raster map
+			if (rasterDirectLocalization && keyAttMap != null && map != null 
+					&& map.getGeoGSFileType().equals(GeoGSFileType.RASTER)) {
+				localizationInRaster((SPLRasterFile) map);
+			}
 			//case where the referenced file is not defined
-			if (match == null) {
+			else if (match == null) {
 				List<APopulationEntity> entities = new ArrayList<>(population);
 
 				//case where there is no information about the number of entities in specific spatial areas
@@ -270,13 +386,16 @@ public abstract class AbstratcLocalizer implements ISPLocalizer {
 					localizationInNestWithNumbers(entities, null);
 				}
 			}
+			//case where the referenced file is defined and areas can be localized concurrently
+			else if (parallelAreas && constraints.size() == 1 && constraints.contains(localizationConstraint)) {
+				localizationInAreas(new ArrayList<>(match.getGeoEntity()), groupByKeyAttribute());
+			}
 			//case where the referenced file is defined
 			else {
+				Map<String, List<APopulationEntity>> entitiesByKey = groupByKeyAttribute();
 				for (AGeoEntity globalfeature : match.getGeoEntity()) {
 					String valKeyAtt = globalfeature.getValueForAttribute(keyAttMatch).getStringValue();
-					List<APopulationEntity> entities = population.stream()
-							.filter(s -> s.getValueForAttribute(keyAttPop).getStringValue().equals(valKeyAtt))
-							.collect(Collectors.toList());
+					List<APopulationEntity> entities = entitiesByKey.getOrDefault(valKeyAtt, new ArrayList<>());
 					if (keyAttMap == null || map == null) {
 						localizationInNest(entities, globalfeature.getGeometry());
 					}
@@ -299,9 +418,141 @@ public abstract class AbstratcLocalizer implements ISPLocalizer {
 	/////////////////////////////////////////////////////
 
 	
+	/*
+	 * Localize entities of each area in parallel, areas being independent from one another:
+	 * see setParallelAreas(boolean). Areas must have distinct key values, otherwise the same
+	 * entities would be localized by several areas at once
+	 */
+	private void localizationInAreas(List<? extends AGeoEntity> areas, 
+			Map<String, List<APopulationEntity>> entitiesByKey) {
+		Set<String> keys = new HashSet<>(areas.size() * 2);
+		for (AGeoEntity area : areas)
+			if (!keys.add(area.getValueForAttribute(keyAttMatch).getStringValue()))
+				throw new IllegalArgumentException("Several match areas have the same key value "
+						+area.getValueForAttribute(keyAttMatch).getStringValue()+": areas cannot be localized concurrently");
+		GenstarSplittableRandom.parallelChunks(areas.size(), 1, (from, to, random) -> {
+			for (int i = from; i < to; i++) {
+				AGeoEntity globalfeature = areas.get(i);
+				String valKeyAtt = globalfeature.getValueForAttribute(keyAttMatch).getStringValue();
+				List<APopulationEntity> entities = entitiesByKey.getOrDefault(valKeyAtt, new ArrayList<>());
+				SpatialConstraintLocalization areaConstraint = copyLocalizationConstraint();
+				try {
+					if (keyAttMap == null || map == null) {
+						localizationInNest(entities, globalfeature.getGeometry(), areaConstraint, 
+								Arrays.asList(areaConstraint), GenstarRandom.getInstance());
+					}
+					else {
+						localizationInNestWithNumbers(entities, globalfeature.getGeometry(), areaConstraint, 
+								Arrays.asList(areaConstraint), GenstarRandom.getInstance());
+					}
+				} catch (IOException | TransformException e) {
+					throw new IllegalStateException("Fail to localize entities of area "+valKeyAtt, e);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Partition the population according to the value of the key attribute population (see 
+	 * {@link #setMatcher(IGSGeofile, String, String)}) in one pass over entities: each match area
+	 * then gets its entities through the string value of its key attribute match.
+	 * <p>
+	 * Key attribute is resolved once, and entities are first bucketed by value (i.e. hash of already
+	 * existing value objects); string representation is only computed once per distinct value
+	 * 
+	 * @return entities bucketed by the string value of their key attribute
+	 */
+	protected Map<String, List<APopulationEntity>> groupByKeyAttribute() {
+		Optional<APopulationAttribute> keyAtt = population.getPopulationAttributes().stream()
+				.filter(att -> att.getAttributeName().equals(keyAttPop)).findFirst();
+		if(!keyAtt.isPresent())
+			throw new IllegalArgumentException("The population does not contains any attribute named "+keyAttPop);
+		APopulationAttribute attribute = keyAtt.get();
+		
+		Map<APopulationValue, List<APopulationEntity>> entitiesByValue = new LinkedHashMap<>();
+		for (APopulationEntity entity : population) {
+			APopulationValue value = entity.getValueForAttribute(attribute);
+			if (value == null)
+				continue;
+			List<APopulationEntity> bucket = entitiesByValue.get(value);
+			if (bucket == null) {
+				bucket = new ArrayList<>();
+				entitiesByValue.put(value, bucket);
+			}
+			bucket.add(entity);
+		}
+		
+		Map<String, List<APopulationEntity>> entitiesByKey = new HashMap<>(entitiesByValue.size() * 2);
+		for (Entry<APopulationValue, List<APopulationEntity>> bucket : entitiesByValue.entrySet()) {
+			List<APopulationEntity> entities = entitiesByKey.get(bucket.getKey().getStringValue());
+			if (entities == null)
+				entitiesByKey.put(bucket.getKey().getStringValue(), bucket.getValue());
+			else
+				entities.addAll(bucket.getValue());
+		}
+		return entitiesByKey;
+	}
+	
+	/*
+	 * Draw entities in raster cells according to cell values (see setRasterDirectLocalization(boolean)):
+	 * when a match is defined, cells are partitioned by rasterizing match areas
+	 */
+	private void localizationInRaster(SPLRasterFile raster) throws IOException {
+		if (!keyAttMap.startsWith(GeoEntityFactory.ATTRIBUTE_PIXEL_BAND))
+			throw new IllegalArgumentException("Map attribute "+keyAttMap+" does not refer to a raster band ("
+					+GeoEntityFactory.ATTRIBUTE_PIXEL_BAND+"i)");
+		int band = Integer.parseInt(keyAttMap.substring(GeoEntityFactory.ATTRIBUTE_PIXEL_BAND.length()));
+		
+		List<APopulationEntity> entities = new ArrayList<>(population);
+		SPLRasterDensitySampler[] samplers = new SPLRasterDensitySampler[entities.size()];
+		if (match == null) {
+			Arrays.fill(samplers, new SPLRasterDensitySampler(raster, band));
+		} else {
+			List<AGeoEntity> areas = new ArrayList<>(match.getGeoEntity());
+			int[] zones = new SpllFeatureIndex<>(areas).rasterize(raster.getEnvelope(), 
+					raster.getColumnNumber(), raster.getRowNumber());
+			List<SPLRasterDensitySampler> areaSamplers = SPLRasterDensitySampler.build(raster, band, zones, areas.size());
+			Map<String, List<APopulationEntity>> entitiesByKey = groupByKeyAttribute();
+			entities.clear();
+			for (int i = 0; i < areas.size(); i++) {
+				List<APopulationEntity> areaEntities = entitiesByKey.get(
+						areas.get(i).getValueForAttribute(keyAttMatch).getStringValue());
+				if (areaSamplers.get(i) == null || areaEntities == null)
+					continue;
+				Arrays.fill(samplers, entities.size(), entities.size() + areaEntities.size(), areaSamplers.get(i));
+				entities.addAll(areaEntities);
+			}
+		}
+		GenstarSplittableRandom.parallelChunks(entities.size(), (from, to, random) -> {
+			Random engine = GenstarRandom.getInstance();
+			for (int i = from; i < to; i++)
+				entities.get(i).setLocation(samplers[i].pointIn(engine));
+		});
+	}
+	
+	/*
+	 * A localization constraint with the same setup as the one of this localizer
+	 */
+	private SpatialConstraintLocalization copyLocalizationConstraint() {
+		SpatialConstraintLocalization copy = new SpatialConstraintLocalization(null);
+		copy.setReferenceFile(localizationConstraint.getReferenceFile());
+		copy.setPriority(localizationConstraint.getPriority());
+		copy.setSortedCandidates(localizationConstraint.isSortedCandidates());
+		copy.setMaxIncrease(localizationConstraint.getMaxIncrease());
+		copy.setIncreaseStep(localizationConstraint.getIncreaseStep());
+		return copy;
+	}
+	
 	//set to all the entities given as argument, a given nest chosen randomly in the possible geoEntities 
-	//of the localisation shapefile (all if not bounds is defined, only the one in the bounds if the one is not null)
+	//of the localisation shapefile (all if not bounds is defined, only the one in the bounds if the one is not null):
+	//bounds are widened each time the localization constraint is relaxed
 	protected void localizationInNest(Collection<APopulationEntity> entities, Geometry spatialBounds) throws IOException, TransformException {
+		localizationInNest(entities, spatialBounds, localizationConstraint, constraints, rand);
+	}
+	
+	private void localizationInNest(Collection<APopulationEntity> entities, Geometry spatialBounds, 
+			SpatialConstraintLocalization localizationConstraint, List<SpatialConstraint> constraints, Random rand) 
+					throws IOException, TransformException {
 		List<SpatialConstraint> otherConstraints = new ArrayList<>(constraints);
 		otherConstraints.remove(localizationConstraint);
 		Collection<APopulationEntity> remainingEntities = entities;
@@ -309,18 +560,13 @@ public abstract class AbstratcLocalizer implements ISPLocalizer {
 		for (SpatialConstraint cr : constraints) {
 			while (!cr.isConstraintLimitReach()) {
 				//System.out.println("cr: " + cr.getClass().getCanonicalName() + " -> " + cr.getCurrentValue());
-				List<AGeoEntity> possibleNests = new ArrayList<>(population.getGeography().getGeoEntity());
 				List<AGeoEntity> possibleNestsInit = localizationConstraint.getSortedCandidates(null);
-				possibleNests = new ArrayList<>(possibleNests);
+				List<AGeoEntity> possibleNests = getCandidates(possibleNestsInit, otherConstraints);
 				//System.out.println("possibleNests: " + possibleNests.size());
-				for (SpatialConstraint constraint : otherConstraints) {
-					possibleNests = constraint.getSortedCandidates(possibleNests);
-				}
-				//System.out.println("possibleNests2: " + possibleNests.size());
 				
-				remainingEntities = localizationInNestOp(remainingEntities, possibleNests, null);
+				remainingEntities = localizationInNestOp(remainingEntities, possibleNests, null, constraints, rand);
 				if (remainingEntities != null && !remainingEntities.isEmpty()) 
-					 cr.relaxConstraint(possibleNestsInit);
+					 cr.relaxConstraint(possibleNestsInit == null ? getAllNests() : possibleNestsInit);
 				else return;
 					
 			}
@@ -328,12 +574,37 @@ public abstract class AbstratcLocalizer implements ISPLocalizer {
 	}
 	
 	protected abstract List localizationInNestOp(Collection<APopulationEntity> entities, List<AGeoEntity> possibleNests, Long val);
+	
+	/**
+	 * Same as {@link #localizationInNestOp(Collection, List, Long)} but with given constraints and random engine, 
+	 * rather than the ones of this localizer: called when areas are localized concurrently (see {@link #setParallelAreas(boolean)}).
+	 * <p>
+	 * Default implementation ignores {@code constraints} and {@code rand}: localizers that support concurrent localization
+	 * must override it
+	 * 
+	 * @param entities
+	 * @param possibleNests
+	 * @param val
+	 * @param constraints
+	 * @param rand
+	 * @return entities that have not been localized
+	 */
+	protected List localizationInNestOp(Collection<APopulationEntity> entities, List<AGeoEntity> possibleNests, 
+			Long val, List<SpatialConstraint> constraints, Random rand) {
+		return localizationInNestOp(entities, possibleNests, val);
+	}
 		
 	// For each area concerned of the entityNbAreas shapefile  (all if not bounds is defined, only the one in the bounds if the one is not null),
 	//define the number of entities from the entities list to locate inside, then try to set a nest to this randomly chosen number of entities.
 	// NOTE: if no nest is located inside the area, not entities will be located inside.
 	private void localizationInNestWithNumbers(List<APopulationEntity> entities, Geometry spatialBounds) 
 			throws IOException, TransformException {
+		localizationInNestWithNumbers(entities, spatialBounds, localizationConstraint, constraints, rand);
+	}
+	
+	private void localizationInNestWithNumbers(List<APopulationEntity> entities, Geometry spatialBounds, 
+			SpatialConstraintLocalization localizationConstraint, List<SpatialConstraint> constraints, Random rand) 
+			throws IOException, TransformException {
 		List<SpatialConstraint> otherConstraints = new ArrayList<>(constraints);
 		otherConstraints.remove(localizationConstraint);
 		
@@ -363,13 +634,10 @@ public abstract class AbstratcLocalizer implements ISPLocalizer {
 			for (SpatialConstraint cr : constraints) {
 				while (!remainingEntities.isEmpty() && !cr.isConstraintLimitReach()) {
 					List<AGeoEntity> possibleNestsInit = localizationConstraint.getSortedCandidates(null);
-					List<AGeoEntity>  possibleNests = new ArrayList<>(possibleNestsInit);
-					for (SpatialConstraint constraint : otherConstraints) {
-						possibleNests = constraint.getSortedCandidates(possibleNests);
-					}
-					remainingEntities = localizationInNestOp(remainingEntities, possibleNests, val);
+					List<AGeoEntity> possibleNests = getCandidates(possibleNestsInit, otherConstraints);
+					remainingEntities = localizationInNestOp(remainingEntities, possibleNests, val, constraints, rand);
 					if (!remainingEntities.isEmpty()) {
-						cr.relaxConstraint((Collection<AGeoEntity>) population.getGeography().getGeoEntity());
+						cr.relaxConstraint(getAllNests());
 					}
 				}
 				if (remainingEntities == null || remainingEntities.isEmpty()) break;
@@ -377,6 +645,25 @@ public abstract class AbstratcLocalizer implements ISPLocalizer {
 		}
 	}
 	
+	/*
+	 * Candidate nests among given ones, or among all nests when null: indexed constraints (see SpatialConstraintIndexedMaxNumber) 
+	 * then read their list of available nests, while other constraints filter a copy of all nests
+	 */
+	private List<AGeoEntity> getCandidates(List<AGeoEntity> nests, List<SpatialConstraint> constraints) {
+		List<AGeoEntity> candidates = nests;
+		for (SpatialConstraint constraint : constraints) {
+			if (candidates == null && !(constraint instanceof SpatialConstraintIndexedMaxNumber))
+				candidates = new ArrayList<>(getAllNests());
+			candidates = constraint.getSortedCandidates(candidates);
+		}
+		return candidates == null ? new ArrayList<>(getAllNests()) : candidates;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private Collection<AGeoEntity> getAllNests() {
+		return (Collection<AGeoEntity>) population.getGeography().getGeoEntity();
+	}
+	
 	/*
 	 * Estimate the number of match between population and space through the key attribute link
 	 */
@@ -0,0 +1,212 @@
+package spll.popmapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+import core.util.random.roulette.PrimitiveAliasTable;
+import spll.entity.GSPixel;
+import spll.io.SPLRasterFile;
+import spll.io.SPLRasterTile;
+
+/**
+ * Draw points according to the values of a raster band, e.g. a density map estimated through spatial regression:
+ * <p>
+ * <ul>
+ * <li> raster is read tile by tile (see {@link SPLRasterFile#getTileIterator()}), so that no {@link GSPixel} is ever created
+ * <li> one alias table (see {@link PrimitiveAliasTable}) is built over cell values, cells with no data or with a value
+ * that is not strictly positive being excluded
+ * <li> a point is drawn in constant time: a cell is drawn from the alias table, and a point is drawn uniformly
+ * within the cell using the grid to world transformation of the raster
+ * </ul>
+ * <p>
+ * Cells are identified by {@code x * rows + y}, where (x,y) are grid coordinates (row 0 being at the top of the raster):
+ * this is the layout of {@link spll.util.SpllFeatureIndex#rasterize(com.vividsolutions.jts.geom.Envelope, int, int)},
+ * so that cells can be partitioned into zones, see {@link #build(SPLRasterFile, int, int[], int)}.
+ * Samplers are immutable, hence thread safe
+ *
+ * @author kevinchapuis
+ *
+ */
+public class SPLRasterDensitySampler {
+
+	public static GeometryFactory FACTORY = new GeometryFactory();
+
+	private final int[] cells;
+	private final PrimitiveAliasTable table;
+
+	private final int rows;
+	private final double minX, maxY;
+	private final double cellWidth, cellHeight;
+
+	/**
+	 * Sampler over all cells of band {@code band} of {@code raster}
+	 *
+	 * @param raster
+	 * @param band
+	 * @throws IllegalArgumentException if no cell has a strictly positive value
+	 */
+	public SPLRasterDensitySampler(SPLRasterFile raster, int band) {
+		this(requireCells(build(raster, band, null, 1).get(0)));
+	}
+
+	private SPLRasterDensitySampler(SPLRasterDensitySampler sampler) {
+		this(sampler.cells, sampler.table, sampler.rows, sampler.minX, sampler.maxY,
+				sampler.cellWidth, sampler.cellHeight);
+	}
+
+	private SPLRasterDensitySampler(int[] cells, PrimitiveAliasTable table, int rows,
+			double minX, double maxY, double cellWidth, double cellHeight) {
+		this.cells = cells;
+		this.table = table;
+		this.rows = rows;
+		this.minX = minX;
+		this.maxY = maxY;
+		this.cellWidth = cellWidth;
+		this.cellHeight = cellHeight;
+	}
+
+	/**
+	 * Build one sampler per zone in one pass over band {@code band} of {@code raster}: {@code zones} gives the zone of
+	 * each cell (at index {@code x * rows + y}), from 0 to {@code zoneNumber} excluded, or -1 if the cell is part of no zone.
+	 * When {@code zones} is null, all cells are part of zone 0
+	 *
+	 * @param raster
+	 * @param band
+	 * @param zones
+	 * @param zoneNumber
+	 * @return samplers in zone order, null for zones without any cell with a strictly positive value
+	 * @throws IllegalArgumentException if the raster has more than {@link Integer#MAX_VALUE} cells
+	 */
+	public static List<SPLRasterDensitySampler> build(SPLRasterFile raster, int band, int[] zones, int zoneNumber) {
+		if(band < 0 || band >= raster.getBandNumber())
+			throw new IllegalArgumentException("Band "+band+" does not exist in raster with "+raster.getBandNumber()+" band(s)");
+		int rows = raster.getRowNumber();
+		long cellNumber = (long) raster.getColumnNumber() * rows;
+		if(cellNumber > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Raster has "+cellNumber+" cells ("+raster.getColumnNumber()+"x"+rows
+					+"), more than the "+Integer.MAX_VALUE+" cells that can be identified by x * rows + y");
+		if(zones != null && zones.length != cellNumber)
+			throw new IllegalArgumentException("Zones ("+zones.length+") must be given for each of the "
+					+cellNumber+" cells of the raster");
+
+		// One pass over the raster: keep valid cells with their zone
+		int size = 0;
+		int[] cells = new int[1024];
+		int[] cellZones = new int[1024];
+		double[] weights = new double[1024];
+		Iterator<SPLRasterTile> tiles = raster.getTileIterator();
+		while(tiles.hasNext()){
+			SPLRasterTile tile = tiles.next();
+			double[] values = tile.getBand(band);
+			for(int j = 0; j < tile.getHeight(); j++)
+				for(int i = 0; i < tile.getWidth(); i++){
+					double value = values[j * tile.getWidth() + i];
+					if(tile.isNoData(value) || !(value > 0) || Double.isInfinite(value))
+						continue;
+					int cell = (tile.getX() + i) * rows + tile.getY() + j;
+					int zone = zones == null ? 0 : zones[cell];
+					if(zone < 0)
+						continue;
+					if(size == cells.length){
+						cells = Arrays.copyOf(cells, size * 2);
+						cellZones = Arrays.copyOf(cellZones, size * 2);
+						weights = Arrays.copyOf(weights, size * 2);
+					}
+					cells[size] = cell;
+					cellZones[size] = zone;
+					weights[size++] = value;
+				}
+		}
+
+		// Bucket cells by zone (counting sort)
+		int[] offsets = new int[zoneNumber + 1];
+		for(int c = 0; c < size; c++)
+			offsets[cellZones[c] + 1]++;
+		for(int z = 0; z < zoneNumber; z++)
+			offsets[z + 1] += offsets[z];
+		int[] sortedCells = new int[size];
+		double[] sortedWeights = new double[size];
+		int[] next = Arrays.copyOf(offsets, zoneNumber);
+		for(int c = 0; c < size; c++){
+			int position = next[cellZones[c]]++;
+			sortedCells[position] = cells[c];
+			sortedWeights[position] = weights[c];
+		}
+
+		double cellWidth = raster.getCellWidth();
+		double cellHeight = raster.getCellHeight();
+		double minX = raster.getCenterX(0) - cellWidth / 2;
+		double maxY = raster.getCenterY(0) + cellHeight / 2;
+		List<SPLRasterDensitySampler> samplers = new ArrayList<>(zoneNumber);
+		for(int z = 0; z < zoneNumber; z++){
+			if(offsets[z] == offsets[z + 1]){
+				samplers.add(null);
+				continue;
+			}
+			samplers.add(new SPLRasterDensitySampler(Arrays.copyOfRange(sortedCells, offsets[z], offsets[z + 1]),
+					new PrimitiveAliasTable(Arrays.copyOfRange(sortedWeights, offsets[z], offsets[z + 1])),
+					rows, minX, maxY, cellWidth, cellHeight));
+		}
+		return samplers;
+	}
+
+	private static SPLRasterDensitySampler requireCells(SPLRasterDensitySampler sampler) {
+		if(sampler == null)
+			throw new IllegalArgumentException("Raster does not contain any cell with a strictly positive value");
+		return sampler;
+	}
+
+	// ------------------------- DRAWS ------------------------- //
+
+	/**
+	 * Draw a cell, with a probability proportional to its value
+	 *
+	 * @param random
+	 * @return the cell as {@code x * rows + y}
+	 */
+	public int drawCell(Random random) {
+		return cells[table.drawIndex(random)];
+	}
+
+	/**
+	 * Draw a point: a cell is drawn with a probability proportional to its value,
+	 * then a point is drawn uniformly within the cell
+	 *
+	 * @param random
+	 * @return
+	 */
+	public Point pointIn(Random random) {
+		int cell = drawCell(random);
+		return FACTORY.createPoint(new Coordinate(
+				minX + (cell / rows + random.nextDouble()) * cellWidth,
+				maxY - (cell % rows + random.nextDouble()) * cellHeight));
+	}
+
+	// ------------------------- ACCESSORS ------------------------- //
+
+	/**
+	 * Number of cells this sampler draws within
+	 *
+	 * @return
+	 */
+	public int size() {
+		return cells.length;
+	}
+
+	/**
+	 * Sum of the values of cells this sampler draws within
+	 *
+	 * @return
+	 */
+	public double getTotal() {
+		return table.getTotal();
+	}
+
+}
@@ -3,7 +3,7 @@ package spll.popmapper;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Random;
 
 import core.metamodel.geo.AGeoEntity;
 import core.metamodel.pop.APopulationEntity;
@@ -25,35 +25,50 @@ public class SPUniformLocalizer extends AbstratcLocalizer {
 	@Override
 	protected List localizationInNestOp(Collection<APopulationEntity> entities,
 			List<AGeoEntity> possibleNests, Long val) {
-		Collection<APopulationEntity> chosenEntities = null;
+		return localizationInNestOp(entities, possibleNests, val, constraints, rand);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Entities and nests are drawn in arrays: {@code val} entities are chosen with a partial Fisher-Yates shuffle
+	 * and full nests are swapped with the last available one, so that each draw is made in constant time
+	 */
+	@Override
+	protected List<APopulationEntity> localizationInNestOp(Collection<APopulationEntity> entities,
+			List<AGeoEntity> possibleNests, Long val, List<SpatialConstraint> constraints, Random rand) {
+		APopulationEntity[] ens = entities.toArray(new APopulationEntity[entities.size()]);
+		int chosen = ens.length;
 		if (val != null) {
-			List<APopulationEntity> ens = new ArrayList<>(entities);
-			chosenEntities = new ArrayList<>();
-			val = Math.min(val, ens.size());
-			for (int i = 0; i < val; i++) {
-				int index = rand.nextInt(ens.size());
-				chosenEntities.add(ens.get(index));
-				ens.remove(index);
+			chosen = (int) Math.min(val, ens.length);
+			for (int i = 0; i < chosen; i++) {
+				int index = i + rand.nextInt(ens.length - i);
+				APopulationEntity entity = ens[index];
+				ens[index] = ens[i];
+				ens[i] = entity;
 			}
-		}else {
-			chosenEntities = entities;
 		}
-		for (APopulationEntity entity : chosenEntities) {
-			if (possibleNests.isEmpty()) {
-				break;
-			}
-			int index = rand.nextInt(possibleNests.size());
-			AGeoEntity nest = (AGeoEntity) possibleNests.get(index);
+		
+		AGeoEntity[] nests = possibleNests.toArray(new AGeoEntity[possibleNests.size()]);
+		int nestNumber = nests.length;
+		List<APopulationEntity> remainingEntities = new ArrayList<>();
+		int i = 0;
+		for (; i < chosen && nestNumber > 0; i++) {
+			APopulationEntity entity = ens[i];
+			int index = rand.nextInt(nestNumber);
+			AGeoEntity nest = nests[index];
 			boolean removeObject = false;
 			for (SpatialConstraint constraint: constraints) {
 				removeObject = removeObject || constraint.updateConstraint(entity, nest);
 			}
-			if (removeObject) possibleNests.remove(index);
+			if (removeObject) nests[index] = nests[--nestNumber];
 			entity.setNest(nest);
 			entity.setLocation(pointInLocalizer.pointIn(nest.getGeometry()));
-			
+			if (entity.getLocation() == null) remainingEntities.add(entity);
 		}
-		return entities.stream().filter(a -> a.getLocation() == null).collect(Collectors.toList());
+		for (; i < ens.length; i++) {
+			if (ens[i].getLocation() == null) remainingEntities.add(ens[i]);
+		}
+		return remainingEntities;
 	}
 }
-
@@ -0,0 +1,48 @@
+package spll.popmapper.constraint;
+
+import java.util.Collection;
+
+import core.metamodel.geo.AGeoEntity;
+
+/**
+ * Same constraint as {@link SpatialConstraintMaxDensity}, with nests indexed as in {@link SpatialConstraintIndexedMaxNumber}:
+ * initial densities and areas of nests are stored in primitive arrays
+ *
+ * @author kevinchapuis
+ *
+ */
+public class SpatialConstraintIndexedMaxDensity extends SpatialConstraintIndexedMaxNumber {
+
+	protected final double[] nestInitDensity;
+	protected final double[] nestArea;
+
+	//maxVal: global value for the max density of entities per nest
+	public SpatialConstraintIndexedMaxDensity(Collection<? extends AGeoEntity> nests, Double maxVal) {
+		super(nests, nest -> (int) Math.round(maxVal * nest.getArea()));
+		this.nestInitDensity = new double[this.nests.length];
+		this.nestArea = new double[this.nests.length];
+		for (int id = 0; id < this.nests.length; id++) {
+			nestInitDensity[id] = maxVal;
+			nestArea[id] = this.nests[id].getArea();
+		}
+	}
+
+	//keyAttMax: name of the attribute that contains the max density of entities in the nest file
+	public SpatialConstraintIndexedMaxDensity(Collection<? extends AGeoEntity> nests, String keyAttMax) {
+		super(nests, nest -> (int) Math.round(nest.getValueForAttribute(keyAttMax).getNumericalValue().doubleValue()
+				* nest.getArea()));
+		this.nestInitDensity = new double[this.nests.length];
+		this.nestArea = new double[this.nests.length];
+		for (int id = 0; id < this.nests.length; id++) {
+			nestInitDensity[id] = this.nests[id].getValueForAttribute(keyAttMax).getNumericalValue().doubleValue();
+			nestArea[id] = this.nests[id].getArea();
+		}
+	}
+
+	@Override
+	protected int relaxedCapacity(int id) {
+		return nestCapacities[id] - (int) Math.round(nestInitDensity[id] * nestArea[id])
+				+ (int) Math.round((nestInitDensity[id] + increaseStep * (1 + nbIncrements)) * nestArea[id]);
+	}
+
+}
@@ -0,0 +1,191 @@
+package spll.popmapper.constraint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+import core.metamodel.geo.AGeoEntity;
+import core.metamodel.pop.APopulationEntity;
+
+/**
+ * Same constraint as {@link SpatialConstraintMaxNumber}, but nests are indexed:
+ * <p>
+ * <ul>
+ * <li> each nest is given a dense integer id once, and remaining capacities are stored in a primitive array
+ * <li> nests with a remaining capacity are kept in an indexable free list (a dense array of ids together with the
+ * position of each id in it), so that a nest is added or removed in constant time when it becomes full or gets
+ * capacity back through relaxation
+ * <li> {@link #getSortedCandidates(List)} with a null list of nests returns available nests straight from the free list,
+ * and relaxation only updates capacities and availability of given nests, without building any candidate list
+ * </ul>
+ * <p>
+ * Nests are identified by their name (see {@link AGeoEntity#getGenstarName()}), as in {@link SpatialConstraintMaxNumber}
+ *
+ * @author kevinchapuis
+ *
+ */
+public class SpatialConstraintIndexedMaxNumber extends AbstractSpatialConstraint {
+
+	protected final Map<String, Integer> nestIds;
+	protected final AGeoEntity[] nests;
+	protected final int[] nestCapacities;
+
+	/* Free list: ids of available nests, and position of each nest in it (-1 when full) */
+	private final int[] available;
+	private final int[] position;
+	private int availableNumber;
+
+	//maxVal: global value for the max number of entities per nest
+	public SpatialConstraintIndexedMaxNumber(Collection<? extends AGeoEntity> nests, Double maxVal) {
+		this(nests, nest -> (int) Math.round(maxVal));
+	}
+
+	//keyAttMax: name of the attribute that contains the max number of entities in the nest file
+	public SpatialConstraintIndexedMaxNumber(Collection<? extends AGeoEntity> nests, String keyAttMax) {
+		this(nests, nest -> nest.getValueForAttribute(keyAttMax).getNumericalValue().intValue());
+	}
+
+	/**
+	 * Index nests with given initial capacity
+	 *
+	 * @param nests
+	 * @param capacity
+	 * @throws IllegalArgumentException if several nests have the same name
+	 */
+	protected SpatialConstraintIndexedMaxNumber(Collection<? extends AGeoEntity> nests,
+			ToIntFunction<AGeoEntity> capacity) {
+		super();
+		this.nests = nests.toArray(new AGeoEntity[nests.size()]);
+		this.nestIds = new HashMap<>(this.nests.length * 2);
+		this.nestCapacities = new int[this.nests.length];
+		this.available = new int[this.nests.length];
+		this.position = new int[this.nests.length];
+		for (int id = 0; id < this.nests.length; id++) {
+			if (nestIds.put(this.nests[id].getGenstarName(), id) != null)
+				throw new IllegalArgumentException("Several nests are named "+this.nests[id].getGenstarName());
+			nestCapacities[id] = capacity.applyAsInt(this.nests[id]);
+			position[id] = -1;
+			if (nestCapacities[id] > 0)
+				makeAvailable(id);
+		}
+	}
+
+	// ------------------------- CONSTRAINT CONTRACT ------------------------- //
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * When {@code nests} is null, all available nests are returned; otherwise, nests unknown
+	 * to this constraint are not candidates
+	 */
+	@Override
+	public List<AGeoEntity> getSortedCandidates(List<AGeoEntity> nests) {
+		List<AGeoEntity> candidates;
+		if (nests == null) {
+			candidates = new ArrayList<>(availableNumber);
+			for (int p = 0; p < availableNumber; p++)
+				candidates.add(this.nests[available[p]]);
+		} else {
+			candidates = new ArrayList<>(nests.size());
+			for (AGeoEntity nest : nests) {
+				Integer id = nestIds.get(nest.getGenstarName());
+				if (id != null && position[id] >= 0)
+					candidates.add(nest);
+			}
+		}
+		if (sortCandidates)
+			candidates.sort((n1, n2) -> Integer.compare(getRemainingCapacity(n2), getRemainingCapacity(n1)));
+		return candidates;
+	}
+
+	@Override
+	public List<AGeoEntity> getSortedCandidates(List<AGeoEntity> nests, APopulationEntity entity) {
+		return getSortedCandidates(nests);
+	}
+
+	@Override
+	public boolean updateConstraint(APopulationEntity entity, AGeoEntity nest) {
+		int id = getId(nest);
+		int capacity = nestCapacities[id]--;
+		if (nestCapacities[id] <= 0)
+			makeUnavailable(id);
+		return capacity <= 1;
+	}
+
+	@Override
+	public void relaxConstraintOp(Collection<AGeoEntity> nests) {
+		for (AGeoEntity nest : nests) {
+			int id = getId(nest);
+			nestCapacities[id] = relaxedCapacity(id);
+			if (nestCapacities[id] > 0)
+				makeAvailable(id);
+			else
+				makeUnavailable(id);
+		}
+	}
+
+	/**
+	 * The capacity of nest {@code id} after one relaxation step
+	 *
+	 * @param id
+	 * @return
+	 */
+	protected int relaxedCapacity(int id) {
+		return (int) Math.round(nestCapacities[id] + increaseStep);
+	}
+
+	// ------------------------- ACCESSORS ------------------------- //
+
+	/**
+	 * Remaining capacity of {@code nest}
+	 *
+	 * @param nest
+	 * @return
+	 * @throws IllegalArgumentException if the nest is unknown to this constraint
+	 */
+	public int getRemainingCapacity(AGeoEntity nest) {
+		return nestCapacities[getId(nest)];
+	}
+
+	/**
+	 * Number of nests with a remaining capacity
+	 *
+	 * @return
+	 */
+	public int getAvailableNumber() {
+		return availableNumber;
+	}
+
+	// ------------------------- INNER UTILITIES ------------------------- //
+
+	private int getId(AGeoEntity nest) {
+		Integer id = nestIds.get(nest.getGenstarName());
+		if (id == null)
+			throw new IllegalArgumentException("Nest "+nest.getGenstarName()+" is not constrained by "+this.getClass().getSimpleName());
+		return id;
+	}
+
+	private void makeAvailable(int id) {
+		if (position[id] >= 0)
+			return;
+		position[id] = availableNumber;
+		available[availableNumber++] = id;
+	}
+
+	/*
+	 * Swap the nest with the last available one
+	 */
+	private void makeUnavailable(int id) {
+		int p = position[id];
+		if (p < 0)
+			return;
+		int last = available[--availableNumber];
+		available[p] = last;
+		position[last] = p;
+		position[id] = -1;
+	}
+
+}
@@ -17,6 +17,8 @@ import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.geom.PrecisionModel;
 import com.vividsolutions.jts.precision.GeometryPrecisionReducer;
 
+import core.util.random.GenstarRandom;
+
 public class RandomPointInLocalizer implements PointInLocalizer{
 
 	private Random rand;
@@ -24,6 +26,14 @@ public class RandomPointInLocalizer implements PointInLocalizer{
 	public static GeometryFactory FACTORY = new GeometryFactory();
 	
 	
+	/**
+	 * Point localizer that draws from {@link GenstarRandom#getInstance()} at each draw: 
+	 * thread safe and reproducible when used within {@link core.util.random.GenstarSplittableRandom} parallel tasks
+	 */
+	public RandomPointInLocalizer() {
+		this(null);
+	}
+	
 	public RandomPointInLocalizer(Random rand) {
 		super();
 		this.rand = rand;
@@ -43,7 +53,7 @@ public class RandomPointInLocalizer implements PointInLocalizer{
 		}
 		if (geom instanceof LineString) {
 			double perimeter = geom.getLength();
-			double dist = perimeter * rand.nextDouble();
+			double dist = perimeter * random().nextDouble();
 			double sumDist = 0;
 			Coordinate pS = ((LineString) geom).getCoordinateN(0);
 			for (int i = 1; i < geom.getNumPoints(); i++) {
@@ -67,12 +77,12 @@ public class RandomPointInLocalizer implements PointInLocalizer{
 				final double xMax = env.getMaxX();
 				final double yMin = env.getMinY();
 				final double yMax = env.getMaxY();
-				double newX = xMin + rand.nextDouble() * (xMax - xMin);
-				double newY= yMin + rand.nextDouble() * (yMax - yMin);
+				double newX = xMin + random().nextDouble() * (xMax - xMin);
+				double newY= yMin + random().nextDouble() * (yMax - yMin);
 				Point pt = fact.createPoint(new Coordinate(newX, newY)); 
 				while (!geom.intersects(pt)) {
-					newX = xMin + rand.nextDouble() * (xMax - xMin);
-					newY= yMin + rand.nextDouble() * (yMax - yMin);
+					newX = xMin + random().nextDouble() * (xMax - xMin);
+					newY= yMin + random().nextDouble() * (yMax - yMin);
 					pt = fact.createPoint(new Coordinate(newX, newY)); 
 				}
 				return pt;
@@ -82,7 +92,7 @@ public class RandomPointInLocalizer implements PointInLocalizer{
 			final double xMax = env.getMaxX();
 			final double yMin = env.getMinY();
 			final double yMax = env.getMaxY();
-			final double x = xMin + rand.nextDouble() * (xMax - xMin);
+			final double x = xMin + random().nextDouble() * (xMax - xMin);
 			final Coordinate coord1 = new Coordinate(x, yMin);
 			final Coordinate coord2 = new Coordinate(x, yMax);
 			final Coordinate[] coords = { coord1, coord2 };
@@ -116,7 +126,7 @@ public class RandomPointInLocalizer implements PointInLocalizer{
 				int index = opRndChoice(distribution);
 				return pointIn((geom.getGeometryN(index)));
 			} 
-			return pointIn((geom.getGeometryN(rand.nextInt(geom.getNumGeometries()))));
+			return pointIn((geom.getGeometryN(random().nextInt(geom.getNumGeometries()))));
 		}
 
 		return null;
@@ -138,7 +148,7 @@ public class RandomPointInLocalizer implements PointInLocalizer{
 			normalizedDistribution.set(i, normalizedDistribution.get(i) / sumElt);
 		}
 	
-		double randomValue = rand.nextDouble();
+		double randomValue = random().nextDouble();
 	
 		for (int i = 0; i < distribution.size(); i++) {
 			randomValue = randomValue - normalizedDistribution.get(i);
@@ -157,6 +167,13 @@ public class RandomPointInLocalizer implements PointInLocalizer{
 		return points;
 	}
 	
+	/*
+	 * The random engine of this localizer, or the current Gen* random engine if there is none
+	 */
+	private Random random() {
+		return rand == null ? GenstarRandom.getInstance() : rand;
+	}
+	
 	public Random getRand() {
 		return rand;
 	}
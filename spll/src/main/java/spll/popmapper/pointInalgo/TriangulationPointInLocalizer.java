@@ -0,0 +1,216 @@
+package spll.popmapper.pointInalgo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.vividsolutions.jts.algorithm.locate.IndexedPointInAreaLocator;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Location;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.triangulate.ConformingDelaunayTriangulationBuilder;
+
+import core.util.random.GenstarRandom;
+import core.util.random.roulette.PrimitiveAliasTable;
+
+/**
+ * Uniform random point in (multi) polygons based on triangulation:
+ * <p>
+ * <ul>
+ * <li> each geometry is triangulated once (conforming Delaunay triangulation constrained by the polygon
+ * boundaries, triangles outside the polygon being removed) and triangles are stored in a primitive array
+ * together with an alias table weighted by triangle areas (see {@link PrimitiveAliasTable})
+ * <li> a point is then drawn in constant time, without any spatial predicate: a triangle is drawn
+ * from the alias table and a point is drawn uniformly within it
+ * <li> triangulations are cached by geometry (at most {@link #CACHE_SIZE}, least recently used being evicted),
+ * so that drawing several times in the same nest does not triangulate again
+ * </ul>
+ * <p>
+ * Geometries that are not polygons (or that fail to be triangulated) are delegated to a {@link RandomPointInLocalizer}.
+ * This localizer is thread safe: if no random engine is given, it draws from {@link GenstarRandom#getInstance()}
+ *
+ * @author kevinchapuis
+ *
+ */
+public class TriangulationPointInLocalizer implements PointInLocalizer {
+
+	/**
+	 * Maximum number of triangulated geometries kept in cache
+	 */
+	public static int CACHE_SIZE = 10000;
+
+	public static GeometryFactory FACTORY = new GeometryFactory();
+
+	/*
+	 * Stands for geometries that cannot be triangulated
+	 */
+	private static final TriangleSampler NO_TRIANGLE = new TriangleSampler(new double[0], null);
+
+	private Random rand;
+	private final RandomPointInLocalizer fallback;
+
+	private final Map<Geometry, TriangleSampler> samplers;
+
+	/**
+	 * Point localizer that draws from {@link GenstarRandom#getInstance()} at each draw
+	 */
+	public TriangulationPointInLocalizer() {
+		this(null);
+	}
+
+	public TriangulationPointInLocalizer(Random rand) {
+		this.rand = rand;
+		this.fallback = new RandomPointInLocalizer(rand);
+		this.samplers = Collections.synchronizedMap(new LinkedHashMap<Geometry, TriangleSampler>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Geometry, TriangleSampler> eldest) {
+				return size() > CACHE_SIZE;
+			}
+		});
+	}
+
+	@Override
+	public Point pointIn(Geometry geom) {
+		TriangleSampler sampler = getSampler(geom);
+		if(sampler == NO_TRIANGLE)
+			return fallback.pointIn(geom);
+		return sampler.pointIn(random());
+	}
+
+	@Override
+	public List<Point> pointIn(Geometry geom, int nb) {
+		List<Point> points = new ArrayList<>(nb);
+		TriangleSampler sampler = getSampler(geom);
+		if(sampler == NO_TRIANGLE){
+			for (int i = 0; i < nb; i++)
+				points.add(fallback.pointIn(geom));
+			return points;
+		}
+		Random random = random();
+		for (int i = 0; i < nb; i++)
+			points.add(sampler.pointIn(random));
+		return points;
+	}
+
+	@Override
+	public void setRand(Random rand) {
+		this.rand = rand;
+		fallback.setRand(rand);
+	}
+
+	public Random getRand() {
+		return rand;
+	}
+
+	// ------------------------- INNER UTILITIES ------------------------- //
+
+	/*
+	 * The random engine of this localizer, or the current Gen* random engine if there is none
+	 */
+	private Random random() {
+		return rand == null ? GenstarRandom.getInstance() : rand;
+	}
+
+	/*
+	 * Cached triangulation of the geometry, triangulation being made outside of the cache lock
+	 */
+	private TriangleSampler getSampler(Geometry geom) {
+		if(!(geom instanceof Polygon || geom instanceof MultiPolygon) || !(geom.getArea() > 0))
+			return NO_TRIANGLE;
+		TriangleSampler sampler = samplers.get(geom);
+		if(sampler == null){
+			sampler = triangulate(geom);
+			samplers.put(geom, sampler);
+		}
+		return sampler;
+	}
+
+	/*
+	 * Triangulate each polygon of the geometry and keep triangles whose centroid lies within the polygon
+	 */
+	private TriangleSampler triangulate(Geometry geom) {
+		List<Coordinate[]> triangles = new ArrayList<>();
+		try {
+			for(int i = 0; i < geom.getNumGeometries(); i++){
+				Geometry polygon = geom.getGeometryN(i);
+				if(polygon.isEmpty())
+					continue;
+				ConformingDelaunayTriangulationBuilder builder = new ConformingDelaunayTriangulationBuilder();
+				builder.setSites(polygon);
+				builder.setConstraints(polygon);
+				Geometry triangulation = builder.getTriangles(FACTORY);
+				IndexedPointInAreaLocator locator = new IndexedPointInAreaLocator(polygon);
+				for(int t = 0; t < triangulation.getNumGeometries(); t++){
+					Coordinate[] triangle = triangulation.getGeometryN(t).getCoordinates();
+					Coordinate centroid = new Coordinate((triangle[0].x + triangle[1].x + triangle[2].x) / 3,
+							(triangle[0].y + triangle[1].y + triangle[2].y) / 3);
+					if(locator.locate(centroid) == Location.INTERIOR)
+						triangles.add(triangle);
+				}
+			}
+		} catch (RuntimeException e) {
+			// Invalid or degenerated geometry: rely on rejection sampling
+			return NO_TRIANGLE;
+		}
+
+		double[] vertices = new double[triangles.size() * 6];
+		double[] areas = new double[triangles.size()];
+		for(int t = 0; t < areas.length; t++){
+			Coordinate[] triangle = triangles.get(t);
+			for(int v = 0; v < 3; v++){
+				vertices[t * 6 + v * 2] = triangle[v].x;
+				vertices[t * 6 + v * 2 + 1] = triangle[v].y;
+			}
+			areas[t] = Math.abs((triangle[1].x - triangle[0].x) * (triangle[2].y - triangle[0].y)
+					- (triangle[2].x - triangle[0].x) * (triangle[1].y - triangle[0].y)) / 2;
+		}
+		double total = 0d;
+		for(double area : areas)
+			total += area;
+		if(!(total > 0))
+			return NO_TRIANGLE;
+		return new TriangleSampler(vertices, new PrimitiveAliasTable(areas));
+	}
+
+	/*
+	 * Triangles stored as (ax, ay, bx, by, cx, cy) sequences, drawn according to their area
+	 */
+	private static final class TriangleSampler {
+
+		private final double[] vertices;
+		private final PrimitiveAliasTable areas;
+
+		private TriangleSampler(double[] vertices, PrimitiveAliasTable areas) {
+			this.vertices = vertices;
+			this.areas = areas;
+		}
+
+		/*
+		 * Uniform point in a triangle drawn according to its area: point in the parallelogram
+		 * spanned by the triangle, folded back into the triangle when it falls in the other half
+		 */
+		private Point pointIn(Random random) {
+			int t = areas.drawIndex(random) * 6;
+			double u = random.nextDouble();
+			double v = random.nextDouble();
+			if(u + v > 1){
+				u = 1 - u;
+				v = 1 - v;
+			}
+			double ax = vertices[t], ay = vertices[t + 1];
+			return FACTORY.createPoint(new Coordinate(
+					ax + u * (vertices[t + 2] - ax) + v * (vertices[t + 4] - ax),
+					ay + u * (vertices[t + 3] - ay) + v * (vertices[t + 5] - ay)));
+		}
+
+	}
+
+}
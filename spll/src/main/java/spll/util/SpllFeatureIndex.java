@@ -0,0 +1,234 @@
+package spll.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Location;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.geom.prep.PreparedPolygon;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+import core.metamodel.geo.AGeoEntity;
+
+/**
+ * In memory spatial index over a fixed collection of geographical entities:
+ * <p>
+ * <ul>
+ * <li> entity envelopes are stored in a {@link STRtree}, so that only entities whose envelope
+ * match a query envelope are tested
+ * <li> entity geometries are prepared (see {@link PreparedGeometryFactory}) so that repeated spatial
+ * predicates on the same entity are computed against cached structures
+ * <li> polygons can be rasterized against a regular grid, giving for each cell the entity its center lies within
+ * </ul>
+ * <p>
+ * Entities are indexed in the order of the collection given at construction: whenever several entities
+ * match a query, results follow this order. Index is built once and is read only, hence thread safe
+ *
+ * @author kevinchapuis
+ *
+ * @param <E>
+ */
+public class SpllFeatureIndex<E extends AGeoEntity> {
+
+	private final List<E> entities;
+	private final PreparedGeometry[] prepared;
+	private final STRtree tree;
+
+	private final GeometryFactory factory = new GeometryFactory();
+
+	public SpllFeatureIndex(Collection<? extends E> entities) {
+		this.entities = new ArrayList<>(entities);
+		this.prepared = new PreparedGeometry[this.entities.size()];
+		this.tree = new STRtree();
+		for(int i = 0; i < prepared.length; i++){
+			Geometry geometry = this.entities.get(i).getGeometry();
+			prepared[i] = PreparedGeometryFactory.prepare(geometry);
+			tree.insert(geometry.getEnvelopeInternal(), i);
+		}
+		tree.build();
+	}
+
+	// ------------------------- QUERIES ------------------------- //
+
+	/**
+	 * Entities whose geometry intersects {@code geom}
+	 *
+	 * @param geom
+	 * @return
+	 */
+	public List<E> getIntersect(Geometry geom) {
+		List<E> res = new ArrayList<>();
+		for(int i : query(geom.getEnvelopeInternal()))
+			if(prepared[i].intersects(geom))
+				res.add(entities.get(i));
+		return res;
+	}
+
+	/**
+	 * Entities whose geometry lies within {@code geom}
+	 *
+	 * @param geom
+	 * @return
+	 */
+	public List<E> getWithin(Geometry geom) {
+		List<Integer> candidates = query(geom.getEnvelopeInternal());
+		if(candidates.isEmpty())
+			return Collections.emptyList();
+		PreparedGeometry container = PreparedGeometryFactory.prepare(geom);
+		List<E> res = new ArrayList<>();
+		for(int i : candidates)
+			if(container.contains(entities.get(i).getGeometry()))
+				res.add(entities.get(i));
+		return res;
+	}
+
+	/**
+	 * Entities whose envelope intersects {@code envelope}: no geometric predicate
+	 * is computed, hence result may contain entities that do not intersect the envelope
+	 *
+	 * @param envelope
+	 * @return
+	 */
+	public List<E> getEnvelopeIntersect(Envelope envelope) {
+		List<E> res = new ArrayList<>();
+		for(int i : query(envelope))
+			res.add(entities.get(i));
+		return res;
+	}
+
+	/**
+	 * Entities whose envelope lies within {@code envelope}: no geometric predicate
+	 * is computed, hence result may contain entities that do not lie within the envelope
+	 *
+	 * @param envelope
+	 * @return
+	 */
+	public List<E> getEnvelopeWithin(Envelope envelope) {
+		List<E> res = new ArrayList<>();
+		for(int i : query(envelope))
+			if(envelope.contains(entities.get(i).getGeometry().getEnvelopeInternal()))
+				res.add(entities.get(i));
+		return res;
+	}
+
+	/**
+	 * The first entity {@code coordinate} lies within, or null if there is none
+	 *
+	 * @param coordinate
+	 * @return
+	 */
+	public E getContaining(Coordinate coordinate) {
+		for(int i : query(new Envelope(coordinate)))
+			if(isWithin(coordinate, i))
+				return entities.get(i);
+		return null;
+	}
+
+	// ------------------------- RASTERIZATION ------------------------- //
+
+	/**
+	 * Rasterize entities against the regular grid of {@code columns} x {@code rows} cells that covers {@code gridEnvelope},
+	 * row 0 being at the top of the envelope: cell (x,y) is given the index (see {@link #get(int)}) of the first entity
+	 * the center of the cell lies within, or -1 if there is none. Cells are stored at {@code x * rows + y}
+	 * <p>
+	 * WARNING: entities are rasterized in parallel
+	 *
+	 * @param gridEnvelope
+	 * @param columns
+	 * @param rows
+	 * @return
+	 * @throws IllegalArgumentException if the grid has more than {@link Integer#MAX_VALUE} cells
+	 */
+	public int[] rasterize(Envelope gridEnvelope, int columns, int rows) {
+		long cellNumber = (long) columns * rows;
+		if(cellNumber > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Grid has "+cellNumber+" cells ("+columns+"x"+rows
+					+"), more than the "+Integer.MAX_VALUE+" cells that can be identified by x * rows + y");
+		final double cellWidth = gridEnvelope.getWidth() / columns;
+		final double cellHeight = gridEnvelope.getHeight() / rows;
+		final double originX = gridEnvelope.getMinX();
+		final double maxY = gridEnvelope.getMaxY();
+
+		AtomicIntegerArray cells = new AtomicIntegerArray(columns * rows);
+		for(int c = 0; c < cells.length(); c++)
+			cells.set(c, Integer.MAX_VALUE);
+
+		IntStream.range(0, entities.size()).parallel().forEach(i -> {
+			Envelope env = entities.get(i).getGeometry().getEnvelopeInternal();
+			int xMin = Math.max(0, (int) Math.ceil((env.getMinX() - originX) / cellWidth - 0.5));
+			int xMax = Math.min(columns - 1, (int) Math.floor((env.getMaxX() - originX) / cellWidth - 0.5));
+			int yMin = Math.max(0, (int) Math.ceil((maxY - env.getMaxY()) / cellHeight - 0.5));
+			int yMax = Math.min(rows - 1, (int) Math.floor((maxY - env.getMinY()) / cellHeight - 0.5));
+			Coordinate center = new Coordinate();
+			for(int x = xMin; x <= xMax; x++){
+				center.x = originX + (x + 0.5) * cellWidth;
+				for(int y = yMin; y <= yMax; y++){
+					center.y = maxY - (y + 0.5) * cellHeight;
+					if(isWithin(center, i))
+						cells.accumulateAndGet(x * rows + y, i, Math::min);
+				}
+			}
+		});
+
+		int[] res = new int[cells.length()];
+		for(int c = 0; c < res.length; c++)
+			res[c] = cells.get(c) == Integer.MAX_VALUE ? -1 : cells.get(c);
+		return res;
+	}
+
+	// ------------------------- ACCESSORS ------------------------- //
+
+	/**
+	 * The entity at {@code index}, following the order of the collection this index has been built on
+	 *
+	 * @param index
+	 * @return
+	 */
+	public E get(int index) {
+		return entities.get(index);
+	}
+
+	/**
+	 * All entities, following the order of the collection this index has been built on
+	 *
+	 * @return
+	 */
+	public List<E> getEntities() {
+		return Collections.unmodifiableList(entities);
+	}
+
+	public int size() {
+		return entities.size();
+	}
+
+	// ------------------------- INNER UTILITIES ------------------------- //
+
+	/*
+	 * Candidate indexes sorted in the order of entities
+	 */
+	private List<Integer> query(Envelope envelope) {
+		@SuppressWarnings("unchecked")
+		List<Integer> candidates = new ArrayList<>(tree.query(envelope));
+		Collections.sort(candidates);
+		return candidates;
+	}
+
+	/*
+	 * Same as Point#within(Geometry): points on the boundary are not within
+	 */
+	private boolean isWithin(Coordinate coordinate, int index) {
+		if(prepared[index] instanceof PreparedPolygon)
+			return ((PreparedPolygon) prepared[index]).getPointLocator().locate(coordinate) == Location.INTERIOR;
+		return factory.createPoint(coordinate).within(prepared[index].getGeometry());
+	}
+
+}
@@ -0,0 +1,110 @@
+package spll.algo;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+import core.metamodel.geo.AGeoEntity;
+import spll.datamapper.matcher.ISPLMatcher;
+import spll.datamapper.variable.SPLVariable;
+import spll.entity.attribute.RawGeoAttribute;
+import spll.entity.attribute.value.RawGeoData;
+
+public class LMRegressionNormalEquationsTest {
+
+	public static int AREAS = 200;
+	public static int VARIABLES = 8;
+	public static double DELTA = 1e-6;
+
+	public static Map<AGeoEntity, Double> observations;
+	public static Set<ISPLMatcher<SPLVariable, Double>> matchers;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Random random = new Random(42);
+		RawGeoAttribute landUse = new RawGeoAttribute("landuse");
+		SPLVariable[] variables = new SPLVariable[VARIABLES];
+		for(int v = 0; v < VARIABLES; v++)
+			variables[v] = new SPLVariable(new RawGeoData(landUse, v), "landuse");
+
+		observations = new HashMap<>();
+		matchers = new HashSet<>();
+		for(int a = 0; a < AREAS; a++){
+			AGeoEntity area = new AGeoEntity(new HashSet<>(), "area"+a) {
+				@Override
+				public Geometry getGeometry() {
+					return null;
+				}
+			};
+			double population = 10 + random.nextGaussian();
+			// sparse: each area only matches some of the variables
+			for(int v = 0; v < VARIABLES; v++){
+				if(random.nextDouble() < 0.4)
+					continue;
+				double surface = random.nextDouble() * 100;
+				population += surface * (v + 1);
+				matchers.add(matcher(area, variables[v], surface));
+			}
+			observations.put(area, population);
+		}
+	}
+
+	@Test
+	public void testSameAsOLS() {
+		LMRegressionOLS ols = new LMRegressionOLS();
+		ols.setupData(observations, matchers);
+		LMRegressionNormalEquations ne = new LMRegressionNormalEquations();
+		ne.setupData(observations, matchers);
+
+		Map<SPLVariable, Double> olsCoef = ols.getRegressionParameter();
+		Map<SPLVariable, Double> neCoef = ne.getRegressionParameter();
+		assertEquals(olsCoef.keySet(), neCoef.keySet());
+		for(SPLVariable var : olsCoef.keySet())
+			assertEquals(olsCoef.get(var), neCoef.get(var), DELTA);
+		assertEquals(ols.getIntercept(), ne.getIntercept(), DELTA);
+
+		Map<AGeoEntity, Double> olsResidual = ols.getResidual();
+		Map<AGeoEntity, Double> neResidual = ne.getResidual();
+		for(AGeoEntity area : observations.keySet())
+			assertEquals(olsResidual.get(area), neResidual.get(area), DELTA);
+	}
+
+	private static ISPLMatcher<SPLVariable, Double> matcher(AGeoEntity entity, SPLVariable variable, double area) {
+		return new ISPLMatcher<SPLVariable, Double>() {
+			@Override
+			public String getName() {
+				return variable.getName();
+			}
+
+			@Override
+			public Double getValue() {
+				return area;
+			}
+
+			@Override
+			public boolean expandValue(Double expand) {
+				return false;
+			}
+
+			@Override
+			public SPLVariable getVariable() {
+				return variable;
+			}
+
+			@Override
+			public AGeoEntity getEntity() {
+				return entity;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,197 @@
+package spll.datamapper.matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import core.metamodel.geo.AGeoAttribute;
+import core.metamodel.geo.AGeoEntity;
+import core.metamodel.geo.AGeoValue;
+import core.metamodel.geo.io.GeoGSFileType;
+import core.metamodel.geo.io.IGSGeofile;
+import spll.datamapper.variable.SPLVariable;
+import spll.entity.attribute.RawGeoAttribute;
+import spll.entity.attribute.value.RawGeoData;
+
+public class SPLAreaIndexedMatcherFactoryTest {
+
+	public static String LANDUSE = "landuse";
+	public static String HEIGHT = "height";
+
+	private static GeometryFactory factory = new GeometryFactory();
+
+	private List<AGeoEntity> entities;
+	private MemoryGeofile regressors;
+
+	@Before
+	public void setUp() {
+		// 3 x 2 main entities of 10 x 15 over [0:30]x[0:30]
+		entities = new ArrayList<>();
+		for(int x = 0; x < 3; x++)
+			for(int y = 0; y < 2; y++)
+				entities.add(createEntity("iris_"+x+"_"+y, new Envelope(x * 10, (x + 1) * 10, y * 15, (y + 1) * 15),
+						Collections.emptyList()));
+
+		// Regressors of various sizes: some of them lie within a main entity, others cross their borders
+		AGeoAttribute landuse = new RawGeoAttribute(LANDUSE);
+		AGeoAttribute height = new RawGeoAttribute(HEIGHT);
+		List<String> uses = Arrays.asList("urban", "forest", "water");
+		List<AGeoEntity> features = new ArrayList<>();
+		for(int x = 0; x < 15; x++)
+			for(int y = 0; y < 15; y++){
+				double size = 1 + (x + y) % 3;
+				features.add(createEntity("cell_"+x+"_"+y, new Envelope(x * 2, x * 2 + size, y * 2, y * 2 + size),
+						Arrays.asList(new RawGeoData(landuse, uses.get((x * y) % uses.size())),
+								new RawGeoData(height, (x + 2 * y) % 4))));
+			}
+		regressors = new MemoryGeofile(features);
+	}
+
+	@Test
+	public void testMatchersEqualBaseline() throws Exception {
+		List<ISPLMatcher<SPLVariable, Double>> expected = new SPLAreaMatcherFactory(Collections.emptyList())
+				.getMatchers(entities, regressors);
+		List<ISPLMatcher<SPLVariable, Double>> actual = new SPLAreaIndexedMatcherFactory(Collections.emptyList(), 3)
+				.getMatchers(entities, regressors);
+		assertFalse(expected.isEmpty());
+		assertSameMatchers(expected, actual);
+
+		// Matchers are given entity after entity
+		List<AGeoEntity> order = actual.stream().map(ISPLMatcher::getEntity).distinct().collect(Collectors.toList());
+		assertEquals(entities.stream().filter(order::contains).collect(Collectors.toList()), order);
+	}
+
+	@Test
+	public void testMatchersEqualBaselineWithVariables() throws Exception {
+		Collection<AGeoValue> variables = regressors.getGeoValues().stream()
+				.filter(value -> value.getAttribute().getAttributeName().equals(LANDUSE))
+				.collect(Collectors.toList());
+		List<ISPLMatcher<SPLVariable, Double>> expected = new SPLAreaMatcherFactory(variables)
+				.getMatchers(entities, regressors);
+		List<ISPLMatcher<SPLVariable, Double>> actual = new SPLAreaIndexedMatcherFactory(variables, 2)
+				.getMatchers(entities, regressors);
+		assertFalse(expected.isEmpty());
+		assertSameMatchers(expected, actual);
+		for(ISPLMatcher<SPLVariable, Double> matcher : actual)
+			assertEquals(LANDUSE, matcher.getVariable().getName());
+	}
+
+	// ------------------------- UTILITIES ------------------------- //
+
+	/*
+	 * Same matchers, whatever their order, with the same aggregated area
+	 */
+	private void assertSameMatchers(List<ISPLMatcher<SPLVariable, Double>> expected,
+			List<ISPLMatcher<SPLVariable, Double>> actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+		Map<ISPLMatcher<SPLVariable, Double>, Double> areas = new HashMap<>();
+		for(ISPLMatcher<SPLVariable, Double> matcher : expected)
+			areas.put(matcher, matcher.getValue());
+		for(ISPLMatcher<SPLVariable, Double> matcher : actual)
+			assertEquals(matcher.toString(), areas.get(matcher), matcher.getValue(), 1e-9);
+	}
+
+	private AGeoEntity createEntity(String name, Envelope envelope, List<AGeoValue> values) {
+		Geometry geometry = factory.toGeometry(envelope);
+		return new AGeoEntity(new HashSet<>(values), name) {
+			@Override
+			public Geometry getGeometry() {
+				return geometry;
+			}
+		};
+	}
+
+	/*
+	 * Vector file held in memory
+	 */
+	private static class MemoryGeofile implements IGSGeofile<AGeoEntity> {
+
+		private final List<AGeoEntity> entities;
+
+		private MemoryGeofile(List<AGeoEntity> entities) {
+			this.entities = entities;
+		}
+
+		@Override
+		public GeoGSFileType getGeoGSFileType() {
+			return GeoGSFileType.VECTOR;
+		}
+
+		@Override
+		public Collection<AGeoEntity> getGeoEntity() {
+			return entities;
+		}
+
+		@Override
+		public Collection<AGeoValue> getGeoValues() {
+			return entities.stream().flatMap(e -> e.getValues().stream()).collect(Collectors.toSet());
+		}
+
+		@Override
+		public Collection<AGeoAttribute> getGeoAttributes() {
+			return entities.stream().flatMap(e -> e.getAttributes().stream()).collect(Collectors.toSet());
+		}
+
+		@Override
+		public boolean isCoordinateCompliant(IGSGeofile<? extends AGeoEntity> file) {
+			return true;
+		}
+
+		@Override
+		public String getWKTCoordinateReferentSystem() {
+			return null;
+		}
+
+		@Override
+		public Iterator<AGeoEntity> getGeoEntityIterator() {
+			return entities.iterator();
+		}
+
+		@Override
+		public Iterator<AGeoEntity> getGeoEntityIteratorWithin(Geometry geom) {
+			return getGeoEntityWithin(geom).iterator();
+		}
+
+		@Override
+		public Collection<AGeoEntity> getGeoEntityWithin(Geometry geom) {
+			return entities.stream().filter(e -> e.getGeometry().within(geom)).collect(Collectors.toList());
+		}
+
+		@Override
+		public Iterator<AGeoEntity> getGeoEntityIteratorIntersect(Geometry geom) {
+			return getGeoEntityIntersect(geom).iterator();
+		}
+
+		@Override
+		public Collection<AGeoEntity> getGeoEntityIntersect(Geometry geom) {
+			return entities.stream().filter(e -> e.getGeometry().intersects(geom)).collect(Collectors.toList());
+		}
+
+		@Override
+		public Envelope getEnvelope() {
+			Envelope envelope = new Envelope();
+			entities.forEach(e -> envelope.expandToInclude(e.getGeometry().getEnvelopeInternal()));
+			return envelope;
+		}
+
+	}
+
+}
@@ -0,0 +1,70 @@
+package spll.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationEntity;
+import core.metamodel.pop.APopulationValue;
+import core.util.data.GSEnumDataType;
+import gospl.GosplPopulation;
+import gospl.entity.GosplEntity;
+import gospl.entity.attribute.GSEnumAttributeType;
+import gospl.entity.attribute.GosplAttributeFactory;
+import spll.SpllPopulation;
+
+public class SPLGeofileFactoryTest {
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+
+	@Test
+	public void testStreamShapeFilesSplitIntoParts() throws Exception {
+		// 10 entities, the last one not being located
+		APopulationAttribute gender = new GosplAttributeFactory().createAttribute("Genre", GSEnumDataType.String,
+				Arrays.asList("Homme", "Femme"), GSEnumAttributeType.unique);
+		GeometryFactory factory = new GeometryFactory();
+		GosplPopulation population = new GosplPopulation();
+		for(int i = 0; i < 10; i++){
+			Map<APopulationAttribute, APopulationValue> values = new HashMap<>();
+			values.put(gender, gender.getValue(i % 2 == 0 ? "Homme" : "Femme"));
+			APopulationEntity entity = new GosplEntity(values);
+			if(i < 9)
+				entity.setLocation(factory.createPoint(new Coordinate(i, i)));
+			population.add(entity);
+		}
+		SpllPopulation spllPopulation = new SpllPopulation(population, null) {
+			@Override
+			public CoordinateReferenceSystem getCrs() {
+				return DefaultGeographicCRS.WGS84;
+			}
+		};
+
+		SPLGeofileFactory gf = new SPLGeofileFactory();
+		List<File> parts = gf.streamShapeFiles(new File(tmpDir.getRoot(), "pop.shp"), spllPopulation, 5);
+
+		assertEquals(2, parts.size());
+		assertEquals("pop_0.shp", parts.get(0).getName());
+		assertEquals("pop_1.shp", parts.get(1).getName());
+		assertEquals(5, gf.getShapeFile(parts.get(0)).getGeoEntity().size());
+		assertEquals(4, gf.getShapeFile(parts.get(1)).getGeoEntity().size());
+		for(File part : parts)
+			assertTrue(new File(part.getParentFile(), part.getName().replace(".shp", ".prj")).exists());
+	}
+
+}
@@ -0,0 +1,111 @@
+package spll.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.referencing.operation.TransformException;
+
+import spll.entity.GeoEntityFactory;
+
+public class SPLRasterFileTest {
+
+	/* 7 columns x 5 rows, so that tiles of 3 cells are clipped on both axis */
+	public static int COLUMNS = 7;
+	public static int ROWS = 5;
+	public static float NODATA = -1f;
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+
+	private float[][] pixels;
+	private SPLRasterFile raster;
+
+	@Before
+	public void setUp() throws Exception {
+		// One distinct value per cell and one no data cell
+		pixels = new float[COLUMNS][ROWS];
+		for(int x = 0; x < COLUMNS; x++)
+			for(int y = 0; y < ROWS; y++)
+				pixels[x][y] = 10 * x + y;
+		pixels[4][2] = NODATA;
+		raster = new SPLGeofileFactory().createRasterfile(new File(tmpDir.getRoot(), "tiles.tif"),
+				pixels, NODATA, new ReferencedEnvelope(0, COLUMNS, 0, ROWS, DefaultGeographicCRS.WGS84));
+	}
+
+	@Test
+	public void testTileLayoutMatchesPixels() throws TransformException {
+		SPLRasterTile tile = raster.getTile(2, 1, 3, 3);
+		assertEquals(2, tile.getX());
+		assertEquals(1, tile.getY());
+		assertEquals(3, tile.getWidth());
+		assertEquals(3, tile.getHeight());
+		assertEquals(1, tile.getBandNumber());
+		assertEquals(9, tile.getBand(0).length);
+		for(int x = 2; x < 5; x++)
+			for(int y = 1; y < 4; y++){
+				double value = tile.getBand(0)[(y - tile.getY()) * tile.getWidth() + (x - tile.getX())];
+				assertEquals("Cell ("+x+","+y+")", pixels[x][y], value, 0d);
+				assertEquals(value, tile.getValue(0, x, y), 0d);
+				assertEquals(pixelValue(x, y), value, 0d);
+			}
+		assertTrue(tile.isNoData(tile.getValue(0, 4, 2)));
+		assertFalse(tile.isNoData(tile.getValue(0, 2, 1)));
+	}
+
+	@Test
+	public void testTileIsClipped() {
+		SPLRasterTile tile = raster.getTile(5, 3, 4, 4);
+		assertEquals(2, tile.getWidth());
+		assertEquals(2, tile.getHeight());
+		assertEquals(4, tile.getBand(0).length);
+		assertEquals(pixels[6][4], tile.getValue(0, 6, 4), 0d);
+		assertFalse(tile.contains(7, 4));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testTileOutsideRaster() {
+		raster.getTile(COLUMNS, 0, 1, 1);
+	}
+
+	@Test
+	public void testTileIteratorCoversRaster() throws TransformException {
+		int[][] visits = new int[COLUMNS][ROWS];
+		int tiles = 0;
+		for(Iterator<SPLRasterTile> it = raster.getTileIterator(3); it.hasNext(); tiles++){
+			SPLRasterTile tile = it.next();
+			for(int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++)
+				for(int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++){
+					visits[x][y]++;
+					assertEquals("Cell ("+x+","+y+")", pixelValue(x, y), tile.getValue(0, x, y), 0d);
+				}
+		}
+		// 3 columns and 2 rows of tiles
+		assertEquals(6, tiles);
+		for(int x = 0; x < COLUMNS; x++)
+			for(int y = 0; y < ROWS; y++)
+				assertEquals(1, visits[x][y]);
+
+		// Default tile size is above the size of the raster: a single tile
+		Iterator<SPLRasterTile> it = raster.getTileIterator();
+		SPLRasterTile tile = it.next();
+		assertEquals(COLUMNS, tile.getWidth());
+		assertEquals(ROWS, tile.getHeight());
+		assertFalse(it.hasNext());
+	}
+
+	private double pixelValue(int x, int y) throws TransformException {
+		return raster.getPixel(x, y).getValueForAttribute(GeoEntityFactory.ATTRIBUTE_PIXEL_BAND+0)
+				.getNumericalValue().doubleValue();
+	}
+
+}
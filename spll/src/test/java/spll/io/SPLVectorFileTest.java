@@ -0,0 +1,126 @@
+package spll.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationEntity;
+import core.metamodel.pop.APopulationValue;
+import core.util.data.GSEnumDataType;
+import gospl.GosplPopulation;
+import gospl.entity.GosplEntity;
+import gospl.entity.attribute.GSEnumAttributeType;
+import gospl.entity.attribute.GosplAttributeFactory;
+import spll.SpllPopulation;
+import spll.entity.GSFeature;
+import spll.io.SPLVectorFile.QueryMode;
+
+public class SPLVectorFileTest {
+
+	public static int SIDE = 10;
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+
+	private static GeometryFactory factory = new GeometryFactory();
+
+	private SPLVectorFile shapefile;
+	private List<Geometry> queries;
+
+	@Before
+	public void setUp() throws Exception {
+		// One point at the center of each cell of a 10 x 10 grid
+		APopulationAttribute gender = new GosplAttributeFactory().createAttribute("Genre", GSEnumDataType.String,
+				Arrays.asList("Homme", "Femme"), GSEnumAttributeType.unique);
+		GosplPopulation population = new GosplPopulation();
+		for(int x = 0; x < SIDE; x++)
+			for(int y = 0; y < SIDE; y++){
+				Map<APopulationAttribute, APopulationValue> values = new HashMap<>();
+				values.put(gender, gender.getValue((x + y) % 2 == 0 ? "Homme" : "Femme"));
+				APopulationEntity entity = new GosplEntity(values);
+				entity.setLocation(factory.createPoint(new Coordinate(x + 0.5, y + 0.5)));
+				population.add(entity);
+			}
+		SpllPopulation spllPopulation = new SpllPopulation(population, null) {
+			@Override
+			public CoordinateReferenceSystem getCrs() {
+				return DefaultGeographicCRS.WGS84;
+			}
+		};
+		SPLGeofileFactory gf = new SPLGeofileFactory();
+		File file = new File(tmpDir.getRoot(), "points.shp");
+		gf.createShapeFile(file, spllPopulation);
+		shapefile = gf.getShapeFile(file);
+
+		// Queries which envelope covers more points than they do
+		queries = Arrays.asList(
+				factory.createPolygon(new Coordinate[]{new Coordinate(0, 0), new Coordinate(10, 0),
+						new Coordinate(0, 10), new Coordinate(0, 0)}),
+				factory.createPolygon(new Coordinate[]{new Coordinate(2, 5), new Coordinate(5, 2), new Coordinate(8, 5),
+						new Coordinate(5, 8), new Coordinate(2, 5)}),
+				factory.createPoint(new Coordinate(3.5, 3.5)).buffer(2.2));
+	}
+
+	@Test
+	public void testIndexMatchesFilter() {
+		for(Geometry query : queries){
+			assertFalse(within(QueryMode.FILTER, query).isEmpty());
+			assertEquals(within(QueryMode.FILTER, query), within(QueryMode.INDEX, query));
+			assertEquals(intersect(QueryMode.FILTER, query), intersect(QueryMode.INDEX, query));
+		}
+	}
+
+	@Test
+	public void testEnvelopeIsSuperSetOfFilter() {
+		for(Geometry query : queries){
+			Set<String> exact = within(QueryMode.FILTER, query);
+			Set<String> envelope = within(QueryMode.ENVELOPE, query);
+			assertTrue(envelope.containsAll(exact));
+			assertTrue(envelope.size() > exact.size());
+			assertTrue(intersect(QueryMode.ENVELOPE, query).containsAll(intersect(QueryMode.FILTER, query)));
+		}
+	}
+
+	// ------------------------- UTILITIES ------------------------- //
+
+	/*
+	 * Features are compared through their geometry, since query modes do not give the same instances
+	 */
+	private Set<String> within(QueryMode mode, Geometry query) {
+		shapefile.setQueryMode(mode);
+		return toText(shapefile.getGeoEntityIteratorWithin(query));
+	}
+
+	private Set<String> intersect(QueryMode mode, Geometry query) {
+		shapefile.setQueryMode(mode);
+		return toText(shapefile.getGeoEntityIteratorIntersect(query));
+	}
+
+	private Set<String> toText(Iterator<GSFeature> features) {
+		Set<String> geometries = new TreeSet<>();
+		features.forEachRemaining(feature -> geometries.add(feature.getGeometry().toText()));
+		return geometries;
+	}
+
+}
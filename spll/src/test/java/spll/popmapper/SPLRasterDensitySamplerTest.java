@@ -0,0 +1,100 @@
+package spll.popmapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Random;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.vividsolutions.jts.geom.Point;
+
+import spll.io.SPLGeofileFactory;
+import spll.io.SPLRasterFile;
+
+public class SPLRasterDensitySamplerTest {
+
+	public static int DRAWS = 100000;
+	public static double TOLERANCE = 0.01;
+
+	/* 5 columns x 4 rows of 10x10 cells over [0:50]x[0:40] */
+	public static int COLUMNS = 5;
+	public static int ROWS = 4;
+	public static double SIZE = 10;
+	public static float NODATA = 9f;
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+
+	private float[][] pixels;
+	private double total;
+	private SPLRasterDensitySampler sampler;
+
+	@Before
+	public void setUp() throws Exception {
+		// Values from 0 to 3, some negative and no data cells; values differ between top and bottom rows
+		pixels = new float[COLUMNS][ROWS];
+		for(int x = 0; x < COLUMNS; x++)
+			for(int y = 0; y < ROWS; y++)
+				pixels[x][y] = (x + 2 * y) % 4;
+		pixels[1][0] = -2f;
+		pixels[0][0] = NODATA;
+		pixels[2][2] = NODATA;
+		total = 0d;
+		for(int x = 0; x < COLUMNS; x++)
+			for(int y = 0; y < ROWS; y++)
+				if(isValid(x, y))
+					total += pixels[x][y];
+
+		SPLRasterFile raster = new SPLGeofileFactory().createRasterfile(new File(tmpDir.getRoot(), "density.tif"),
+				pixels, NODATA, new ReferencedEnvelope(0, COLUMNS * SIZE, 0, ROWS * SIZE, DefaultGeographicCRS.WGS84));
+		sampler = new SPLRasterDensitySampler(raster, 0);
+	}
+
+	@Test
+	public void testCellsFollowValues() {
+		assertEquals(total, sampler.getTotal(), 1e-9);
+		int[] counts = new int[COLUMNS * ROWS];
+		Random random = new Random(42);
+		for(int i = 0; i < DRAWS; i++)
+			counts[sampler.drawCell(random)]++;
+		for(int x = 0; x < COLUMNS; x++)
+			for(int y = 0; y < ROWS; y++){
+				double frequency = counts[x * ROWS + y] / (double) DRAWS;
+				if(isValid(x, y))
+					assertEquals("Cell ("+x+","+y+")", pixels[x][y] / total, frequency, TOLERANCE);
+				else
+					assertEquals("Cell ("+x+","+y+")", 0d, frequency, 0d);
+			}
+	}
+
+	@Test
+	public void testPointsFallWithinDrawnCell() {
+		int[] counts = new int[COLUMNS * ROWS];
+		for(int i = 0; i < DRAWS; i++){
+			int cell = sampler.drawCell(new Random(i));
+			Point point = sampler.pointIn(new Random(i));
+			int x = cell / ROWS;
+			int y = cell % ROWS;
+			// Row 0 is at the top of the raster
+			assertTrue(point.getX() >= x * SIZE && point.getX() <= (x + 1) * SIZE);
+			assertTrue(point.getY() <= (ROWS - y) * SIZE && point.getY() >= (ROWS - y - 1) * SIZE);
+			counts[(int) (point.getX() / SIZE) * ROWS + (int) ((ROWS * SIZE - point.getY()) / SIZE)]++;
+		}
+		for(int x = 0; x < COLUMNS; x++)
+			for(int y = 0; y < ROWS; y++)
+				assertEquals("Cell ("+x+","+y+")", isValid(x, y) ? pixels[x][y] / total : 0d,
+						counts[x * ROWS + y] / (double) DRAWS, TOLERANCE);
+	}
+
+	private boolean isValid(int x, int y) {
+		return pixels[x][y] != NODATA && pixels[x][y] > 0;
+	}
+
+}
@@ -0,0 +1,400 @@
+package spll.popmapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+import core.metamodel.geo.AGeoAttribute;
+import core.metamodel.geo.AGeoEntity;
+import core.metamodel.geo.AGeoValue;
+import core.metamodel.geo.io.GeoGSFileType;
+import core.metamodel.geo.io.IGSGeofile;
+import core.metamodel.pop.APopulationAttribute;
+import core.metamodel.pop.APopulationEntity;
+import core.metamodel.pop.APopulationValue;
+import core.util.data.GSEnumDataType;
+import core.util.random.GenstarRandom;
+import gospl.GosplPopulation;
+import gospl.entity.GosplEntity;
+import gospl.entity.attribute.GSEnumAttributeType;
+import gospl.entity.attribute.GosplAttributeFactory;
+import gospl.entity.attribute.value.UniqueValue;
+import spll.SpllPopulation;
+import spll.entity.GeoEntityFactory;
+import spll.entity.attribute.RawGeoAttribute;
+import spll.entity.attribute.value.RawGeoData;
+import spll.io.SPLGeofileFactory;
+import spll.io.SPLRasterFile;
+import spll.popmapper.constraint.SpatialConstraint;
+import spll.popmapper.constraint.SpatialConstraintMaxNumber;
+import spll.popmapper.pointInalgo.PointInLocalizer;
+
+public class SPUniformLocalizerTest {
+
+	public static String KEY = "iris";
+
+	private static GeometryFactory factory = new GeometryFactory();
+
+	@Rule
+	public TemporaryFolder tmpDir = new TemporaryFolder();
+
+	private APopulationAttribute keyAttribute;
+	private AGeoAttribute keyGeoAttribute;
+	private List<AGeoEntity> nests;
+	private GosplPopulation population;
+	private SPUniformLocalizer localizer;
+
+	@Before
+	public void setUp() throws Exception {
+		keyGeoAttribute = new RawGeoAttribute(KEY);
+
+		// 4 x 4 square nests over [0:40]x[0:40]
+		nests = new ArrayList<>();
+		for(int x = 0; x < 4; x++)
+			for(int y = 0; y < 4; y++)
+				nests.add(createArea("nest_"+x+"_"+y, new Envelope(x * 10, (x + 1) * 10, y * 10, (y + 1) * 10),
+						Collections.emptySet()));
+
+		// 40 entities, half in area A (left) and half in area B (right)
+		keyAttribute = new GosplAttributeFactory().createAttribute(KEY, GSEnumDataType.String,
+				Arrays.asList("A", "B"), GSEnumAttributeType.unique);
+		population = new GosplPopulation();
+		for(int i = 0; i < 40; i++){
+			Map<APopulationAttribute, APopulationValue> values = new HashMap<>();
+			values.put(keyAttribute, keyAttribute.getValue(i % 2 == 0 ? "A" : "B"));
+			population.add(new GosplEntity(values));
+		}
+
+		localizer = new SPUniformLocalizer(new SpllPopulation(population, new MemoryGeofile(nests)));
+	}
+
+	// ------------------------- NEST OPERATION ------------------------- //
+
+	@Test
+	public void testOnlyValEntitiesAreLocalized() {
+		List<APopulationEntity> entities = new ArrayList<>(population).subList(0, 10);
+		List<APopulationEntity> remaining = localizer.localizationInNestOp(entities, nests.subList(0, 3), 4l,
+				Collections.emptyList(), new Random(42));
+
+		assertEquals(6, remaining.size());
+		assertEquals(4, entities.stream().filter(e -> e.getLocation() != null).count());
+		for(APopulationEntity entity : remaining)
+			assertNull(entity.getLocation());
+		for(APopulationEntity entity : entities)
+			if(entity.getLocation() != null)
+				assertTrue(entity.getNest().getGeometry().covers(entity.getLocation()));
+	}
+
+	@Test
+	public void testFullNestsAreNotDrawnAgain() {
+		List<AGeoEntity> possibleNests = new ArrayList<>(nests.subList(0, 2));
+		List<SpatialConstraint> constraints = Arrays.asList(new SpatialConstraintMaxNumber(possibleNests, 1d));
+		List<APopulationEntity> entities = new ArrayList<>(population).subList(0, 5);
+		List<APopulationEntity> remaining = localizer.localizationInNestOp(entities, possibleNests, null,
+				constraints, new Random(42));
+
+		assertEquals(3, remaining.size());
+		Set<AGeoEntity> usedNests = entities.stream().filter(e -> e.getLocation() != null)
+				.map(APopulationEntity::getNest).collect(Collectors.toSet());
+		assertEquals(new HashSet<>(possibleNests), usedNests);
+	}
+
+	@Test
+	public void testUnlocatedEntitiesAreReturned() {
+		localizer.setPointInLocalizer(new PointInLocalizer() {
+			@Override
+			public Point pointIn(Geometry geom) {
+				return null;
+			}
+			@Override
+			public List<Point> pointIn(Geometry geom, int nb) {
+				return null;
+			}
+			@Override
+			public void setRand(Random rand) { }
+		});
+		List<APopulationEntity> entities = new ArrayList<>(population).subList(0, 10);
+		List<APopulationEntity> remaining = localizer.localizationInNestOp(entities, nests, null,
+				Collections.emptyList(), new Random(42));
+
+		assertEquals(new HashSet<>(entities), new HashSet<>(remaining));
+		for(APopulationEntity entity : remaining)
+			assertNotNull(entity.getNest());
+	}
+
+	// ------------------------- MATCH AREAS ------------------------- //
+
+	@Test
+	public void testNestsAreDrawnWithinMatchArea() throws Exception {
+		Geometry areaA = factory.toGeometry(new Envelope(0, 20, 0, 40));
+		Geometry areaB = factory.toGeometry(new Envelope(20, 40, 0, 40));
+		localizer.setMatcher(new MemoryGeofile(Arrays.asList(
+				createArea("A", areaA.getEnvelopeInternal(), Collections.singleton("A")),
+				createArea("B", areaB.getEnvelopeInternal(), Collections.singleton("B")))), KEY, KEY);
+		GenstarRandom.setSeed(42l);
+		List<APopulationEntity> entities = new ArrayList<>(population);
+		localizer.localisePopulation();
+
+		assertEquals(entities.size(), population.size());
+		for(APopulationEntity entity : entities){
+			Geometry area = entity.getValueForAttribute(keyAttribute).getStringValue().equals("A") ? areaA : areaB;
+			assertTrue(area.covers(entity.getNest().getGeometry()));
+			assertTrue(area.covers(entity.getLocation()));
+		}
+	}
+
+	// ------------------------- PARALLEL AREAS ------------------------- //
+
+	@Test
+	public void testParallelAreasAreReproducible() throws Exception {
+		localizer.setMatcher(new MemoryGeofile(Arrays.asList(
+				createArea("A", new Envelope(0, 20, 0, 40), Collections.singleton("A")),
+				createArea("B", new Envelope(20, 40, 0, 40), Collections.singleton("B")))), KEY, KEY);
+		localizer.setParallelAreas(true);
+
+		List<APopulationEntity> entities = new ArrayList<>(population);
+		GenstarRandom.setSeed(42l);
+		ForkJoinPool sequentialPool = new ForkJoinPool(1);
+		try {
+			sequentialPool.submit(() -> localizer.localisePopulation()).get();
+		} finally {
+			sequentialPool.shutdown();
+		}
+		List<Point> sequentialLocations = entities.stream().map(APopulationEntity::getLocation).collect(Collectors.toList());
+
+		for(APopulationEntity entity : entities){
+			entity.setLocation(null);
+			entity.setNest(null);
+		}
+		GenstarRandom.setSeed(42l);
+		localizer.localisePopulation();
+
+		for(int i = 0; i < entities.size(); i++){
+			assertNotNull(entities.get(i).getLocation());
+			assertEquals(sequentialLocations.get(i), entities.get(i).getLocation());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParallelAreasRejectDuplicateKeys() throws Exception {
+		localizer.setMatcher(new MemoryGeofile(Arrays.asList(
+				createArea("A", new Envelope(0, 20, 0, 40), Collections.singleton("A")),
+				createArea("A_bis", new Envelope(20, 40, 0, 40), Collections.singleton("A")))), KEY, KEY);
+		localizer.setParallelAreas(true);
+		localizer.localisePopulation();
+	}
+
+	// ------------------------- RASTER LOCALIZATION ------------------------- //
+
+	@Test
+	public void testRasterDirectLocalization() throws Exception {
+		localizer.setMapper(createDensityRaster(), GeoEntityFactory.ATTRIBUTE_PIXEL_BAND+0);
+		localizer.setRasterDirectLocalization(true);
+		GenstarRandom.setSeed(42l);
+		List<APopulationEntity> entities = new ArrayList<>(population);
+		localizer.localisePopulation();
+
+		assertEquals(entities.size(), population.size());
+		for(APopulationEntity entity : entities)
+			assertLocatedInDensityCell(entity, 0, 40);
+	}
+
+	@Test
+	public void testRasterDirectLocalizationWithMatch() throws Exception {
+		// Entities which key has no match area, or no key at all, are not located
+		Map<APopulationAttribute, APopulationValue> values = new HashMap<>();
+		values.put(keyAttribute, new UniqueValue("C", GSEnumDataType.String, keyAttribute));
+		APopulationEntity noArea = new GosplEntity(values);
+		population.add(noArea);
+		APopulationEntity noKey = new GosplEntity(new HashMap<>());
+		population.add(noKey);
+		localizer.setMatcher(new MemoryGeofile(Arrays.asList(
+				createArea("A", new Envelope(0, 20, 0, 40), Collections.singleton("A")),
+				createArea("B", new Envelope(20, 40, 0, 40), Collections.singleton("B")))), KEY, KEY);
+		localizer.setMapper(createDensityRaster(), GeoEntityFactory.ATTRIBUTE_PIXEL_BAND+0);
+		localizer.setRasterDirectLocalization(true);
+		GenstarRandom.setSeed(42l);
+		List<APopulationEntity> entities = new ArrayList<>(population);
+		localizer.localisePopulation();
+
+		assertNull(noArea.getLocation());
+		assertNull(noKey.getLocation());
+		assertEquals(entities.size() - 2, population.size());
+		for(APopulationEntity entity : population){
+			// Area A covers the left half of the raster, area B the right one
+			boolean inA = entity.getValueForAttribute(keyAttribute).getStringValue().equals("A");
+			assertLocatedInDensityCell(entity, inA ? 0 : 20, inA ? 20 : 40);
+		}
+	}
+
+	// ------------------------- KEY ATTRIBUTE ------------------------- //
+
+	@Test
+	public void testGroupByKeyAttribute() throws Exception {
+		// One entity without key, and one which key value is another object with the same string value as "A"
+		APopulationEntity noKey = new GosplEntity(new HashMap<>());
+		population.add(noKey);
+		Map<APopulationAttribute, APopulationValue> values = new HashMap<>();
+		values.put(keyAttribute, new UniqueValue("a", "A", GSEnumDataType.String, keyAttribute));
+		APopulationEntity sameString = new GosplEntity(values);
+		population.add(sameString);
+		localizer.setMatcher(new MemoryGeofile(Arrays.asList(
+				createArea("A", new Envelope(0, 20, 0, 40), Collections.singleton("A")),
+				createArea("B", new Envelope(20, 40, 0, 40), Collections.singleton("B")))), KEY, KEY);
+
+		Map<String, List<APopulationEntity>> entitiesByKey = localizer.groupByKeyAttribute();
+		assertEquals(new HashSet<>(Arrays.asList("A", "B")), entitiesByKey.keySet());
+		assertEquals(21, entitiesByKey.get("A").size());
+		assertEquals(20, entitiesByKey.get("B").size());
+		assertTrue(entitiesByKey.get("A").contains(sameString));
+		for(String key : entitiesByKey.keySet())
+			for(APopulationEntity entity : entitiesByKey.get(key)){
+				assertTrue(entity != noKey);
+				assertEquals(key, entity.getValueForAttribute(keyAttribute).getStringValue());
+			}
+	}
+
+	// ------------------------- UTILITIES ------------------------- //
+
+	private AGeoEntity createArea(String name, Envelope envelope, Set<String> key) {
+		Geometry geometry = factory.toGeometry(envelope);
+		Set<AGeoValue> values = key.stream().map(k -> new RawGeoData(keyGeoAttribute, k)).collect(Collectors.toSet());
+		return new AGeoEntity(values, name) {
+			@Override
+			public Geometry getGeometry() {
+				return geometry;
+			}
+		};
+	}
+
+	/*
+	 * 4 x 4 cells of 10 x 10 over [0:40]x[0:40]: one cell of each half has no density
+	 */
+	private SPLRasterFile createDensityRaster() throws Exception {
+		float[][] pixels = new float[4][4];
+		for(int x = 0; x < 4; x++)
+			for(int y = 0; y < 4; y++)
+				pixels[x][y] = 1 + x;
+		pixels[0][0] = 0f;
+		pixels[3][2] = 0f;
+		return new SPLGeofileFactory().createRasterfile(new File(tmpDir.getRoot(), "density.tif"), pixels, -1f,
+				new ReferencedEnvelope(0, 40, 0, 40, DefaultGeographicCRS.WGS84));
+	}
+
+	/*
+	 * Row 0 of the raster is at the top: cell (0,0) is [0:10]x[30:40] and cell (3,2) is [30:40]x[10:20]
+	 */
+	private void assertLocatedInDensityCell(APopulationEntity entity, double minX, double maxX) {
+		Point location = entity.getLocation();
+		assertNotNull(location);
+		assertTrue(location.getX() >= minX && location.getX() <= maxX);
+		assertTrue(location.getY() >= 0 && location.getY() <= 40);
+		assertFalse(location.getX() < 10 && location.getY() > 30);
+		assertFalse(location.getX() > 30 && location.getY() > 10 && location.getY() < 20);
+	}
+
+	/*
+	 * Vector file held in memory
+	 */
+	private static class MemoryGeofile implements IGSGeofile<AGeoEntity> {
+
+		private final List<AGeoEntity> entities;
+
+		private MemoryGeofile(List<AGeoEntity> entities) {
+			this.entities = entities;
+		}
+
+		@Override
+		public GeoGSFileType getGeoGSFileType() {
+			return GeoGSFileType.VECTOR;
+		}
+
+		@Override
+		public Collection<AGeoEntity> getGeoEntity() {
+			return entities;
+		}
+
+		@Override
+		public Collection<AGeoValue> getGeoValues() {
+			return entities.stream().flatMap(e -> e.getValues().stream()).collect(Collectors.toSet());
+		}
+
+		@Override
+		public Collection<AGeoAttribute> getGeoAttributes() {
+			return entities.stream().flatMap(e -> e.getAttributes().stream()).collect(Collectors.toSet());
+		}
+
+		@Override
+		public boolean isCoordinateCompliant(IGSGeofile<? extends AGeoEntity> file) {
+			return true;
+		}
+
+		@Override
+		public String getWKTCoordinateReferentSystem() {
+			return null;
+		}
+
+		@Override
+		public Iterator<AGeoEntity> getGeoEntityIterator() {
+			return entities.iterator();
+		}
+
+		@Override
+		public Iterator<AGeoEntity> getGeoEntityIteratorWithin(Geometry geom) {
+			return getGeoEntityWithin(geom).iterator();
+		}
+
+		@Override
+		public Collection<AGeoEntity> getGeoEntityWithin(Geometry geom) {
+			return entities.stream().filter(e -> e.getGeometry().within(geom)).collect(Collectors.toList());
+		}
+
+		@Override
+		public Iterator<AGeoEntity> getGeoEntityIteratorIntersect(Geometry geom) {
+			return getGeoEntityIntersect(geom).iterator();
+		}
+
+		@Override
+		public Collection<AGeoEntity> getGeoEntityIntersect(Geometry geom) {
+			return entities.stream().filter(e -> e.getGeometry().intersects(geom)).collect(Collectors.toList());
+		}
+
+		@Override
+		public Envelope getEnvelope() {
+			Envelope envelope = new Envelope();
+			entities.forEach(e -> envelope.expandToInclude(e.getGeometry().getEnvelopeInternal()));
+			return envelope;
+		}
+
+	}
+
+}
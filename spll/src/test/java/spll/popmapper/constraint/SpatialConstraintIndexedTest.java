@@ -0,0 +1,126 @@
+package spll.popmapper.constraint;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+import core.metamodel.geo.AGeoAttribute;
+import core.metamodel.geo.AGeoEntity;
+import spll.entity.attribute.RawGeoAttribute;
+import spll.entity.attribute.value.RawGeoData;
+
+public class SpatialConstraintIndexedTest {
+
+	public static int NESTS = 40;
+	public static int ROUNDS = 8;
+
+	public static String CAPACITY = "capacity";
+	public static String DENSITY = "density";
+
+	private static List<AGeoEntity> nests;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		// Nests of various areas, some of them without any capacity
+		GeometryFactory factory = new GeometryFactory();
+		AGeoAttribute capacity = new RawGeoAttribute(CAPACITY);
+		AGeoAttribute density = new RawGeoAttribute(DENSITY);
+		nests = new ArrayList<>();
+		for(int i = 0; i < NESTS; i++){
+			Geometry geometry = factory.toGeometry(new Envelope(i * 10, i * 10 + 1 + i % 4, 0, 2 + i % 3));
+			nests.add(new AGeoEntity(new HashSet<>(Arrays.asList(new RawGeoData(capacity, i % 5),
+					new RawGeoData(density, 0.1 + 0.2 * (i % 4)))), "nest_"+i) {
+				@Override
+				public Geometry getGeometry() {
+					return geometry;
+				}
+			});
+		}
+	}
+
+	@Test
+	public void testMaxNumberMatchesBaseline() {
+		SpatialConstraintMaxNumber expected = new SpatialConstraintMaxNumber(nests, CAPACITY);
+		SpatialConstraintIndexedMaxNumber actual = new SpatialConstraintIndexedMaxNumber(nests, CAPACITY);
+		setup(expected, actual, false, 1.0, 3.0);
+		play(expected, actual);
+
+		expected = new SpatialConstraintMaxNumber(nests, 2d);
+		actual = new SpatialConstraintIndexedMaxNumber(nests, 2d);
+		setup(expected, actual, true, 1.0, 2.0);
+		play(expected, actual);
+	}
+
+	@Test
+	public void testMaxDensityMatchesBaseline() {
+		SpatialConstraintMaxNumber expected = new SpatialConstraintMaxDensity(nests, DENSITY);
+		SpatialConstraintIndexedMaxNumber actual = new SpatialConstraintIndexedMaxDensity(nests, DENSITY);
+		setup(expected, actual, false, 0.3, 1.0);
+		play(expected, actual);
+
+		expected = new SpatialConstraintMaxDensity(nests, 0.4);
+		actual = new SpatialConstraintIndexedMaxDensity(nests, 0.4);
+		setup(expected, actual, true, 0.5, 1.5);
+		play(expected, actual);
+	}
+
+	// ------------------------- UTILITIES ------------------------- //
+
+	private void setup(SpatialConstraintMaxNumber expected, SpatialConstraintIndexedMaxNumber actual,
+			boolean sorted, double increaseStep, double maxIncrease) {
+		for(AbstractSpatialConstraint constraint : Arrays.asList(expected, actual)){
+			constraint.setSortedCandidates(sorted);
+			constraint.setIncreaseStep(increaseStep);
+			constraint.setMaxIncrease(maxIncrease);
+		}
+	}
+
+	/*
+	 * Fill random candidate nests then relax the constraint on the nests that were tried,
+	 * checking after each step that both constraints agree
+	 */
+	private void play(SpatialConstraintMaxNumber expected, SpatialConstraintIndexedMaxNumber actual) {
+		Random random = new Random(42);
+		assertSameState(expected, actual);
+		for(int round = 0; round < ROUNDS; round++){
+			List<AGeoEntity> tried = new ArrayList<>();
+			for(int i = 0; i < NESTS; i++)
+				if(random.nextBoolean())
+					tried.add(nests.get(i));
+			List<AGeoEntity> candidates = expected.getSortedCandidates(tried);
+			for(int draw = 0; draw < NESTS && !candidates.isEmpty(); draw++){
+				AGeoEntity nest = candidates.get(random.nextInt(candidates.size()));
+				assertEquals(expected.updateConstraint(null, nest), actual.updateConstraint(null, nest));
+				candidates = expected.getSortedCandidates(tried);
+				assertSameState(expected, actual);
+			}
+			expected.relaxConstraint(tried);
+			actual.relaxConstraint(tried);
+			assertEquals(expected.isConstraintLimitReach(), actual.isConstraintLimitReach());
+			assertEquals(expected.getCurrentValue(), actual.getCurrentValue(), 0d);
+			assertSameState(expected, actual);
+		}
+	}
+
+	private void assertSameState(SpatialConstraintMaxNumber expected, SpatialConstraintIndexedMaxNumber actual) {
+		for(AGeoEntity nest : nests)
+			assertEquals(nest.getGenstarName(), expected.nestCapacities.get(nest.getGenstarName()).intValue(),
+					actual.getRemainingCapacity(nest));
+		List<AGeoEntity> candidates = expected.getSortedCandidates(nests);
+		assertEquals(candidates, actual.getSortedCandidates(nests));
+		assertEquals(new HashSet<>(candidates), new HashSet<>(actual.getSortedCandidates(null)));
+		assertEquals(candidates.size(), actual.getAvailableNumber());
+	}
+
+}
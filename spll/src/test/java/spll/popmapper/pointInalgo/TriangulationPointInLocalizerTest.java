@@ -0,0 +1,46 @@
+package spll.popmapper.pointInalgo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class TriangulationPointInLocalizerTest {
+
+	public static int POINTS = 20000;
+
+	@Test
+	public void testPointsWithinConcavePolygonWithHole() throws ParseException {
+		Geometry polygon = new WKTReader().read("POLYGON ((0 0, 10 0, 10 10, 9 10, 9 1, 1 1, 1 10, 0 10, 0 0), "
+				+ "(3 0.2, 7 0.2, 7 0.8, 3 0.8, 3 0.2))");
+		TriangulationPointInLocalizer localizer = new TriangulationPointInLocalizer(new Random(42));
+		List<Point> points = localizer.pointIn(polygon, POINTS);
+		assertEquals(POINTS, points.size());
+		for(Point point : points)
+			assertTrue(point+" is not in "+polygon, polygon.covers(point));
+	}
+
+	@Test
+	public void testPointsDistributedAccordingToArea() throws ParseException {
+		Geometry multiPolygon = new WKTReader().read("MULTIPOLYGON (((0 0, 1 0, 1 1, 0 1, 0 0)), "
+				+ "((10 0, 13 0, 13 1, 10 1, 10 0)))");
+		TriangulationPointInLocalizer localizer = new TriangulationPointInLocalizer(new Random(42));
+		int inSmall = 0;
+		for(int i = 0; i < POINTS; i++){
+			Point point = localizer.pointIn(multiPolygon);
+			assertTrue(multiPolygon.covers(point));
+			if(point.getX() <= 1)
+				inSmall++;
+		}
+		assertEquals(0.25, (double) inSmall / POINTS, 0.02);
+	}
+
+}
@@ -0,0 +1,97 @@
+package spll.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.util.GeometricShapeFactory;
+
+import core.metamodel.geo.AGeoEntity;
+
+public class SpllFeatureIndexTest {
+
+	public static int ENTITIES = 60;
+	public static int QUERIES = 200;
+
+	private static GeometryFactory factory = new GeometryFactory();
+
+	private static List<AGeoEntity> entities;
+	private static SpllFeatureIndex<AGeoEntity> index;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		// Random overlapping circles and rounded rectangles
+		Random random = new Random(1);
+		entities = new ArrayList<>();
+		for(int i = 0; i < ENTITIES; i++){
+			GeometricShapeFactory shapeFactory = new GeometricShapeFactory(factory);
+			shapeFactory.setCentre(new Coordinate(random.nextDouble() * 100, random.nextDouble() * 80));
+			shapeFactory.setSize(5 + random.nextDouble() * 20);
+			shapeFactory.setNumPoints(7 + random.nextInt(10));
+			Geometry geometry = random.nextBoolean() ? shapeFactory.createCircle() :
+				shapeFactory.createRectangle().buffer(random.nextDouble() * 2);
+			entities.add(new AGeoEntity(new HashSet<>(), "entity"+i) {
+				@Override
+				public Geometry getGeometry() {
+					return geometry;
+				}
+			});
+		}
+		index = new SpllFeatureIndex<>(entities);
+	}
+
+	@Test
+	public void testRasterizeMatchesBruteForce() {
+		Envelope envelope = new Envelope(-3, 107.3, -5, 91.7);
+		int columns = 173, rows = 131;
+		int[] cells = index.rasterize(envelope, columns, rows);
+		assertEquals(columns * rows, cells.length);
+		for(int x = 0; x < columns; x++)
+			for(int y = 0; y < rows; y++){
+				Point center = factory.createPoint(new Coordinate(
+						envelope.getMinX() + (x + 0.5) * envelope.getWidth() / columns,
+						envelope.getMaxY() - (y + 0.5) * envelope.getHeight() / rows));
+				int expected = -1;
+				for(int i = 0; i < entities.size() && expected < 0; i++)
+					if(center.within(entities.get(i).getGeometry()))
+						expected = i;
+				assertEquals("Cell ("+x+","+y+")", expected, cells[x * rows + y]);
+			}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRasterizeRejectsOverflowingGrid() {
+		index.rasterize(new Envelope(0, 100, 0, 80), 1 << 16, 1 << 15);
+	}
+
+	@Test
+	public void testQueriesMatchBruteForce() {
+		Random random = new Random(2);
+		for(int q = 0; q < QUERIES; q++){
+			Geometry query = factory.createPoint(new Coordinate(random.nextDouble() * 100,
+					random.nextDouble() * 80)).buffer(8);
+			List<AGeoEntity> within = new ArrayList<>();
+			List<AGeoEntity> intersect = new ArrayList<>();
+			for(AGeoEntity entity : entities){
+				if(entity.getGeometry().within(query))
+					within.add(entity);
+				if(entity.getGeometry().intersects(query))
+					intersect.add(entity);
+			}
+			assertEquals(within, index.getWithin(query));
+			assertEquals(intersect, index.getIntersect(query));
+		}
+	}
+
+}